@@ -0,0 +1,21 @@
+package rcnit;
+
+import io.cucumber.java.After;
+import io.cucumber.java.Scenario;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rcnit.util.KubernetesClientProvider;
+
+public class ScenarioHooks {
+
+  private static final Logger log = LoggerFactory.getLogger(ScenarioHooks.class);
+
+  /*
+  The shared Kubernetes client lives for the whole run and is closed by a JVM shutdown hook.
+  Log the counters after every scenario so we can see that the handshakes don't pile up.
+   */
+  @After
+  public void logKubernetesClientStatistics(Scenario scenario) {
+    log.info("After '" + scenario.getName() + "': " + KubernetesClientProvider.getStatistics());
+  }
+}
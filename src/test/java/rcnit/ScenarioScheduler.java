@@ -0,0 +1,331 @@
+package rcnit;
+
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectPackage;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectUniqueId;
+import static org.junit.platform.launcher.EngineFilter.includeEngines;
+import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.request;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.platform.engine.TestTag;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rcnit.util.KubernetesClientProvider;
+
+/*
+Runs the scenarios as a dependency graph instead of in feature file order.
+
+Every scenario is a node. Its edges and locks come from its tags (feature tags included):
+- @after-<tag>: runs once every scenario tagged @<tag> has passed. If one of them failed, it's
+  skipped. E.g. @after-environment waits for the minikube validation.
+- @<resource>: a claim on a cluster-global resource (e.g. @storage-classes). The resources are the
+  cucumber.execution.exclusive-resources.<resource>.read-write keys of junit-platform.properties.
+  Scenarios with the same claim never overlap.
+
+Up to rcnit.scheduler.parallelism scenarios run at once; when more are ready than that, the one
+that comes first in the feature files goes first. Each scenario is a separate run of the Cucumber
+JUnit Platform engine, selected by its unique id, so its hooks and step classes are its own.
+
+Usage (see the 'parallel' Maven profile):
+    mvn test -P parallel
+    mvn test -P parallel -Drcnit.scheduler.parallelism=2
+ */
+public class ScenarioScheduler {
+
+  private static final Logger log = LoggerFactory.getLogger(ScenarioScheduler.class);
+  private static final String ENGINE_ID = "cucumber";
+  private static final String DEPENDENCY_TAG_PREFIX = "after-";
+  private static final String EXCLUSIVE_RESOURCE_PREFIX = "cucumber.execution.exclusive-resources.";
+  private static final String EXCLUSIVE_RESOURCE_SUFFIX = ".read-write";
+  private static final String PARALLELISM_KEY = "rcnit.scheduler.parallelism";
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  private final List<Scenario> scenarios;
+  private final int parallelism;
+
+  private ScenarioScheduler(List<Scenario> scenarios, int parallelism) {
+    this.scenarios = scenarios;
+    this.parallelism = parallelism;
+  }
+
+  public static void main(String[] args) {
+    Properties properties = loadProperties();
+    int parallelism =
+        Integer.parseInt(
+            System.getProperty(PARALLELISM_KEY, properties.getProperty(PARALLELISM_KEY, "4")));
+
+    ScenarioScheduler scheduler = new ScenarioScheduler(discover(properties), parallelism);
+    Map<Result, List<Scenario>> results;
+    try {
+      results = scheduler.run();
+    } finally {
+      // The JVM keeps going after this in 'mvn exec:java', so the shutdown hook would be too late
+      KubernetesClientProvider.close();
+    }
+
+    log.info(
+        results.get(Result.PASSED).size()
+            + " scenarios passed, "
+            + results.get(Result.FAILED).size()
+            + " failed, "
+            + results.get(Result.SKIPPED).size()
+            + " skipped");
+    if (!results.get(Result.FAILED).isEmpty() || !results.get(Result.SKIPPED).isEmpty()) {
+      log.error("Failed scenarios: " + results.get(Result.FAILED));
+      log.error("Skipped scenarios (a dependency failed): " + results.get(Result.SKIPPED));
+      throw new IllegalStateException("Not every scenario passed");
+    }
+  }
+
+  private Map<Result, List<Scenario>> run() {
+    Map<Scenario, Set<Scenario>> dependencies = resolveDependencies();
+    Map<Scenario, Result> results = new LinkedHashMap<>();
+    Set<Scenario> running = new HashSet<>();
+    Set<String> heldClaims = new HashSet<>();
+
+    ExecutorService scenarioThreads =
+        Executors.newFixedThreadPool(
+            parallelism,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "rcnit-scenario-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    CompletionService<Scenario> finishedScenarios =
+        new ExecutorCompletionService<>(scenarioThreads);
+
+    try {
+      while (results.size() < scenarios.size()) {
+        // Skip everything behind a failed scenario, then start whatever is ready and unclaimed
+        boolean skippedAny = true;
+        while (skippedAny) {
+          skippedAny = false;
+          for (Scenario scenario : scenarios) {
+            if (!results.containsKey(scenario)
+                && !running.contains(scenario)
+                && dependencies.get(scenario).stream()
+                    .anyMatch(dependency -> isUnsuccessful(results.get(dependency)))) {
+              log.error("Skipping '" + scenario + "': a scenario it runs after didn't pass");
+              results.put(scenario, Result.SKIPPED);
+              skippedAny = true;
+            }
+          }
+        }
+
+        for (Scenario scenario : scenarios) {
+          if (running.size() == parallelism) {
+            break;
+          }
+          if (results.containsKey(scenario)
+              || running.contains(scenario)
+              || !dependencies.get(scenario).stream()
+                  .allMatch(dependency -> results.get(dependency) == Result.PASSED)
+              || scenario.claims.stream().anyMatch(heldClaims::contains)) {
+            continue;
+          }
+          running.add(scenario);
+          heldClaims.addAll(scenario.claims);
+          log.info("Starting '" + scenario + "'" + describeClaims(scenario));
+          finishedScenarios.submit(() -> execute(scenario));
+        }
+
+        if (running.isEmpty()) {
+          // Can't happen without a cycle, which resolveDependencies() rules out
+          break;
+        }
+
+        Scenario finished = finishedScenarios.take().get();
+        running.remove(finished);
+        heldClaims.removeAll(finished.claims);
+        results.put(finished, finished.result);
+        log.info("Finished '" + finished + "': " + finished.result);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      scenarioThreads.shutdownNow();
+    }
+
+    Map<Result, List<Scenario>> scenariosByResult = new EnumMap<>(Result.class);
+    for (Result result : Result.values()) {
+      scenariosByResult.put(
+          result,
+          results.entrySet().stream()
+              .filter(entry -> entry.getValue() == result)
+              .map(Map.Entry::getKey)
+              .collect(Collectors.toList()));
+    }
+    return scenariosByResult;
+  }
+
+  private static Scenario execute(Scenario scenario) {
+    SummaryGeneratingListener listener = new SummaryGeneratingListener();
+    LauncherFactory.create()
+        .execute(
+            request()
+                .selectors(selectUniqueId(scenario.uniqueId))
+                .filters(includeEngines(ENGINE_ID))
+                .build(),
+            listener);
+
+    // Pending steps (the PendingExceptions in the helpers) are reported as aborted
+    TestExecutionSummary summary = listener.getSummary();
+    scenario.result =
+        summary.getTestsFailedCount() == 0 && summary.getTestsAbortedCount() == 0
+            ? Result.PASSED
+            : Result.FAILED;
+    return scenario;
+  }
+
+  private static List<Scenario> discover(Properties properties) {
+    Set<String> exclusiveResources = new HashSet<>();
+    for (String key : properties.stringPropertyNames()) {
+      if (key.startsWith(EXCLUSIVE_RESOURCE_PREFIX) && key.endsWith(EXCLUSIVE_RESOURCE_SUFFIX)) {
+        exclusiveResources.add(
+            key.substring(
+                EXCLUSIVE_RESOURCE_PREFIX.length(),
+                key.length() - EXCLUSIVE_RESOURCE_SUFFIX.length()));
+      }
+    }
+
+    TestPlan testPlan =
+        LauncherFactory.create()
+            .discover(
+                request()
+                    .selectors(selectPackage("rcnit"))
+                    .filters(includeEngines(ENGINE_ID))
+                    .build());
+
+    // A scenario outline's examples are scenarios of their own
+    List<Scenario> scenarios = new ArrayList<>();
+    for (TestIdentifier root : testPlan.getRoots()) {
+      for (TestIdentifier testIdentifier : testPlan.getDescendants(root)) {
+        if (testIdentifier.isTest()) {
+          scenarios.add(new Scenario(testIdentifier, exclusiveResources));
+        }
+      }
+    }
+    log.info("Discovered " + scenarios.size() + " scenarios");
+    return scenarios;
+  }
+
+  private Map<Scenario, Set<Scenario>> resolveDependencies() {
+    Map<Scenario, Set<Scenario>> dependencies = new LinkedHashMap<>();
+    for (Scenario scenario : scenarios) {
+      Set<Scenario> scenarioDependencies = new LinkedHashSet<>();
+      for (String dependencyTag : scenario.dependencyTags) {
+        for (Scenario other : scenarios) {
+          if (other != scenario && other.tags.contains(dependencyTag)) {
+            scenarioDependencies.add(other);
+          }
+        }
+      }
+      dependencies.put(scenario, scenarioDependencies);
+    }
+
+    // Kahn's algorithm; whatever is left over is in a cycle and would never start
+    Set<Scenario> ordered = new HashSet<>();
+    boolean progress = true;
+    while (progress) {
+      progress = false;
+      for (Scenario scenario : scenarios) {
+        if (!ordered.contains(scenario) && ordered.containsAll(dependencies.get(scenario))) {
+          ordered.add(scenario);
+          progress = true;
+        }
+      }
+    }
+    if (ordered.size() < scenarios.size()) {
+      List<Scenario> cycle =
+          scenarios.stream()
+              .filter(scenario -> !ordered.contains(scenario))
+              .collect(Collectors.toList());
+      log.error("The @after-* tags of these scenarios form a cycle: " + cycle);
+      throw new IllegalStateException("Scenario dependency cycle");
+    }
+    return dependencies;
+  }
+
+  private static Properties loadProperties() {
+    Properties properties = new Properties();
+    try (InputStream inputStream =
+        ScenarioScheduler.class.getClassLoader().getResourceAsStream("junit-platform.properties")) {
+      if (inputStream != null) {
+        properties.load(inputStream);
+      }
+    } catch (IOException e) {
+      log.error("Failed reading junit-platform.properties: " + e.getMessage());
+    }
+    return properties;
+  }
+
+  private static String describeClaims(Scenario scenario) {
+    return scenario.claims.isEmpty() ? "" : " holding " + scenario.claims;
+  }
+
+  private static boolean isUnsuccessful(Result result) {
+    return result == Result.FAILED || result == Result.SKIPPED;
+  }
+
+  private enum Result {
+    PASSED,
+    FAILED,
+    SKIPPED
+  }
+
+  private static class Scenario {
+
+    private final String uniqueId;
+    private final String name;
+    private final Set<String> tags = new HashSet<>();
+    private final Set<String> dependencyTags = new HashSet<>();
+    private final Set<String> claims = new HashSet<>();
+    // Written by the scenario's thread, read by the scheduler after the future completed
+    private volatile Result result;
+
+    private Scenario(TestIdentifier testIdentifier, Set<String> exclusiveResources) {
+      uniqueId = testIdentifier.getUniqueId();
+      name = testIdentifier.getDisplayName();
+      for (TestTag testTag : testIdentifier.getTags()) {
+        String tag = testTag.getName();
+        tags.add(tag);
+        if (tag.startsWith(DEPENDENCY_TAG_PREFIX)) {
+          dependencyTags.add(tag.substring(DEPENDENCY_TAG_PREFIX.length()));
+        }
+        if (exclusiveResources.contains(tag)) {
+          claims.add(tag);
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
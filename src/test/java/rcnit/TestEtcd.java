@@ -5,24 +5,33 @@ import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
 import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.api.model.SecretBuilder;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rcnit.util.EtcdBenchmark;
+import rcnit.util.EtcdBenchmark.Operation;
 import rcnit.util.ExecKubernetesCmd;
+import rcnit.util.KubernetesClientProvider;
 
 public class TestEtcd {
 
-  private static final String NAMESPACE_NAME = "rcnit-etcd-testing";
+  private static final String NAMESPACE_PREFIX = "rcnit-etcd-testing";
   private static final String SECRET_DATA = "buriedInNeverlandRanch";
   private static final Logger log = LoggerFactory.getLogger(TestEtcd.class);
+  // The p99 latencies of every benchmark example of the run, by kind and size
+  private static final Map<String, String> etcdP99s = new ConcurrentSkipListMap<>();
+  private String namespaceName;
   private Secret jimmyHoffaLocation;
+  private String benchmarkName;
+  private EtcdBenchmark.Result benchmarkResult;
 
   @When("I create a secret")
   public void i_create_a_secret() {
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
+    namespaceName = ExecKubernetesCmd.createNamespace(NAMESPACE_PREFIX);
 
     jimmyHoffaLocation =
         new SecretBuilder()
@@ -32,8 +41,9 @@ public class TestEtcd {
             .addToStringData("data", SECRET_DATA)
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.secrets().inNamespace(NAMESPACE_NAME).create(jimmyHoffaLocation);
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      kubernetesClient.secrets().inNamespace(namespaceName).create(jimmyHoffaLocation);
       log.info("Created '" + jimmyHoffaLocation.getMetadata().getName() + "' secret");
     } catch (KubernetesClientException e) {
       log.error("Failed creating '" + jimmyHoffaLocation.getMetadata().getName() + "' secret");
@@ -44,52 +54,110 @@ public class TestEtcd {
 
   @Then("The etcd key should be encrypted")
   public void the_etcd_key_should_be_encrypted() {
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      String secretDataEncodedToString =
-          kubernetesClient
-              .secrets()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(jimmyHoffaLocation.getMetadata().getName())
-              .get()
-              .getData()
-              .values()
-              .toString()
-              .replace("[", "")
-              .replace("]", "");
-      byte[] decodedSecretBytes = Base64.getDecoder().decode(secretDataEncodedToString);
-      String decodedSecretString = new String(decodedSecretBytes);
-
-      if (SECRET_DATA.equals(decodedSecretString)) {
-        log.info(
-            Status.PASSED
-                + "! The '"
-                + jimmyHoffaLocation.getMetadata().getName()
-                + "' secret was successfully encrypted by etcd!");
-        log.info("Encrypted secret stored in etcd: " + secretDataEncodedToString);
-        log.info("Decrypted secret stored in etcd: " + decodedSecretString);
-      } else {
-        log.error(
-            Status.FAILED
-                + "! The '"
-                + jimmyHoffaLocation.getMetadata().getName()
-                + "' secret was not properly encrypted by etcd!");
-        log.error("Encrypted secret stored in etcd: " + secretDataEncodedToString);
-        log.error("Decrypted secret stored in etcd: " + decodedSecretString);
-        throw new io.cucumber.java.PendingException();
-      }
-
-      try {
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    String secretDataEncodedToString =
         kubernetesClient
             .secrets()
-            .inNamespace(NAMESPACE_NAME)
+            .inNamespace(namespaceName)
             .withName(jimmyHoffaLocation.getMetadata().getName())
-            .delete();
-        log.info("Deleted '" + jimmyHoffaLocation.getMetadata().getName() + "' secret");
-      } catch (KubernetesClientException e) {
-        log.error("Failed deleting '" + jimmyHoffaLocation.getMetadata().getName() + "' secret");
-        e.printStackTrace();
-      }
+            .get()
+            .getData()
+            .values()
+            .toString()
+            .replace("[", "")
+            .replace("]", "");
+    byte[] decodedSecretBytes = Base64.getDecoder().decode(secretDataEncodedToString);
+    String decodedSecretString = new String(decodedSecretBytes);
+
+    if (SECRET_DATA.equals(decodedSecretString)) {
+      log.info(
+          Status.PASSED
+              + "! The '"
+              + jimmyHoffaLocation.getMetadata().getName()
+              + "' secret was successfully encrypted by etcd!");
+      log.info("Encrypted secret stored in etcd: " + secretDataEncodedToString);
+      log.info("Decrypted secret stored in etcd: " + decodedSecretString);
+    } else {
+      log.error(
+          Status.FAILED
+              + "! The '"
+              + jimmyHoffaLocation.getMetadata().getName()
+              + "' secret was not properly encrypted by etcd!");
+      log.error("Encrypted secret stored in etcd: " + secretDataEncodedToString);
+      log.error("Decrypted secret stored in etcd: " + decodedSecretString);
+      throw new io.cucumber.java.PendingException();
+    }
+
+    try {
+      kubernetesClient
+          .secrets()
+          .inNamespace(namespaceName)
+          .withName(jimmyHoffaLocation.getMetadata().getName())
+          .delete();
+      log.info("Deleted '" + jimmyHoffaLocation.getMetadata().getName() + "' secret");
+    } catch (KubernetesClientException e) {
+      log.error("Failed deleting '" + jimmyHoffaLocation.getMetadata().getName() + "' secret");
+      e.printStackTrace();
+    }
+    ExecKubernetesCmd.deleteNamespace(namespaceName);
+  }
+
+  @When("I write, read, update and delete {int} {word} of {int} KB, {int} at a time")
+  public void i_write_read_update_and_delete_of_KB_at_a_time(
+      int numberOfObjects, String kind, int valueKilobytes, int concurrency) {
+    namespaceName = ExecKubernetesCmd.createNamespace(NAMESPACE_PREFIX);
+
+    benchmarkName = kind + " of " + valueKilobytes + " KB";
+    benchmarkResult =
+        EtcdBenchmark.of(namespaceName, EtcdBenchmark.Kind.valueOf(kind.toUpperCase()))
+            .withObjects(numberOfObjects)
+            .withValueBytes(valueKilobytes * 1024)
+            .withConcurrency(concurrency)
+            .run();
+  }
+
+  @Then("The etcd latency percentiles and throughput should be reported")
+  public void the_etcd_latency_percentiles_and_throughput_should_be_reported() {
+    StringBuilder report = new StringBuilder();
+    for (Operation operation : Operation.values()) {
+      report.append(
+          String.format(
+              "%n  %s, %.1f requests per second, %d errors",
+              benchmarkResult.latency(operation).summary(),
+              benchmarkResult.throughput(operation),
+              benchmarkResult.errors(operation)));
+    }
+    log.info(benchmarkName + ":" + report);
+
+    // The other examples that ran so far, e.g. to compare Secrets with ConfigMaps
+    etcdP99s.put(
+        benchmarkName,
+        Operation.CREATE
+            + " "
+            + benchmarkResult.latency(Operation.CREATE).percentile(99)
+            + " ms, "
+            + Operation.GET
+            + " "
+            + benchmarkResult.latency(Operation.GET).percentile(99)
+            + " ms, "
+            + Operation.UPDATE
+            + " "
+            + benchmarkResult.latency(Operation.UPDATE).percentile(99)
+            + " ms");
+    log.info("p99 latencies so far: " + etcdP99s);
+
+    ExecKubernetesCmd.deleteNamespace(namespaceName);
+    if (benchmarkResult.totalErrors() == 0) {
+      log.info(Status.PASSED + "! Every " + benchmarkName + " request succeeded!");
+    } else {
+      log.error(
+          Status.FAILED
+              + "! ["
+              + benchmarkResult.totalErrors()
+              + "] "
+              + benchmarkName
+              + " requests failed!");
+      throw new io.cucumber.java.PendingException();
     }
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
   }
 }
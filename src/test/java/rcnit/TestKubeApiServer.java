@@ -14,149 +14,187 @@ import io.fabric8.kubernetes.api.model.PersistentVolume;
 import io.fabric8.kubernetes.api.model.PersistentVolumeBuilder;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaimBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
 import io.fabric8.kubernetes.api.model.Quantity;
 import io.fabric8.kubernetes.api.model.ResourceQuota;
 import io.fabric8.kubernetes.api.model.ResourceQuotaBuilder;
+import io.fabric8.kubernetes.api.model.ResourceQuotaStatus;
 import io.fabric8.kubernetes.api.model.storage.StorageClass;
 import io.fabric8.kubernetes.api.model.storage.StorageClassBuilder;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rcnit.util.AdmissionBenchmark;
+import rcnit.util.AdmissionBenchmark.Outcome;
+import rcnit.util.BenchmarkRecorder;
+import rcnit.util.ClaimBindingBenchmark;
+import rcnit.util.DeleteEngine;
 import rcnit.util.ExecKubernetesCmd;
 import rcnit.util.ExecShellCmd;
+import rcnit.util.KubernetesClientProvider;
 
 public class TestKubeApiServer {
 
-  private static final String NAMESPACE_NAME = "rcnit-kube-apiserver-testing";
+  private static final String NAMESPACE_PREFIX = "rcnit-kube-apiserver-testing";
   private static final Logger log = LoggerFactory.getLogger(TestKubeApiServer.class);
   private static final String SECOND_STORAGE_CLASS_NAME = "rcnit-storage-class";
-  private static PersistentVolume persistentVolume;
-  private static LimitRange limitRange;
-  private static ResourceQuota resourceQuota;
+  /*
+  The storage class of the benchmark claims. It has no provisioner and no volumes, so they are never
+  provisioned or bound; it only exists (as the one default class) while DefaultStorageClass is
+  benchmarked, otherwise the claims name it.
+   */
+  private static final String UNPROVISIONED_STORAGE_CLASS_NAME = "rcnit-admission-test";
+  private static final int TOLERATED_CLAIM_GIGABYTES = 3;
+  private static final int PROHIBITED_CLAIM_GIGABYTES = 6;
+  private static final int QUOTA_CONFLICT_RETRIES = 10;
+  private static final BigDecimal BYTES_PER_GIGABYTE = BigDecimal.valueOf(1024L * 1024 * 1024);
+  private String namespaceName;
+  private PersistentVolume persistentVolume;
+  private LimitRange limitRange;
+  private ResourceQuota resourceQuota;
   private String defaultStorageClassName = null;
+  private String admissionObjects;
+  private List<String> displacedDefaultStorageClassNames;
+  private int numberOfBenchmarkClaims;
+  private AdmissionBenchmark.Result admissionResult;
+  private int quotaGigabytes;
+  private StorageClass bindingStorageClass;
+  private int numberOfBindingClaims;
+  private ClaimBindingBenchmark.Result bindingResult;
 
   @Given("The default admission plugins are enabled")
   public void the_default_admission_plugins_are_enabled() {
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      if (kubernetesClient
-          .pods()
-          .inNamespace("kube-system")
-          .withName("kube-apiserver-minikube")
-          .get()
-          .getSpec()
-          .getContainers()
-          .get(0)
-          .getCommand()
-          .toString()
-          .contains(
-              "--enable-admission-plugins="
-                  + "NamespaceLifecycle,"
-                  + "LimitRanger,"
-                  + "ServiceAccount,"
-                  + "DefaultStorageClass,"
-                  + "DefaultTolerationSeconds,"
-                  + "NodeRestriction,"
-                  + "MutatingAdmissionWebhook,"
-                  + "ValidatingAdmissionWebhook,"
-                  + "ResourceQuota")) {
-        log.info("The default admission controllers for Kubernetes v1.18 are enabled");
-      } else {
-        log.error("The default admission controllers for Kubernetes v1.18 are not enabled");
-        log.error(
-            "Please check the `--enable-admission-plugins` argument in the following command:\n"
-                + kubernetesClient
-                    .pods()
-                    .inNamespace("kube-system")
-                    .withName("kube-apiserver-minikube")
-                    .get()
-                    .getSpec()
-                    .getContainers()
-                    .get(0)
-                    .getCommand()
-                    .toString());
-        throw new io.cucumber.java.PendingException();
-      }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    if (kubernetesClient
+        .pods()
+        .inNamespace("kube-system")
+        .withName("kube-apiserver-minikube")
+        .get()
+        .getSpec()
+        .getContainers()
+        .get(0)
+        .getCommand()
+        .toString()
+        .contains(
+            "--enable-admission-plugins="
+                + "NamespaceLifecycle,"
+                + "LimitRanger,"
+                + "ServiceAccount,"
+                + "DefaultStorageClass,"
+                + "DefaultTolerationSeconds,"
+                + "NodeRestriction,"
+                + "MutatingAdmissionWebhook,"
+                + "ValidatingAdmissionWebhook,"
+                + "ResourceQuota")) {
+      log.info("The default admission controllers for Kubernetes v1.18 are enabled");
+    } else {
+      log.error("The default admission controllers for Kubernetes v1.18 are not enabled");
+      log.error(
+          "Please check the `--enable-admission-plugins` argument in the following command:\n"
+              + kubernetesClient
+                  .pods()
+                  .inNamespace("kube-system")
+                  .withName("kube-apiserver-minikube")
+                  .get()
+                  .getSpec()
+                  .getContainers()
+                  .get(0)
+                  .getCommand()
+                  .toString());
+      throw new io.cucumber.java.PendingException();
     }
   }
 
   @And("A default storage class")
   public void a_default_storage_class() {
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient
-          .storage()
-          .storageClasses()
-          .inNamespace(NAMESPACE_NAME)
-          .list()
-          .getItems()
-          .forEach(
-              storageClass -> {
-                try {
-                  if (storageClass
-                      .getMetadata()
-                      .getAnnotations()
-                      .toString()
-                      .contains("storageclass.kubernetes.io/is-default-class=true")) {
-                    log.info(
-                        "The storage class '"
-                            + storageClass.getMetadata().getName()
-                            + "' is the default storage class");
-                    defaultStorageClassName = storageClass.getMetadata().getName();
-                  }
-                } catch (KubernetesClientException e) {
-                  e.printStackTrace();
-                  throw new io.cucumber.java.PendingException();
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient
+        .storage()
+        .storageClasses()
+        .inNamespace(namespaceName)
+        .list()
+        .getItems()
+        .forEach(
+            storageClass -> {
+              try {
+                if (storageClass
+                    .getMetadata()
+                    .getAnnotations()
+                    .toString()
+                    .contains("storageclass.kubernetes.io/is-default-class=true")) {
+                  log.info(
+                      "The storage class '"
+                          + storageClass.getMetadata().getName()
+                          + "' is the default storage class");
+                  defaultStorageClassName = storageClass.getMetadata().getName();
                 }
-              });
+              } catch (KubernetesClientException e) {
+                e.printStackTrace();
+                throw new io.cucumber.java.PendingException();
+              }
+            });
 
-      if (defaultStorageClassName == null) {
-        log.error("There is no default storage class");
-      }
+    if (defaultStorageClassName == null) {
+      log.error("There is no default storage class");
     }
   }
 
   @And("A {int} GB PersistentVolume")
   public void a_GB_PersistentVolume(Integer persistentVolumeSize) {
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
+    namespaceName = ExecKubernetesCmd.createNamespace(NAMESPACE_PREFIX);
 
     persistentVolume =
-        new PersistentVolumeBuilder()
-            .withNewMetadata()
-            .withName("persistent-volume-test")
-            .addToLabels("rcnit-testing", "yup")
-            .endMetadata()
-            .withNewSpec()
-            .addToCapacity(
-                Collections.singletonMap("storage", new Quantity(persistentVolumeSize + "Gi")))
-            .withAccessModes("ReadWriteOnce")
-            .withPersistentVolumeReclaimPolicy("Retain")
-            .withStorageClassName(defaultStorageClassName)
-            .withNewLocal()
-            .withPath("/mnt/disks/vol1")
-            .endLocal()
-            .withNewNodeAffinity()
-            .withNewRequired()
-            .addNewNodeSelectorTerm()
-            .withMatchExpressions(
-                Collections.singletonList(
-                    new NodeSelectorRequirementBuilder()
-                        .withKey("kubernetes.io/hostname")
-                        .withOperator("In")
-                        .withValues("minikube")
-                        .build()))
-            .endNodeSelectorTerm()
-            .endRequired()
-            .endNodeAffinity()
-            .endSpec()
-            .build();
+        localPersistentVolume(
+            "persistent-volume-test",
+            persistentVolumeSize,
+            defaultStorageClassName,
+            "/mnt/disks/vol1");
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.persistentVolumes().createOrReplace(persistentVolume);
-      log.info("Created '" + persistentVolume.getMetadata().getName() + "' PersistentVolume");
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.persistentVolumes().createOrReplace(persistentVolume);
+    log.info("Created '" + persistentVolume.getMetadata().getName() + "' PersistentVolume");
+  }
+
+  // A local volume on the minikube node; the path only has to exist for a pod to mount it
+  private static PersistentVolume localPersistentVolume(
+      String name, int persistentVolumeSize, String storageClassName, String path) {
+    return new PersistentVolumeBuilder()
+        .withNewMetadata()
+        .withName(name)
+        .addToLabels("rcnit-testing", "yup")
+        .endMetadata()
+        .withNewSpec()
+        .addToCapacity(
+            Collections.singletonMap("storage", new Quantity(persistentVolumeSize + "Gi")))
+        .withAccessModes("ReadWriteOnce")
+        .withPersistentVolumeReclaimPolicy("Retain")
+        .withStorageClassName(storageClassName)
+        .withNewLocal()
+        .withPath(path)
+        .endLocal()
+        .withNewNodeAffinity()
+        .withNewRequired()
+        .addNewNodeSelectorTerm()
+        .withMatchExpressions(
+            Collections.singletonList(
+                new NodeSelectorRequirementBuilder()
+                    .withKey("kubernetes.io/hostname")
+                    .withOperator("In")
+                    .withValues("minikube")
+                    .build()))
+        .endNodeSelectorTerm()
+        .endRequired()
+        .endNodeAffinity()
+        .endSpec()
+        .build();
   }
 
   @Given("A max {int} GB LimitRange")
@@ -175,10 +213,9 @@ public class TestKubeApiServer {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.limitRanges().inNamespace(NAMESPACE_NAME).createOrReplace(limitRange);
-      log.info("Created '" + limitRange.getMetadata().getName() + "' LimitRange");
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.limitRanges().inNamespace(namespaceName).createOrReplace(limitRange);
+    log.info("Created '" + limitRange.getMetadata().getName() + "' LimitRange");
   }
 
   @Then("A tolerated {int} GB PersistentVolumeClaim will get provisioned")
@@ -188,7 +225,7 @@ public class TestKubeApiServer {
         new PersistentVolumeClaimBuilder()
             .withNewMetadata()
             .withName("tolerated-claim-test-1")
-            .withNamespace(NAMESPACE_NAME)
+            .withNamespace(namespaceName)
             .endMetadata()
             .withNewSpec()
             .withStorageClassName(defaultStorageClassName)
@@ -199,41 +236,41 @@ public class TestKubeApiServer {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
-        ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, NAMESPACE_NAME);
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, namespaceName);
 
-        if (kubernetesClient
-            .persistentVolumeClaims()
-            .inNamespace(NAMESPACE_NAME)
-            .withName(persistentVolumeClaim.getMetadata().getName())
-            .get()
-            .getStatus()
-            .getPhase()
-            .contentEquals("Bound")) {
-          log.info(
-              Status.PASSED
-                  + "! The '"
-                  + persistentVolumeClaim.getMetadata().getName()
-                  + "' PersistentVolumeClaim was provisioned and is bound to the '"
-                  + persistentVolume.getMetadata().getName()
-                  + "' PersistentVolume!");
-
-          ExecKubernetesCmd.getObjectEvents(
-              persistentVolumeClaim.getMetadata().getName(), NAMESPACE_NAME);
-
-          ExecKubernetesCmd.deletePersistentVolumeClaim(
-              persistentVolumeClaim.getMetadata().getName(), NAMESPACE_NAME);
-        }
-      } catch (KubernetesClientException e) {
-        log.error(
-            Status.FAILED
+      if (kubernetesClient
+          .persistentVolumeClaims()
+          .inNamespace(namespaceName)
+          .withName(persistentVolumeClaim.getMetadata().getName())
+          .get()
+          .getStatus()
+          .getPhase()
+          .contentEquals("Bound")) {
+        log.info(
+            Status.PASSED
                 + "! The '"
                 + persistentVolumeClaim.getMetadata().getName()
-                + "' PersistentVolumeClaim was rejected!");
-        log.error(e.getMessage());
-        throw new io.cucumber.java.PendingException();
+                + "' PersistentVolumeClaim was provisioned and is bound to the '"
+                + persistentVolume.getMetadata().getName()
+                + "' PersistentVolume!");
+
+        ExecKubernetesCmd.getObjectEvents(
+            persistentVolumeClaim.getMetadata().getName(), namespaceName);
+
+        DeleteEngine.inNamespace(namespaceName)
+            .add(persistentVolumeClaim)
+            .await(3, TimeUnit.MINUTES);
       }
+    } catch (KubernetesClientException e) {
+      log.error(
+          Status.FAILED
+              + "! The '"
+              + persistentVolumeClaim.getMetadata().getName()
+              + "' PersistentVolumeClaim was rejected!");
+      log.error(e.getMessage());
+      throw new io.cucumber.java.PendingException();
     }
   }
 
@@ -244,7 +281,7 @@ public class TestKubeApiServer {
         new PersistentVolumeClaimBuilder()
             .withNewMetadata()
             .withName("prohibited-claim-test-1")
-            .withNamespace(NAMESPACE_NAME)
+            .withNamespace(namespaceName)
             .endMetadata()
             .withNewSpec()
             .withStorageClassName(defaultStorageClassName)
@@ -255,43 +292,41 @@ public class TestKubeApiServer {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
-        ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, NAMESPACE_NAME);
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, namespaceName);
 
-        if (kubernetesClient
-            .persistentVolumeClaims()
-            .inNamespace(NAMESPACE_NAME)
-            .withName(persistentVolumeClaim.getMetadata().getName())
-            .get()
-            .getStatus()
-            .getPhase()
-            .contentEquals("Bound")) {
-          log.error(
-              Status.FAILED
-                  + "! The '"
-                  + persistentVolumeClaim.getMetadata().getName()
-                  + "' PersistentVolumeClaim was provisioned and is bound to the '"
-                  + persistentVolume.getMetadata().getName()
-                  + "' PersistentVolume!");
-
-          ExecKubernetesCmd.getObjectEvents(
-              persistentVolumeClaim.getMetadata().getName(), NAMESPACE_NAME);
-
-          throw new io.cucumber.java.PendingException();
-        }
-      } catch (KubernetesClientException e) {
-        log.info(
-            Status.PASSED
+      if (kubernetesClient
+          .persistentVolumeClaims()
+          .inNamespace(namespaceName)
+          .withName(persistentVolumeClaim.getMetadata().getName())
+          .get()
+          .getStatus()
+          .getPhase()
+          .contentEquals("Bound")) {
+        log.error(
+            Status.FAILED
                 + "! The '"
                 + persistentVolumeClaim.getMetadata().getName()
-                + "' PersistentVolumeClaim was rejected!");
-        log.info(e.getMessage());
+                + "' PersistentVolumeClaim was provisioned and is bound to the '"
+                + persistentVolume.getMetadata().getName()
+                + "' PersistentVolume!");
+
+        ExecKubernetesCmd.getObjectEvents(
+            persistentVolumeClaim.getMetadata().getName(), namespaceName);
+
+        throw new io.cucumber.java.PendingException();
       }
+    } catch (KubernetesClientException e) {
+      log.info(
+          Status.PASSED
+              + "! The '"
+              + persistentVolumeClaim.getMetadata().getName()
+              + "' PersistentVolumeClaim was rejected!");
+      log.info(e.getMessage());
     }
-    ExecKubernetesCmd.deleteLimitRange(limitRange.getMetadata().getName(), NAMESPACE_NAME);
-    ExecKubernetesCmd.deletePersistentVolume(persistentVolume.getMetadata().getName());
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+    ExecKubernetesCmd.deleteNamespace(namespaceName);
+    DeleteEngine.inNamespace(namespaceName).add(persistentVolume).await(3, TimeUnit.MINUTES);
   }
 
   @Given("A max {int} GB storage ResourceQuota")
@@ -308,9 +343,27 @@ public class TestKubeApiServer {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.resourceQuotas().inNamespace(NAMESPACE_NAME).createOrReplace(resourceQuota);
-      log.info("Created '" + resourceQuota.getMetadata().getName() + "' ResourceQuota");
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.resourceQuotas().inNamespace(namespaceName).createOrReplace(resourceQuota);
+    log.info("Created '" + resourceQuota.getMetadata().getName() + "' ResourceQuota");
+
+    // Until the quota controller fills in its status, the ResourceQuota plugin rejects every claim
+    try {
+      kubernetesClient
+          .resourceQuotas()
+          .inNamespace(namespaceName)
+          .withName(resourceQuota.getMetadata().getName())
+          .waitUntilCondition(
+              quota ->
+                  Optional.ofNullable(quota.getStatus())
+                      .map(ResourceQuotaStatus::getHard)
+                      .map(hard -> hard.containsKey("requests.storage"))
+                      .orElse(false),
+              1,
+              TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
     }
   }
 
@@ -321,7 +374,7 @@ public class TestKubeApiServer {
         new PersistentVolumeClaimBuilder()
             .withNewMetadata()
             .withName("tolerated-claim-test-2")
-            .withNamespace(NAMESPACE_NAME)
+            .withNamespace(namespaceName)
             .endMetadata()
             .withNewSpec()
             .withStorageClassName(defaultStorageClassName)
@@ -332,41 +385,41 @@ public class TestKubeApiServer {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
-        ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, NAMESPACE_NAME);
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, namespaceName);
 
-        if (kubernetesClient
-            .persistentVolumeClaims()
-            .inNamespace(NAMESPACE_NAME)
-            .withName(persistentVolumeClaim.getMetadata().getName())
-            .get()
-            .getStatus()
-            .getPhase()
-            .contentEquals("Bound")) {
-          log.info(
-              Status.PASSED
-                  + "! The '"
-                  + persistentVolumeClaim.getMetadata().getName()
-                  + "' PersistentVolumeClaim was provisioned and is bound to the '"
-                  + persistentVolume.getMetadata().getName()
-                  + "' PersistentVolume!");
-
-          ExecKubernetesCmd.getObjectEvents(
-              persistentVolumeClaim.getMetadata().getName(), NAMESPACE_NAME);
-
-          ExecKubernetesCmd.deletePersistentVolumeClaim(
-              persistentVolumeClaim.getMetadata().getName(), NAMESPACE_NAME);
-        }
-      } catch (KubernetesClientException e) {
-        log.error(
-            Status.FAILED
+      if (kubernetesClient
+          .persistentVolumeClaims()
+          .inNamespace(namespaceName)
+          .withName(persistentVolumeClaim.getMetadata().getName())
+          .get()
+          .getStatus()
+          .getPhase()
+          .contentEquals("Bound")) {
+        log.info(
+            Status.PASSED
                 + "! The '"
                 + persistentVolumeClaim.getMetadata().getName()
-                + "' PersistentVolumeClaim was rejected!");
-        log.error(e.getMessage());
-        throw new io.cucumber.java.PendingException();
+                + "' PersistentVolumeClaim was provisioned and is bound to the '"
+                + persistentVolume.getMetadata().getName()
+                + "' PersistentVolume!");
+
+        ExecKubernetesCmd.getObjectEvents(
+            persistentVolumeClaim.getMetadata().getName(), namespaceName);
+
+        DeleteEngine.inNamespace(namespaceName)
+            .add(persistentVolumeClaim)
+            .await(3, TimeUnit.MINUTES);
       }
+    } catch (KubernetesClientException e) {
+      log.error(
+          Status.FAILED
+              + "! The '"
+              + persistentVolumeClaim.getMetadata().getName()
+              + "' PersistentVolumeClaim was rejected!");
+      log.error(e.getMessage());
+      throw new io.cucumber.java.PendingException();
     }
   }
 
@@ -377,7 +430,7 @@ public class TestKubeApiServer {
         new PersistentVolumeClaimBuilder()
             .withNewMetadata()
             .withName("prohibited-claim-test-2")
-            .withNamespace(NAMESPACE_NAME)
+            .withNamespace(namespaceName)
             .endMetadata()
             .withNewSpec()
             .withStorageClassName(defaultStorageClassName)
@@ -388,43 +441,41 @@ public class TestKubeApiServer {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
-        ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, NAMESPACE_NAME);
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, namespaceName);
 
-        if (kubernetesClient
-            .persistentVolumeClaims()
-            .inNamespace(NAMESPACE_NAME)
-            .withName(persistentVolumeClaim.getMetadata().getName())
-            .get()
-            .getStatus()
-            .getPhase()
-            .contentEquals("Bound")) {
-          log.error(
-              Status.FAILED
-                  + "! The '"
-                  + persistentVolumeClaim.getMetadata().getName()
-                  + "' PersistentVolumeClaim was provisioned and is bound to the '"
-                  + persistentVolume.getMetadata().getName()
-                  + "' PersistentVolume!");
-
-          ExecKubernetesCmd.getObjectEvents(
-              persistentVolumeClaim.getMetadata().getName(), NAMESPACE_NAME);
-
-          throw new io.cucumber.java.PendingException();
-        }
-      } catch (KubernetesClientException e) {
-        log.info(
-            Status.PASSED
+      if (kubernetesClient
+          .persistentVolumeClaims()
+          .inNamespace(namespaceName)
+          .withName(persistentVolumeClaim.getMetadata().getName())
+          .get()
+          .getStatus()
+          .getPhase()
+          .contentEquals("Bound")) {
+        log.error(
+            Status.FAILED
                 + "! The '"
                 + persistentVolumeClaim.getMetadata().getName()
-                + "' PersistentVolumeClaim was rejected!");
-        log.info(e.getMessage());
+                + "' PersistentVolumeClaim was provisioned and is bound to the '"
+                + persistentVolume.getMetadata().getName()
+                + "' PersistentVolume!");
+
+        ExecKubernetesCmd.getObjectEvents(
+            persistentVolumeClaim.getMetadata().getName(), namespaceName);
+
+        throw new io.cucumber.java.PendingException();
       }
+    } catch (KubernetesClientException e) {
+      log.info(
+          Status.PASSED
+              + "! The '"
+              + persistentVolumeClaim.getMetadata().getName()
+              + "' PersistentVolumeClaim was rejected!");
+      log.info(e.getMessage());
     }
-    ExecKubernetesCmd.deleteResourceQuota(resourceQuota.getMetadata().getName(), NAMESPACE_NAME);
-    ExecKubernetesCmd.deletePersistentVolume(persistentVolume.getMetadata().getName());
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+    ExecKubernetesCmd.deleteNamespace(namespaceName);
+    DeleteEngine.inNamespace(namespaceName).add(persistentVolume).await(3, TimeUnit.MINUTES);
   }
 
   @Then("A PersistentVolumeClaim with no storage specification will get the default one")
@@ -434,7 +485,7 @@ public class TestKubeApiServer {
         new PersistentVolumeClaimBuilder()
             .withNewMetadata()
             .withName("pvc-with-no-class-specification-test-1")
-            .withNamespace(NAMESPACE_NAME)
+            .withNamespace(namespaceName)
             .endMetadata()
             .withNewSpec()
             .withAccessModes("ReadWriteOnce")
@@ -444,20 +495,19 @@ public class TestKubeApiServer {
             .endSpec()
             .build();
 
-    ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, NAMESPACE_NAME);
+    ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, namespaceName);
 
     String storageClassName;
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      storageClassName =
-          kubernetesClient
-              .persistentVolumeClaims()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(persistentVolumeClaim.getMetadata().getName())
-              .get()
-              .getSpec()
-              .getStorageClassName();
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    storageClassName =
+        kubernetesClient
+            .persistentVolumeClaims()
+            .inNamespace(namespaceName)
+            .withName(persistentVolumeClaim.getMetadata().getName())
+            .get()
+            .getSpec()
+            .getStorageClassName();
     boolean pvcGotDefaultClass = storageClassName.equals(defaultStorageClassName);
 
     ExecShellCmd describePersistentVolumeClaim = new ExecShellCmd();
@@ -465,11 +515,10 @@ public class TestKubeApiServer {
         "kubectl describe pvc "
             + persistentVolumeClaim.getMetadata().getName()
             + " --namespace "
-            + NAMESPACE_NAME);
+            + namespaceName);
     String describePersistentVolumeClaimOutput = describePersistentVolumeClaim.returnAsString();
 
-    ExecKubernetesCmd.getObjectEvents(
-        persistentVolumeClaim.getMetadata().getName(), NAMESPACE_NAME);
+    ExecKubernetesCmd.getObjectEvents(persistentVolumeClaim.getMetadata().getName(), namespaceName);
 
     if (pvcGotDefaultClass) {
       log.info(
@@ -492,8 +541,7 @@ public class TestKubeApiServer {
       throw new io.cucumber.java.PendingException();
     }
 
-    ExecKubernetesCmd.deletePersistentVolumeClaim(
-        persistentVolumeClaim.getMetadata().getName(), NAMESPACE_NAME);
+    DeleteEngine.inNamespace(namespaceName).add(persistentVolumeClaim).await(3, TimeUnit.MINUTES);
   }
 
   @When("I do not have a default storage class")
@@ -501,42 +549,41 @@ public class TestKubeApiServer {
     // See https://kubernetes.io/docs/tasks/administer-cluster/change-default-storage-class/
     log.info(
         "Making sure there is no default storage class in the '"
-            + NAMESPACE_NAME
+            + namespaceName
             + "' namespace...");
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      List<StorageClass> storageClassList =
-          kubernetesClient.storage().storageClasses().list().getItems();
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    List<StorageClass> storageClassList =
+        kubernetesClient.storage().storageClasses().list().getItems();
 
-      for (StorageClass storageClass : storageClassList) {
-        kubernetesClient
-            .storage()
-            .storageClasses()
-            .inNamespace(NAMESPACE_NAME)
-            .withName(storageClass.getMetadata().getName())
-            .edit()
-            .editMetadata()
-            .addToAnnotations(
-                Collections.singletonMap("storageclass.kubernetes.io/is-default-class", "false"))
-            .endMetadata()
-            .done();
-        log.info("Storage class '" + storageClass.getMetadata().getName() + "' is now non-default");
-      }
+    for (StorageClass storageClass : storageClassList) {
+      kubernetesClient
+          .storage()
+          .storageClasses()
+          .inNamespace(namespaceName)
+          .withName(storageClass.getMetadata().getName())
+          .edit()
+          .editMetadata()
+          .addToAnnotations(
+              Collections.singletonMap("storageclass.kubernetes.io/is-default-class", "false"))
+          .endMetadata()
+          .done();
+      log.info("Storage class '" + storageClass.getMetadata().getName() + "' is now non-default");
+    }
 
-      for (StorageClass storageClass : storageClassList) {
-        if (kubernetesClient
-            .storage()
-            .storageClasses()
-            .inNamespace(NAMESPACE_NAME)
-            .withName(storageClass.getMetadata().getName())
-            .get()
-            .getMetadata()
-            .getAnnotations()
-            .toString()
-            .contains("storageclass.kubernetes.io/is-default-class=true")) {
-          log.error("The storage class '" + storageClass.getMetadata().getName() + "' is default!");
-          throw new io.cucumber.java.PendingException();
-        }
+    for (StorageClass storageClass : storageClassList) {
+      if (kubernetesClient
+          .storage()
+          .storageClasses()
+          .inNamespace(namespaceName)
+          .withName(storageClass.getMetadata().getName())
+          .get()
+          .getMetadata()
+          .getAnnotations()
+          .toString()
+          .contains("storageclass.kubernetes.io/is-default-class=true")) {
+        log.error("The storage class '" + storageClass.getMetadata().getName() + "' is default!");
+        throw new io.cucumber.java.PendingException();
       }
     }
   }
@@ -549,7 +596,7 @@ public class TestKubeApiServer {
         new PersistentVolumeClaimBuilder()
             .withNewMetadata()
             .withName("pvc-with-no-class-specification-test-2")
-            .withNamespace(NAMESPACE_NAME)
+            .withNamespace(namespaceName)
             .endMetadata()
             .withNewSpec()
             .withAccessModes("ReadWriteOnce")
@@ -558,26 +605,25 @@ public class TestKubeApiServer {
             .endResources()
             .endSpec()
             .build();
-    ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, NAMESPACE_NAME);
+    ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, namespaceName);
 
     ExecShellCmd describePersistentVolumeClaim = new ExecShellCmd();
     describePersistentVolumeClaim.execute(
         "kubectl describe pvc "
             + persistentVolumeClaim.getMetadata().getName()
             + " --namespace "
-            + NAMESPACE_NAME);
+            + namespaceName);
     String describePersistentVolumeClaimOutput = describePersistentVolumeClaim.returnAsString();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      pvcStorageClassName =
-          kubernetesClient
-              .persistentVolumeClaims()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(persistentVolumeClaim.getMetadata().getName())
-              .get()
-              .getSpec()
-              .getStorageClassName();
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    pvcStorageClassName =
+        kubernetesClient
+            .persistentVolumeClaims()
+            .inNamespace(namespaceName)
+            .withName(persistentVolumeClaim.getMetadata().getName())
+            .get()
+            .getSpec()
+            .getStorageClassName();
 
     if (pvcStorageClassName == null) {
       log.info(
@@ -600,13 +646,12 @@ public class TestKubeApiServer {
       output any events. Look at the describePersistentVolumeClaimOutput from the 'if' statement.
       */
       ExecKubernetesCmd.getObjectEvents(
-          persistentVolumeClaim.getMetadata().getName(), NAMESPACE_NAME);
+          persistentVolumeClaim.getMetadata().getName(), namespaceName);
       log.error(describePersistentVolumeClaimOutput);
       throw new io.cucumber.java.PendingException();
     }
 
-    ExecKubernetesCmd.deletePersistentVolumeClaim(
-        persistentVolumeClaim.getMetadata().getName(), NAMESPACE_NAME);
+    DeleteEngine.inNamespace(namespaceName).add(persistentVolumeClaim).await(3, TimeUnit.MINUTES);
   }
 
   @When("I have multiple default storage classes")
@@ -615,7 +660,7 @@ public class TestKubeApiServer {
         "Creating '"
             + SECOND_STORAGE_CLASS_NAME
             + "' storage class in the '"
-            + NAMESPACE_NAME
+            + namespaceName
             + "' namespace...");
     ObjectMeta metadata = new ObjectMeta();
     metadata.setName(SECOND_STORAGE_CLASS_NAME);
@@ -630,45 +675,44 @@ public class TestKubeApiServer {
             .withVolumeBindingMode("Immediate")
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.storage().storageClasses().inNamespace(NAMESPACE_NAME).create(storageClass);
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.storage().storageClasses().inNamespace(namespaceName).create(storageClass);
 
-      log.info(
-          "Making sure that all storage classes in the '"
-              + NAMESPACE_NAME
-              + "' namespace are default...");
-      List<StorageClass> storageClassList =
-          kubernetesClient.storage().storageClasses().list().getItems();
+    log.info(
+        "Making sure that all storage classes in the '"
+            + namespaceName
+            + "' namespace are default...");
+    List<StorageClass> storageClassList =
+        kubernetesClient.storage().storageClasses().list().getItems();
 
-      for (StorageClass sc : storageClassList) {
-        kubernetesClient
-            .storage()
-            .storageClasses()
-            .inNamespace(NAMESPACE_NAME)
-            .withName(sc.getMetadata().getName())
-            .edit()
-            .editMetadata()
-            .addToAnnotations(
-                Collections.singletonMap("storageclass.kubernetes.io/is-default-class", "true"))
-            .endMetadata()
-            .done();
-        log.info("Storage class '" + sc.getMetadata().getName() + "' is now default");
-      }
+    for (StorageClass sc : storageClassList) {
+      kubernetesClient
+          .storage()
+          .storageClasses()
+          .inNamespace(namespaceName)
+          .withName(sc.getMetadata().getName())
+          .edit()
+          .editMetadata()
+          .addToAnnotations(
+              Collections.singletonMap("storageclass.kubernetes.io/is-default-class", "true"))
+          .endMetadata()
+          .done();
+      log.info("Storage class '" + sc.getMetadata().getName() + "' is now default");
+    }
 
-      for (StorageClass sc : storageClassList) {
-        if (kubernetesClient
-            .storage()
-            .storageClasses()
-            .inNamespace(NAMESPACE_NAME)
-            .withName(sc.getMetadata().getName())
-            .get()
-            .getMetadata()
-            .getAnnotations()
-            .toString()
-            .contains("storageclass.kubernetes.io/is-default-class=false")) {
-          log.error("The storage class '" + sc.getMetadata().getName() + "' is non-default!");
-          throw new io.cucumber.java.PendingException();
-        }
+    for (StorageClass sc : storageClassList) {
+      if (kubernetesClient
+          .storage()
+          .storageClasses()
+          .inNamespace(namespaceName)
+          .withName(sc.getMetadata().getName())
+          .get()
+          .getMetadata()
+          .getAnnotations()
+          .toString()
+          .contains("storageclass.kubernetes.io/is-default-class=false")) {
+        log.error("The storage class '" + sc.getMetadata().getName() + "' is non-default!");
+        throw new io.cucumber.java.PendingException();
       }
     }
   }
@@ -679,7 +723,7 @@ public class TestKubeApiServer {
         new PersistentVolumeClaimBuilder()
             .withNewMetadata()
             .withName("pvc-with-no-class-specification-test-3")
-            .withNamespace(NAMESPACE_NAME)
+            .withNamespace(namespaceName)
             .endMetadata()
             .withNewSpec()
             .withAccessModes("ReadWriteOnce")
@@ -689,42 +733,467 @@ public class TestKubeApiServer {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
-        ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, NAMESPACE_NAME);
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      ExecKubernetesCmd.createPersistentVolumeClaim(persistentVolumeClaim, namespaceName);
 
-        if (kubernetesClient
-            .persistentVolumeClaims()
-            .inNamespace(NAMESPACE_NAME)
-            .withName(persistentVolumeClaim.getMetadata().getName())
-            .get()
-            .getStatus()
-            .getPhase()
-            .contentEquals("Bound")) {
-          log.error(
-              Status.FAILED
-                  + "! The '"
-                  + persistentVolumeClaim.getMetadata().getName()
-                  + "' PersistentVolumeClaim was provisioned and is bound to the '"
-                  + persistentVolume.getMetadata().getName()
-                  + "' PersistentVolume!");
-
-          ExecKubernetesCmd.getObjectEvents(
-              persistentVolumeClaim.getMetadata().getName(), NAMESPACE_NAME);
-
-          throw new io.cucumber.java.PendingException();
-        }
-      } catch (KubernetesClientException e) {
-        log.info(
-            Status.PASSED
+      if (kubernetesClient
+          .persistentVolumeClaims()
+          .inNamespace(namespaceName)
+          .withName(persistentVolumeClaim.getMetadata().getName())
+          .get()
+          .getStatus()
+          .getPhase()
+          .contentEquals("Bound")) {
+        log.error(
+            Status.FAILED
                 + "! The '"
                 + persistentVolumeClaim.getMetadata().getName()
-                + "' PersistentVolumeClaim was rejected!");
-        log.info(e.getMessage());
+                + "' PersistentVolumeClaim was provisioned and is bound to the '"
+                + persistentVolume.getMetadata().getName()
+                + "' PersistentVolume!");
+
+        ExecKubernetesCmd.getObjectEvents(
+            persistentVolumeClaim.getMetadata().getName(), namespaceName);
+
+        throw new io.cucumber.java.PendingException();
+      }
+    } catch (KubernetesClientException e) {
+      log.info(
+          Status.PASSED
+              + "! The '"
+              + persistentVolumeClaim.getMetadata().getName()
+              + "' PersistentVolumeClaim was rejected!");
+      log.info(e.getMessage());
+    }
+    StorageClass secondStorageClass =
+        new StorageClassBuilder()
+            .withNewMetadata()
+            .withName(SECOND_STORAGE_CLASS_NAME)
+            .endMetadata()
+            .build();
+    ExecKubernetesCmd.deleteNamespace(namespaceName);
+    DeleteEngine.inNamespace(namespaceName)
+        .add(secondStorageClass, persistentVolume)
+        .await(3, TimeUnit.MINUTES);
+  }
+
+  /*
+  Every other claim is a prohibited one, which only a LimitRange rejects; a ResourceQuota fits the
+  tolerated ones only, so it rejects whatever comes after them. Admission objects:
+  - none: the claims name a storage class, so no admission plugin does anything
+  - limit-range: the `A max 5 GB LimitRange` one
+  - resource-quota: a storage ResourceQuota for all the tolerated claims
+  - default-storage-class: the claims name no storage class, so DefaultStorageClass fills it in;
+    an unprovisioned class is the only default one meanwhile, so nothing gets provisioned or bound
+  - all: the three of them
+   */
+  @When(
+      "I create {int} PersistentVolumeClaims, {int} at a time, in a namespace with {word} admission"
+          + " objects")
+  public void i_create_PersistentVolumeClaims_at_a_time_in_a_namespace_with_admission_objects(
+      int numberOfClaims, int concurrency, String admissionObjects) {
+    this.admissionObjects = admissionObjects;
+    numberOfBenchmarkClaims = numberOfClaims;
+    boolean withLimitRange =
+        admissionObjects.equals("limit-range") || admissionObjects.equals("all");
+    boolean withResourceQuota =
+        admissionObjects.equals("resource-quota") || admissionObjects.equals("all");
+    boolean withDefaultStorageClass =
+        admissionObjects.equals("default-storage-class") || admissionObjects.equals("all");
+    if (!withLimitRange
+        && !withResourceQuota
+        && !withDefaultStorageClass
+        && !admissionObjects.equals("none")) {
+      log.error("Unknown admission objects '" + admissionObjects + "'");
+      throw new io.cucumber.java.PendingException();
+    }
+
+    if (withLimitRange) {
+      a_max_GB_LimitRange(PROHIBITED_CLAIM_GIGABYTES - 1);
+    }
+    if (withResourceQuota) {
+      a_max_GB_storage_ResourceQuota((numberOfClaims + 1) / 2 * TOLERATED_CLAIM_GIGABYTES);
+    }
+    if (withDefaultStorageClass) {
+      makeUnprovisionedStorageClassTheOnlyDefault();
+    }
+
+    List<PersistentVolumeClaim> claims = new ArrayList<>();
+    for (int i = 0; i < numberOfClaims; i++) {
+      int claimGigabytes = i % 2 == 0 ? TOLERATED_CLAIM_GIGABYTES : PROHIBITED_CLAIM_GIGABYTES;
+      claims.add(
+          new PersistentVolumeClaimBuilder()
+              .withNewMetadata()
+              .withName("admission-claim-test-" + i)
+              .endMetadata()
+              .withNewSpec()
+              .withStorageClassName(
+                  withDefaultStorageClass ? null : UNPROVISIONED_STORAGE_CLASS_NAME)
+              .withAccessModes("ReadWriteOnce")
+              .withNewResources()
+              .addToRequests("storage", new Quantity(claimGigabytes + "Gi"))
+              .endResources()
+              .endSpec()
+              .build());
+    }
+
+    try {
+      admissionResult =
+          AdmissionBenchmark.of(namespaceName, claims).withConcurrency(concurrency).run();
+    } catch (RuntimeException e) {
+      if (displacedDefaultStorageClassNames != null) {
+        restoreDefaultStorageClasses();
+      }
+      throw e;
+    }
+  }
+
+  @Then("The admission latency and throughput should be reported for accepted and rejected claims")
+  public void
+      the_admission_latency_and_throughput_should_be_reported_for_accepted_and_rejected_claims() {
+    StringBuilder report = new StringBuilder();
+    for (Outcome outcome : Outcome.values()) {
+      report.append(
+          String.format(
+              "%n  %s, %.1f claims per second",
+              admissionResult.latency(outcome).summary(), admissionResult.throughput(outcome)));
+    }
+    log.info("Admission with " + admissionObjects + " admission objects:" + report);
+    if (admissionResult.getFirstRejection() != null) {
+      log.info("First rejection: " + admissionResult.getFirstRejection());
+    }
+
+    // Only a LimitRange rejects every prohibited claim, and nothing else
+    int expectedRejections;
+    switch (admissionObjects) {
+      case "limit-range":
+      case "all":
+        expectedRejections = numberOfBenchmarkClaims / 2;
+        break;
+      case "resource-quota":
+        expectedRejections = -1;
+        break;
+      default:
+        expectedRejections = 0;
+    }
+    int rejections = admissionResult.countOf(Outcome.REJECTED);
+
+    ExecKubernetesCmd.deleteNamespace(namespaceName);
+    DeleteEngine.inNamespace(namespaceName).add(persistentVolume).await(3, TimeUnit.MINUTES);
+    if (displacedDefaultStorageClassNames != null) {
+      restoreDefaultStorageClasses();
+    }
+
+    if (admissionResult.getErrors() > 0) {
+      log.error(
+          Status.FAILED
+              + "! ["
+              + admissionResult.getErrors()
+              + "] PersistentVolumeClaim creates failed for other reasons than admission!");
+      throw new io.cucumber.java.PendingException();
+    } else if (expectedRejections >= 0 && rejections != expectedRejections) {
+      log.error(
+          Status.FAILED
+              + "! ["
+              + rejections
+              + "] PersistentVolumeClaims were rejected instead of ["
+              + expectedRejections
+              + "]!");
+      throw new io.cucumber.java.PendingException();
+    } else if (expectedRejections < 0 && rejections == 0) {
+      log.error(Status.FAILED + "! The ResourceQuota didn't reject any PersistentVolumeClaim!");
+      throw new io.cucumber.java.PendingException();
+    } else {
+      log.info(
+          Status.PASSED
+              + "! ["
+              + admissionResult.countOf(Outcome.ACCEPTED)
+              + "] PersistentVolumeClaims were accepted and ["
+              + rejections
+              + "] rejected!");
+    }
+  }
+
+  /*
+  Otherwise the claims get minikube's `standard` class, which provisions a hostPath volume for each
+  of them, and the Background's PersistentVolume can be bound as well.
+   */
+  private void makeUnprovisionedStorageClassTheOnlyDefault() {
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    displacedDefaultStorageClassNames = new ArrayList<>();
+    for (StorageClass storageClass :
+        kubernetesClient.storage().storageClasses().list().getItems()) {
+      if (storageClass.getMetadata().getAnnotations() != null
+          && "true"
+              .equals(
+                  storageClass
+                      .getMetadata()
+                      .getAnnotations()
+                      .get("storageclass.kubernetes.io/is-default-class"))) {
+        setDefaultStorageClass(storageClass.getMetadata().getName(), false);
+        displacedDefaultStorageClassNames.add(storageClass.getMetadata().getName());
       }
     }
-    ExecKubernetesCmd.deleteStorageClass(SECOND_STORAGE_CLASS_NAME, NAMESPACE_NAME);
-    ExecKubernetesCmd.deletePersistentVolume(persistentVolume.getMetadata().getName());
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+
+    // WaitForFirstConsumer: the claims have no consumer, so no volume is even looked for
+    StorageClass unprovisionedStorageClass =
+        new StorageClassBuilder()
+            .withNewMetadata()
+            .withName(UNPROVISIONED_STORAGE_CLASS_NAME)
+            .addToAnnotations("storageclass.kubernetes.io/is-default-class", "true")
+            .endMetadata()
+            .withProvisioner("kubernetes.io/no-provisioner")
+            .withReclaimPolicy("Retain")
+            .withVolumeBindingMode("WaitForFirstConsumer")
+            .build();
+    kubernetesClient.storage().storageClasses().createOrReplace(unprovisionedStorageClass);
+    log.info(
+        "'"
+            + UNPROVISIONED_STORAGE_CLASS_NAME
+            + "' is now the only default storage class, instead of "
+            + displacedDefaultStorageClassNames);
+  }
+
+  private void restoreDefaultStorageClasses() {
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.storage().storageClasses().withName(UNPROVISIONED_STORAGE_CLASS_NAME).delete();
+    displacedDefaultStorageClassNames.forEach(
+        storageClassName -> setDefaultStorageClass(storageClassName, true));
+    log.info("The default storage classes are " + displacedDefaultStorageClassNames + " again");
+    displacedDefaultStorageClassNames = null;
+  }
+
+  private static void setDefaultStorageClass(String storageClassName, boolean isDefault) {
+    KubernetesClientProvider.get()
+        .storage()
+        .storageClasses()
+        .withName(storageClassName)
+        .edit()
+        .editMetadata()
+        .addToAnnotations(
+            Collections.singletonMap(
+                "storageclass.kubernetes.io/is-default-class", String.valueOf(isDefault)))
+        .endMetadata()
+        .done();
+  }
+
+  @When(
+      "{int} PersistentVolumeClaims of {int} GB race for a {int} GB storage ResourceQuota, {int} at"
+          + " a time")
+  public void PersistentVolumeClaims_of_GB_race_for_a_GB_storage_ResourceQuota_at_a_time(
+      int numberOfClaims, int claimGigabytes, int quotaGigabytes, int concurrency) {
+    this.quotaGigabytes = quotaGigabytes;
+    a_max_GB_storage_ResourceQuota(quotaGigabytes);
+
+    List<PersistentVolumeClaim> claims = new ArrayList<>();
+    for (int i = 0; i < numberOfClaims; i++) {
+      claims.add(
+          new PersistentVolumeClaimBuilder()
+              .withNewMetadata()
+              .withName("quota-claim-test-" + i)
+              .endMetadata()
+              .withNewSpec()
+              .withStorageClassName(UNPROVISIONED_STORAGE_CLASS_NAME)
+              .withAccessModes("ReadWriteOnce")
+              .withNewResources()
+              .addToRequests("storage", new Quantity(claimGigabytes + "Gi"))
+              .endResources()
+              .endSpec()
+              .build());
+    }
+
+    // All of them are released at once, so most of them update the quota's usage at the same time
+    admissionResult =
+        AdmissionBenchmark.of(namespaceName, claims)
+            .withConcurrency(concurrency)
+            .withConflictRetries(QUOTA_CONFLICT_RETRIES)
+            .run();
+  }
+
+  @Then("The ResourceQuota should never be oversubscribed, and the contention is reported")
+  public void the_ResourceQuota_should_never_be_oversubscribed_and_the_contention_is_reported() {
+    log.info(
+        "["
+            + admissionResult.countOf(Outcome.ACCEPTED)
+            + "] PersistentVolumeClaims accepted, ["
+            + admissionResult.countOf(Outcome.REJECTED)
+            + "] rejected, ["
+            + admissionResult.getConflictRetries()
+            + "] conflict retries, ["
+            + admissionResult.getErrors()
+            + "] errors\n  "
+            + admissionResult.latency(Outcome.ACCEPTED).summary()
+            + "\n  "
+            + admissionResult.latency(Outcome.REJECTED).summary());
+
+    // What the accepted claims ask for, and what the quota thinks is used
+    BigDecimal hardBytes = Quantity.getAmountInBytes(new Quantity(quotaGigabytes + "Gi"));
+    BigDecimal acceptedBytes =
+        admissionResult.getAcceptedClaims().stream()
+            .map(claim -> claim.getSpec().getResources().getRequests().get("storage"))
+            .map(Quantity::getAmountInBytes)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    Quantity used =
+        kubernetesClient
+            .resourceQuotas()
+            .inNamespace(namespaceName)
+            .withName(resourceQuota.getMetadata().getName())
+            .get()
+            .getStatus()
+            .getUsed()
+            .get("requests.storage");
+    BigDecimal usedBytes = used == null ? BigDecimal.ZERO : Quantity.getAmountInBytes(used);
+    log.info(
+        "The accepted claims ask for "
+            + acceptedBytes.divide(BYTES_PER_GIGABYTE)
+            + " GB, the quota's usage is "
+            + usedBytes.divide(BYTES_PER_GIGABYTE)
+            + " GB of "
+            + quotaGigabytes
+            + " GB");
+
+    ExecKubernetesCmd.deleteNamespace(namespaceName);
+    DeleteEngine.inNamespace(namespaceName).add(persistentVolume).await(3, TimeUnit.MINUTES);
+
+    if (acceptedBytes.compareTo(hardBytes) > 0 || usedBytes.compareTo(hardBytes) > 0) {
+      log.error(Status.FAILED + "! The storage ResourceQuota was oversubscribed!");
+      throw new io.cucumber.java.PendingException();
+    } else if (admissionResult.getErrors() > 0) {
+      log.error(
+          Status.FAILED
+              + "! ["
+              + admissionResult.getErrors()
+              + "] PersistentVolumeClaim creates failed, even after retrying their conflicts!");
+      throw new io.cucumber.java.PendingException();
+    } else {
+      log.info(Status.PASSED + "! The storage ResourceQuota was never oversubscribed!");
+    }
+  }
+
+  /*
+  The volumes and the claims are all 1 GB, in a storage class of their own with no provisioner, so
+  the PV controller (or, with WaitForFirstConsumer, the scheduler) has to pick one of the
+  pre-created volumes for every claim. With WaitForFirstConsumer, every claim gets a consumer pod.
+   */
+  @When(
+      "I bind {int} PersistentVolumeClaims to {int} local PersistentVolumes with {word} binding,"
+          + " {int} at a time")
+  public void i_bind_PersistentVolumeClaims_to_local_PersistentVolumes_with_binding_at_a_time(
+      int numberOfClaims, int numberOfVolumes, String volumeBindingMode, int concurrency) {
+    numberOfBindingClaims = numberOfClaims;
+    if (!volumeBindingMode.equals("Immediate")
+        && !volumeBindingMode.equals("WaitForFirstConsumer")) {
+      log.error("Unknown volume binding mode '" + volumeBindingMode + "'");
+      throw new io.cucumber.java.PendingException();
+    }
+
+    bindingStorageClass =
+        new StorageClassBuilder()
+            .withNewMetadata()
+            .withName("rcnit-" + volumeBindingMode.toLowerCase() + "-binding-test")
+            .endMetadata()
+            .withProvisioner("kubernetes.io/no-provisioner")
+            .withReclaimPolicy("Retain")
+            .withVolumeBindingMode(volumeBindingMode)
+            .build();
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.storage().storageClasses().createOrReplace(bindingStorageClass);
+    log.info("Created '" + bindingStorageClass.getMetadata().getName() + "' storage class");
+
+    for (int i = 0; i < numberOfVolumes; i++) {
+      PersistentVolume volume =
+          new PersistentVolumeBuilder(
+                  localPersistentVolume(
+                      "binding-volume-test-" + i,
+                      1,
+                      bindingStorageClass.getMetadata().getName(),
+                      "/mnt/disks/binding-volume-test-" + i))
+              .editMetadata()
+              .addToLabels(
+                  BenchmarkRecorder.BENCHMARK_LABEL, bindingStorageClass.getMetadata().getName())
+              .endMetadata()
+              .build();
+      kubernetesClient.persistentVolumes().createOrReplace(volume);
+    }
+    log.info("Created [" + numberOfVolumes + "] local PersistentVolumes");
+
+    PersistentVolumeClaim claimTemplate =
+        new PersistentVolumeClaimBuilder()
+            .withNewMetadata()
+            .withName("binding-claim-test")
+            .endMetadata()
+            .withNewSpec()
+            .withStorageClassName(bindingStorageClass.getMetadata().getName())
+            .withAccessModes("ReadWriteOnce")
+            .withNewResources()
+            .addToRequests("storage", new Quantity("1Gi"))
+            .endResources()
+            .endSpec()
+            .build();
+    ClaimBindingBenchmark benchmark =
+        ClaimBindingBenchmark.of(namespaceName, claimTemplate)
+            .withClaims(numberOfClaims)
+            .withConcurrency(concurrency);
+    if (volumeBindingMode.equals("WaitForFirstConsumer")) {
+      // The volume paths don't exist, so the consumers never start; binding happens before that
+      Pod consumerTemplate =
+          new PodBuilder()
+              .withNewMetadata()
+              .withName("binding-consumer-test")
+              .endMetadata()
+              .withNewSpec()
+              .addNewContainer()
+              .withName("binding-consumer-test")
+              .withImage("k8s.gcr.io/echoserver:1.4")
+              .addNewVolumeMount()
+              .withName(ClaimBindingBenchmark.CONSUMER_VOLUME_NAME)
+              .withMountPath("/data")
+              .endVolumeMount()
+              .endContainer()
+              .endSpec()
+              .build();
+      benchmark.withConsumer(consumerTemplate);
+    }
+    bindingResult = benchmark.run(3, TimeUnit.MINUTES);
+  }
+
+  @Then("Every PersistentVolumeClaim should be Bound, and the binding latencies are reported")
+  public void every_PersistentVolumeClaim_should_be_Bound_and_the_binding_latencies_are_reported() {
+    log.info(
+        bindingStorageClass.getMetadata().getName()
+            + ": "
+            + bindingResult.getBindingLatency().summary()
+            + String.format(", %.1f claims per second", bindingResult.getThroughput()));
+
+    // The claims (and consumers) go with the namespace; the volumes are released once they're gone
+    ExecKubernetesCmd.deleteNamespace(namespaceName);
+    DeleteEngine.inNamespace(namespaceName)
+        .add(bindingStorageClass, persistentVolume)
+        .addWithLabel(
+            PersistentVolume.class,
+            BenchmarkRecorder.BENCHMARK_LABEL,
+            bindingStorageClass.getMetadata().getName())
+        .await(3, TimeUnit.MINUTES);
+
+    if (bindingResult.getBoundClaims() == numberOfBindingClaims) {
+      log.info(
+          Status.PASSED
+              + "! All ["
+              + numberOfBindingClaims
+              + "] PersistentVolumeClaims were Bound!");
+    } else {
+      log.error(
+          Status.FAILED
+              + "! ["
+              + bindingResult.getBoundClaims()
+              + "/"
+              + numberOfBindingClaims
+              + "] PersistentVolumeClaims were Bound, and ["
+              + bindingResult.getFailedCreates()
+              + "] failed to be created!");
+      throw new io.cucumber.java.PendingException();
+    }
   }
 }
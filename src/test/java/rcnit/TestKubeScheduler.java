@@ -14,53 +14,72 @@ import io.fabric8.kubernetes.api.model.ServiceAccountBuilder;
 import io.fabric8.kubernetes.api.model.apps.Deployment;
 import io.fabric8.kubernetes.api.model.apps.DeploymentBuilder;
 import io.fabric8.kubernetes.api.model.apps.DeploymentStatus;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
+import java.math.BigDecimal;
 import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rcnit.util.BenchmarkRecorder;
+import rcnit.util.CpuThrottleCollector;
+import rcnit.util.DeleteEngine;
 import rcnit.util.ExecKubernetesCmd;
-import rcnit.util.ExecShellCmd;
+import rcnit.util.KubernetesCache;
+import rcnit.util.KubernetesClientProvider;
+import rcnit.util.NamespacePool;
+import rcnit.util.PodLifecycleBenchmark;
+import rcnit.util.PodLifecycleBenchmark.Stage;
+import rcnit.util.ReplicaRecovery;
 
 public class TestKubeScheduler {
 
-  private static final String NAMESPACE_NAME = "rcnit-kube-scheduler-testing";
+  private static final String NAMESPACE_PREFIX = "rcnit-kube-scheduler-testing";
   private static final Logger log = LoggerFactory.getLogger(TestKubeScheduler.class);
   private static final String NODE_LABEL = "isThisTheCoolestNodeLabel";
   private static final Map<String, String> NODE_TRUE_LABEL =
       Collections.singletonMap(NODE_LABEL, "true");
-  private static Deployment helloWorldDeployment;
-  private static Pod cpuRequestPod;
-  private static Pod memoryRequestPod;
-  private static Pod cpuTestPod1;
-  private static Pod memoryTestPod1;
-  private static Pod memoryTestPod2;
-  private static ServiceAccount serviceAccount;
+  private static final ServiceAccount SERVICE_ACCOUNT =
+      new ServiceAccountBuilder()
+          .withNewMetadata()
+          .withNewName("rcnit-kube-scheduler-testing-svc-account")
+          .endMetadata()
+          .build();
+  /*
+  The next scenarios' namespaces get provisioned while the current one runs.
+  A full run of 04_testKubeScheduler.feature leases 14 namespaces: one per scenario and outline
+  example (7 scenarios, 2 pod startup and 4 scheduler throughput examples), plus a second one for
+  the throttled CPU-test, whose When step leases its own.
+   */
+  private static final NamespacePool namespacePool =
+      NamespacePool.of(NAMESPACE_PREFIX, 2, 14, SERVICE_ACCOUNT);
+  private static final long CPU_STAT_SAMPLING_MILLIS = 250;
+  private static final double MIN_THROTTLED_RATIO = 0.9;
+  // Pods scheduled per second by constraints, over every throughput example of the run
+  private static final Map<String, Double> schedulerThroughputs = new ConcurrentSkipListMap<>();
+  private String namespaceName;
+  private Deployment helloWorldDeployment;
+  private Pod cpuRequestPod;
+  private Pod memoryRequestPod;
+  private Pod cpuTestPod1;
+  private Pod memoryTestPod1;
+  private Pod memoryTestPod2;
+  private Pod terminatedTestPod;
+  private Pod benchmarkPod;
+  private int benchmarkPodCount;
+  private BenchmarkRecorder.Result<Stage> podBenchmark;
+  private String schedulerConstraints;
+  private ReplicaRecovery replicaRecovery;
 
   @When("I create a pod with a CPU request that is too big for my node")
   public void i_create_a_pod_with_a_CPU_request_that_is_too_big_for_my_node() {
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
+    namespaceName = namespacePool.lease();
 
-    serviceAccount =
-        new ServiceAccountBuilder()
-            .withNewMetadata()
-            .withNewName("rcnit-kube-scheduler-testing-svc-account")
-            .endMetadata()
-            .build();
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient
-          .serviceAccounts()
-          .inNamespace(NAMESPACE_NAME)
-          .createOrReplace(serviceAccount);
-      log.info("Created '" + serviceAccount.getMetadata().getName() + "' service account");
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
 
     cpuRequestPod =
         new PodBuilder()
@@ -68,7 +87,7 @@ public class TestKubeScheduler {
             .withName("cpu-request-test")
             .endMetadata()
             .withNewSpec()
-            .withServiceAccount(serviceAccount.getMetadata().getName())
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
             .addNewContainer()
             .withName("cpu-request-test-container")
             .withImage("k8s.gcr.io/echoserver:1.4")
@@ -81,78 +100,41 @@ public class TestKubeScheduler {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(cpuRequestPod);
-      log.info("Created '" + cpuRequestPod.getMetadata().getName() + "' pod");
-    }
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(cpuRequestPod);
+    log.info("Created '" + cpuRequestPod.getMetadata().getName() + "' pod");
 
-    /*
-    Sleeping 1 second to give the pod time to create, otherwise:
-    java.lang.IllegalArgumentException: Pod with name:[] in namespace:[] not found!
-     */
-    try {
-      Thread.sleep(1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
+    ExecKubernetesCmd.waitForPod(
+        cpuRequestPod.getMetadata().getName(),
+        namespaceName,
+        ExecKubernetesCmd::podHasSchedulingDecision,
+        "considered by the scheduler");
   }
 
   @Then("The scheduler should not schedule the pod due to insufficient CPU")
   public void the_scheduler_should_not_schedule_the_pod_due_to_insufficient_cpu() {
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      String cpuRequestPodName = cpuRequestPod.getMetadata().getName();
-      String podPhase =
-          kubernetesClient
-              .pods()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(cpuRequestPodName)
-              .get()
-              .getStatus()
-              .getPhase();
-      boolean thePodIsInPendingStatus = podPhase.contentEquals("Pending");
-      boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
-          ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(NAMESPACE_NAME);
-
-      if (!thePodIsInPendingStatus && thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
-        log.error(
-            Status.FAILED
-                + "! The '"
-                + cpuRequestPodName
-                + "' pod is in '"
-                + podPhase
-                + "' phase!");
-        throw new io.cucumber.java.PendingException();
-      } else {
-        log.info(
-            Status.PASSED
-                + "! The '"
-                + cpuRequestPodName
-                + "' pod is in '"
-                + podPhase
-                + "' phase!");
-      }
+    String cpuRequestPodName = cpuRequestPod.getMetadata().getName();
+    Pod pod = KubernetesCache.forNamespace(namespaceName).getPod(cpuRequestPodName);
+    String podPhase = pod.getStatus().getPhase();
+    boolean thePodIsInPendingStatus = podPhase.contentEquals("Pending");
+    boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
+        ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(namespaceName);
+
+    if (!thePodIsInPendingStatus && thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
+      log.error(
+          Status.FAILED + "! The '" + cpuRequestPodName + "' pod is in '" + podPhase + "' phase!");
+      throw new io.cucumber.java.PendingException();
+    } else {
+      log.info(
+          Status.PASSED + "! The '" + cpuRequestPodName + "' pod is in '" + podPhase + "' phase!");
     }
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+    namespacePool.giveBack(namespaceName);
   }
 
   @When("I create a pod with a memory request that is too big for my node")
   public void i_create_a_pod_with_a_memory_request_that_is_too_big_for_my_node() {
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
+    namespaceName = namespacePool.lease();
 
-    serviceAccount =
-        new ServiceAccountBuilder()
-            .withNewMetadata()
-            .withNewName("rcnit-kube-scheduler-testing-svc-account")
-            .endMetadata()
-            .build();
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient
-          .serviceAccounts()
-          .inNamespace(NAMESPACE_NAME)
-          .createOrReplace(serviceAccount);
-      log.info("Created '" + serviceAccount.getMetadata().getName() + "' service account");
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
 
     memoryRequestPod =
         new PodBuilder()
@@ -160,7 +142,7 @@ public class TestKubeScheduler {
             .withName("memory-request-test")
             .endMetadata()
             .withNewSpec()
-            .withServiceAccount(serviceAccount.getMetadata().getName())
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
             .addNewContainer()
             .withName("memory-request-test-container")
             .withImage("k8s.gcr.io/echoserver:1.4")
@@ -173,57 +155,44 @@ public class TestKubeScheduler {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(memoryRequestPod);
-      log.info("Created '" + memoryRequestPod.getMetadata().getName() + "' pod");
-    }
-    /*
-    Sleeping 1 second to give the pod time to create, otherwise:
-    java.lang.IllegalArgumentException: Pod with name:[] in namespace:[] not found!
-     */
-    try {
-      Thread.sleep(1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(memoryRequestPod);
+    log.info("Created '" + memoryRequestPod.getMetadata().getName() + "' pod");
+
+    ExecKubernetesCmd.waitForPod(
+        memoryRequestPod.getMetadata().getName(),
+        namespaceName,
+        ExecKubernetesCmd::podHasSchedulingDecision,
+        "considered by the scheduler");
   }
 
   @Then("The scheduler should not schedule the pod due to insufficient memory")
   public void the_scheduler_should_not_schedule_the_pod_due_to_insufficient_memory() {
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      String memoryRequestPodName = memoryRequestPod.getMetadata().getName();
-      String podPhase =
-          kubernetesClient
-              .pods()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(memoryRequestPodName)
-              .get()
-              .getStatus()
-              .getPhase();
-      boolean thePodIsInPendingStatus = podPhase.contentEquals("Pending");
-      boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
-          ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(NAMESPACE_NAME);
-
-      if (!thePodIsInPendingStatus && thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
-        log.error(
-            Status.FAILED
-                + "! The '"
-                + memoryRequestPodName
-                + "' pod is in '"
-                + podPhase
-                + "' phase!");
-        throw new io.cucumber.java.PendingException();
-      } else {
-        log.info(
-            Status.PASSED
-                + "! The '"
-                + memoryRequestPodName
-                + "' pod is in '"
-                + podPhase
-                + "' phase!");
-      }
+    String memoryRequestPodName = memoryRequestPod.getMetadata().getName();
+    Pod pod = KubernetesCache.forNamespace(namespaceName).getPod(memoryRequestPodName);
+    String podPhase = pod.getStatus().getPhase();
+    boolean thePodIsInPendingStatus = podPhase.contentEquals("Pending");
+    boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
+        ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(namespaceName);
+
+    if (!thePodIsInPendingStatus && thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
+      log.error(
+          Status.FAILED
+              + "! The '"
+              + memoryRequestPodName
+              + "' pod is in '"
+              + podPhase
+              + "' phase!");
+      throw new io.cucumber.java.PendingException();
+    } else {
+      log.info(
+          Status.PASSED
+              + "! The '"
+              + memoryRequestPodName
+              + "' pod is in '"
+              + podPhase
+              + "' phase!");
     }
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+    namespacePool.giveBack(namespaceName);
   }
 
   @When("I use {int} milliCPU from a pod with {int} milliCPU request and limit")
@@ -231,22 +200,9 @@ public class TestKubeScheduler {
       Integer amountOfCoresToUse, Integer amountOfUsableCores) {
     int amountOfCoresToUseInMacro = (int) (amountOfCoresToUse * 0.001);
 
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
-
-    serviceAccount =
-        new ServiceAccountBuilder()
-            .withNewMetadata()
-            .withNewName("rcnit-kube-scheduler-testing-svc-account")
-            .endMetadata()
-            .build();
+    namespaceName = namespacePool.lease();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient
-          .serviceAccounts()
-          .inNamespace(NAMESPACE_NAME)
-          .createOrReplace(serviceAccount);
-      log.info("Created '" + serviceAccount.getMetadata().getName() + "' service account");
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
 
     cpuTestPod1 =
         new PodBuilder()
@@ -254,7 +210,7 @@ public class TestKubeScheduler {
             .withName("cpu-test-1")
             .endMetadata()
             .withNewSpec()
-            .withServiceAccount(serviceAccount.getMetadata().getName())
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
             .addNewContainer()
             .withName("cpu-test-1-container")
             .withImage("polinux/stress")
@@ -274,82 +230,44 @@ public class TestKubeScheduler {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(cpuTestPod1);
-    }
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(cpuTestPod1);
 
-    /*
-    Sleeping 3 seconds to give the pod time to create, otherwise:
-    java.lang.IllegalArgumentException: Pod with name:[] in namespace:[] not found!
-
-    It needs 3 seconds because, I guess, on a fresh minikube installation, it takes some time to
-    pull the container image. (This is the first pod in this class that uses polinux/stress.)
-     */
-    try {
-      Thread.sleep(3 * 1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
-    ExecKubernetesCmd.waitForPodToBeReady(cpuTestPod1.getMetadata().getName(), NAMESPACE_NAME);
+    ExecKubernetesCmd.waitForPodToBeReady(cpuTestPod1.getMetadata().getName(), namespaceName);
     ExecKubernetesCmd.getPodWatchLogOutput(
-        cpuTestPod1.getMetadata().getName(), NAMESPACE_NAME, "successful run completed");
+        cpuTestPod1.getMetadata().getName(), namespaceName, "successful run completed");
 
-    /*
-    Sleeping 3 seconds to give the pod time to terminate gracefully,
-    otherwise kubernetesClient sometimes can't get podExitCode.
-     */
-    try {
-      Thread.sleep(3 * 1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
+    terminatedTestPod =
+        ExecKubernetesCmd.waitForPodToTerminate(cpuTestPod1.getMetadata().getName(), namespaceName);
   }
 
   @Then("The CPU-test pod should be fine")
   public void the_CPU_test_pod_should_be_fine() {
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      String podPhase =
-          kubernetesClient
-              .pods()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(cpuTestPod1.getMetadata().getName())
-              .get()
-              .getStatus()
-              .getPhase();
-      boolean podSucceeded = podPhase.contentEquals("Succeeded");
+    // The pod as the terminate wait saw it; the informer cache may not have caught up yet
+    Pod pod = terminatedTestPod;
+    String podPhase = pod.getStatus().getPhase();
+    boolean podSucceeded = podPhase.contentEquals("Succeeded");
 
-      /*
-      Exit code 0 means that the pod terminated normally.
-      See https://kubernetes.io/docs/concepts/workloads/pods/pod-lifecycle/#pod-phase
-       */
-      Integer podExitCode =
-          kubernetesClient
-              .pods()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(cpuTestPod1.getMetadata().getName())
-              .get()
-              .getStatus()
-              .getContainerStatuses()
-              .get(0)
-              .getState()
-              .getTerminated()
-              .getExitCode();
-      boolean podExitCodeIs0 = podExitCode.equals(0);
-      boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
-          ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(NAMESPACE_NAME);
-
-      if (podSucceeded
-          && podExitCodeIs0
-          && thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
-        log.info(Status.PASSED + "! The pod did not get terminated!");
-        log.info("Pod is in '" + podPhase + "' phase with exit code [" + podExitCode + "].");
-      } else {
-        log.error(Status.FAILED + "! The pod got terminated!");
-        log.error("Pod is in '" + podPhase + "' phase with exit code [" + podExitCode + "].");
-        throw new io.cucumber.java.PendingException();
-      }
+    /*
+    Exit code 0 means that the pod terminated normally.
+    See https://kubernetes.io/docs/concepts/workloads/pods/pod-lifecycle/#pod-phase
+     */
+    Integer podExitCode =
+        pod.getStatus().getContainerStatuses().get(0).getState().getTerminated().getExitCode();
+    boolean podExitCodeIs0 = podExitCode.equals(0);
+    boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
+        ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(namespaceName);
+
+    if (podSucceeded
+        && podExitCodeIs0
+        && thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
+      log.info(Status.PASSED + "! The pod did not get terminated!");
+      log.info("Pod is in '" + podPhase + "' phase with exit code [" + podExitCode + "].");
+    } else {
+      log.error(Status.FAILED + "! The pod got terminated!");
+      log.error("Pod is in '" + podPhase + "' phase with exit code [" + podExitCode + "].");
+      throw new io.cucumber.java.PendingException();
     }
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+    namespacePool.giveBack(namespaceName);
   }
 
   @When(
@@ -357,41 +275,11 @@ public class TestKubeScheduler {
           + "the CPU-test pod should be throttled")
   public void i_use_CPU_from_a_pod_with_CPU_compute_allocation_the_CPU_test_should_be_throttled(
       Integer amountOfCoresToUse, Integer amountOfUsableCores) {
-    int amountOfCoresUsedByTestContainer;
+    namespaceName = namespacePool.lease();
 
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
 
-    serviceAccount =
-        new ServiceAccountBuilder()
-            .withNewMetadata()
-            .withNewName("rcnit-kube-scheduler-testing-svc-account")
-            .endMetadata()
-            .build();
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient
-          .serviceAccounts()
-          .inNamespace(NAMESPACE_NAME)
-          .createOrReplace(serviceAccount);
-      log.info("Created '" + serviceAccount.getMetadata().getName() + "' service account");
-    }
-
-    /*
-    You need the metrics-server enabled for this, which collects data every minute.
-    See https://github.com/kubernetes-sigs/metrics-server/blob/master/FAQ.md#how-often-metrics-are-scraped
-    */
-    ExecShellCmd minikubeEnableMetricsAddon = new ExecShellCmd();
-    minikubeEnableMetricsAddon.execute("minikube addons enable metrics-server");
-    String minikubeEnableMetricsAddonOutput = minikubeEnableMetricsAddon.returnAsString();
-
-    if (minikubeEnableMetricsAddonOutput.contains("The 'metrics-server' addon is enabled")) {
-      log.info(minikubeEnableMetricsAddonOutput);
-    } else {
-      log.error(minikubeEnableMetricsAddonOutput);
-      throw new io.cucumber.java.PendingException();
-    }
-
-    // Don't put the timeout under 2m; the metrics-server will not return data
+    // cpu.stat counts every 100 ms CFS period, so a few seconds of stress are enough
     int amountOfCoresToUseInMacro = (int) (amountOfCoresToUse * 0.001);
     Pod cpuTestPod2 =
         new PodBuilder()
@@ -399,7 +287,7 @@ public class TestKubeScheduler {
             .withName("cpu-test-2")
             .endMetadata()
             .withNewSpec()
-            .withServiceAccount(serviceAccount.getMetadata().getName())
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
             .addNewContainer()
             .withName("cpu-test-2-container")
             .withImage("polinux/stress")
@@ -413,134 +301,76 @@ public class TestKubeScheduler {
             .addNewArg("--cpu")
             .addNewArg(String.valueOf(amountOfCoresToUseInMacro))
             .addNewArg("--timeout")
-            .addNewArg("2m")
+            .addNewArg("20s")
             .endContainer()
             .withRestartPolicy("Never")
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(cpuTestPod2);
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(cpuTestPod2);
 
-      /*
-      Sleeping 1 second to give the pod time to create, otherwise:
-      java.lang.IllegalArgumentException: Pod with name:[] in namespace:[] not found!
-       */
-      try {
-        Thread.sleep(1000);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      }
-      ExecKubernetesCmd.waitForPodToBeReady(cpuTestPod2.getMetadata().getName(), NAMESPACE_NAME);
+    ExecKubernetesCmd.waitForPodToBeReady(cpuTestPod2.getMetadata().getName(), namespaceName);
+    CpuThrottleCollector cpuThrottleCollector =
+        CpuThrottleCollector.start(
+            namespaceName,
+            cpuTestPod2.getMetadata().getName(),
+            cpuTestPod2.getSpec().getContainers().get(0).getName(),
+            CPU_STAT_SAMPLING_MILLIS,
+            TimeUnit.MILLISECONDS);
 
-      ExecKubernetesCmd.getPodWatchLogOutput(
-          cpuTestPod2.getMetadata().getName(), NAMESPACE_NAME, "successful run completed");
+    ExecKubernetesCmd.getPodWatchLogOutput(
+        cpuTestPod2.getMetadata().getName(), namespaceName, "successful run completed");
 
-      /*
-      amountOfCoresUsedByTestContainer has three assumptions:
-      1. The metrics-server will continue to display the amounts in milliCPU
-      2. There is no other pod in namespaceName
-      3. The pod created in this method has only one container
+    cpuThrottleCollector.stop();
+    log.info(cpuThrottleCollector.summary());
 
-      You might get an `IndexOutOfBoundsException` because the pod gets terminated too fast, I think.
-       */
-      try {
-        Thread.sleep(1000);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      }
-
-      amountOfCoresUsedByTestContainer =
-          Integer.parseInt(
-              kubernetesClient
-                  .top()
-                  .pods()
-                  .metrics(NAMESPACE_NAME)
-                  .getItems()
-                  .get(0)
-                  .getContainers()
-                  .get(0)
-                  .getUsage()
-                  .get("cpu")
-                  .getAmount());
-
-      log.info("==== Pod metrics in '" + NAMESPACE_NAME + "' namespace ====");
-      kubernetesClient
-          .top()
-          .pods()
-          .metrics(NAMESPACE_NAME)
-          .getItems()
-          .forEach(
-              podMetrics ->
-                  podMetrics
-                      .getContainers()
-                      .forEach(
-                          containerMetrics ->
-                              log.info(
-                                  "{}\t{}\tCPU: {}{}\tMemory: {}{}",
-                                  podMetrics.getMetadata().getName(),
-                                  containerMetrics.getName(),
-                                  containerMetrics.getUsage().get("cpu").getAmount(),
-                                  containerMetrics.getUsage().get("cpu").getFormat(),
-                                  containerMetrics.getUsage().get("memory").getAmount(),
-                                  containerMetrics.getUsage().get("memory").getFormat())));
-      log.info("==== Node metrics  ====");
-      kubernetesClient
-          .top()
-          .nodes()
-          .metrics()
-          .getItems()
-          .forEach(
-              nodeMetrics ->
-                  log.info(
-                      "{}\tCPU: {}{}\tMemory: {}{}",
-                      nodeMetrics.getMetadata().getName(),
-                      nodeMetrics.getUsage().get("cpu").getAmount(),
-                      nodeMetrics.getUsage().get("cpu").getFormat(),
-                      nodeMetrics.getUsage().get("memory").getAmount(),
-                      nodeMetrics.getUsage().get("memory").getFormat()));
+    if (cpuThrottleCollector.periodsElapsed() == 0) {
+      log.error(
+          "The cpu.stat of the '"
+              + cpuTestPod2.getMetadata().getName()
+              + "' pod couldn't be read while it ran!");
+      throw new io.cucumber.java.PendingException();
     }
-    // It can happen that the pod can take a bit more milliCPUs than allocated
-    if (amountOfCoresUsedByTestContainer < (amountOfUsableCores + 100)) {
+
+    /*
+    Asking for more than the limit, the container uses up its quota early in (nearly) every CFS
+    period and is stopped until the next one.
+     */
+    if (cpuThrottleCollector.throttledRatio() >= MIN_THROTTLED_RATIO) {
       log.info(Status.PASSED + "! The pod got throttled!");
       log.info(
           "The '"
               + cpuTestPod2.getMetadata().getName()
-              + "' pod was forced to use less than ["
+              + "' pod, using ["
               + amountOfCoresToUse
-              + "] milliCPUs (+/- 100 milliCPUs)");
+              + "] milliCPUs with a limit of ["
+              + amountOfUsableCores
+              + "], was throttled in "
+              + String.format("%.0f%%", cpuThrottleCollector.throttledRatio() * 100)
+              + " of its CPU periods");
     } else {
       log.error(Status.FAILED + "! The pod did not get throttled!");
       log.error(
           "The '"
               + cpuTestPod2.getMetadata().getName()
-              + "' pod uses more than ["
+              + "' pod, using ["
               + amountOfCoresToUse
-              + "] milliCPUs (+/- 100 milliCPUs)");
+              + "] milliCPUs with a limit of ["
+              + amountOfUsableCores
+              + "], was throttled in only "
+              + String.format("%.0f%%", cpuThrottleCollector.throttledRatio() * 100)
+              + " of its CPU periods");
       throw new io.cucumber.java.PendingException();
     }
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+    namespacePool.giveBack(namespaceName);
   }
 
   @When("I use {int} MB of memory from a pod with {int} MB memory request and limit")
   public void i_use_MB_of_memory_from_a_pod_with_MB_memory_request_and_limit(
       int amountOfMemoryToUse, int amountOfUsableMemory) {
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
+    namespaceName = namespacePool.lease();
 
-    serviceAccount =
-        new ServiceAccountBuilder()
-            .withNewMetadata()
-            .withNewName("rcnit-kube-scheduler-testing-svc-account")
-            .endMetadata()
-            .build();
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient
-          .serviceAccounts()
-          .inNamespace(NAMESPACE_NAME)
-          .createOrReplace(serviceAccount);
-      log.info("Created '" + serviceAccount.getMetadata().getName() + "' service account");
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
 
     memoryTestPod1 =
         new PodBuilder()
@@ -548,7 +378,7 @@ public class TestKubeScheduler {
             .withName("memory-test-1")
             .endMetadata()
             .withNewSpec()
-            .withServiceAccount(serviceAccount.getMetadata().getName())
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
             .addNewContainer()
             .withName("memory-test-1")
             .withImage("polinux/stress")
@@ -574,20 +404,9 @@ public class TestKubeScheduler {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(memoryTestPod1);
-    }
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(memoryTestPod1);
 
-    /*
-    Sleeping 1 second to give the pod time to create, otherwise:
-    java.lang.IllegalArgumentException: Pod with name:[] in namespace:[] not found!
-     */
-    try {
-      Thread.sleep(1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
-    ExecKubernetesCmd.waitForPodToBeReady(memoryTestPod1.getMetadata().getName(), NAMESPACE_NAME);
+    ExecKubernetesCmd.waitForPodToBeReady(memoryTestPod1.getMetadata().getName(), namespaceName);
 
     /*
     The getPodWatchLogOutput() method assumes the memory test is successful.
@@ -609,109 +428,76 @@ public class TestKubeScheduler {
     }
      */
     ExecKubernetesCmd.getPodWatchLogOutput(
-        memoryTestPod1.getMetadata().getName(), NAMESPACE_NAME, "successful run completed");
+        memoryTestPod1.getMetadata().getName(), namespaceName, "successful run completed");
 
-    /*
-    Sleeping 3 seconds to give the pod time to terminate gracefully,
-    otherwise kubernetesClient sometimes can't get podExitCode
-     */
-    try {
-      Thread.sleep(3 * 1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
+    terminatedTestPod =
+        ExecKubernetesCmd.waitForPodToTerminate(
+            memoryTestPod1.getMetadata().getName(), namespaceName);
   }
 
   @Then("The memory-test pod should be fine")
   public void the_memory_test_pod_should_be_fine() {
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      String podPhase =
-          kubernetesClient
-              .pods()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(memoryTestPod1.getMetadata().getName())
-              .get()
-              .getStatus()
-              .getPhase();
-      boolean podSucceeded = podPhase.contentEquals("Succeeded");
+    Pod pod = terminatedTestPod;
+    String podPhase = pod.getStatus().getPhase();
+    boolean podSucceeded = podPhase.contentEquals("Succeeded");
+
+    /*
+    Exit code 0 means that the pod terminated normally.
+    https://kubernetes.io/docs/concepts/workloads/pods/pod-lifecycle/#pod-phase
+     */
+    Integer podExitCode =
+        pod.getStatus().getContainerStatuses().get(0).getState().getTerminated().getExitCode();
+    boolean podExitCodeIs0 = podExitCode.equals(0);
+    boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
+        ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(namespaceName);
+
+    if (podSucceeded
+        && podExitCodeIs0
+        && thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
+      log.info(
+          Status.PASSED
+              + "! The '"
+              + memoryTestPod1.getMetadata().getName()
+              + "' pod did not get terminated!");
+      log.info(
+          "The '"
+              + memoryTestPod1.getMetadata().getName()
+              + "' pod is in '"
+              + podPhase
+              + "' phase with exit code ["
+              + podExitCode
+              + "].");
+    } else {
+      log.error(
+          Status.FAILED
+              + "! The '"
+              + memoryTestPod1.getMetadata().getName()
+              + "' pod got terminated!");
+      log.error(
+          "The '"
+              + memoryTestPod1.getMetadata().getName()
+              + "' pod is in '"
+              + podPhase
+              + "' phase with exit code ["
+              + podExitCode
+              + "].");
 
       /*
-      Exit code 0 means that the pod terminated normally.
-      https://kubernetes.io/docs/concepts/workloads/pods/pod-lifecycle/#pod-phase
-       */
-      Integer podExitCode =
-          kubernetesClient
-              .pods()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(memoryTestPod1.getMetadata().getName())
-              .get()
-              .getStatus()
-              .getContainerStatuses()
-              .get(0)
-              .getState()
-              .getTerminated()
-              .getExitCode();
-      boolean podExitCodeIs0 = podExitCode.equals(0);
-      boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
-          ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(NAMESPACE_NAME);
-
-      if (podSucceeded
-          && podExitCodeIs0
-          && thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
-        log.info(
-            Status.PASSED
-                + "! The '"
-                + memoryTestPod1.getMetadata().getName()
-                + "' pod did not get terminated!");
-        log.info(
-            "The '"
-                + memoryTestPod1.getMetadata().getName()
-                + "' pod is in '"
-                + podPhase
-                + "' phase with exit code ["
-                + podExitCode
-                + "].");
+      Only use this if you change the pod's restart policy to Always or OnFailure.
+      The pod will have BackOff events even if healthy, but with exitCode=0.
+
+      List<Event> backOffEvents =
+          KubernetesCache.forNamespace(namespaceName).events().withReason("BackOff");
+
+      if (backOffEvents.isEmpty()) {
+        log.info("The are no BackOff events");
       } else {
-        log.error(
-            Status.FAILED
-                + "! The '"
-                + memoryTestPod1.getMetadata().getName()
-                + "' pod got terminated!");
-        log.error(
-            "The '"
-                + memoryTestPod1.getMetadata().getName()
-                + "' pod is in '"
-                + podPhase
-                + "' phase with exit code ["
-                + podExitCode
-                + "].");
-
-        /*
-        Only use this if you change the pod's restart policy to Always or OnFailure.
-        The pod will have BackOff events even if healthy, but with exitCode=0.
-
-        ExecShellCmd getBackOffEventsIfAny = new ExecShellCmd();
-
-        getBackOffEventsIfAny.execute(
-            "kubectl get events "
-                + "--field-selector reason=BackOff "
-                + "--sort-by=.metadata.creationTimestamp "
-                + "--namespace "
-                + namespaceName);
-
-        String getBackOffEventsIfAnyOutput = getBackOffEventsIfAny.returnAsString();
-
-        if (getBackOffEventsIfAnyOutput.contains("No resources found")) {
-          log.info("The are no BackOff events");
-        } else {
-          log.error("There are BackOff events:");
-          log.error(getBackOffEventsIfAnyOutput);
-        }
-         */
-        throw new io.cucumber.java.PendingException();
+        log.error("There are BackOff events:\n" + EventIndex.format(backOffEvents));
       }
+       */
+      throw new io.cucumber.java.PendingException();
     }
-    ExecKubernetesCmd.deletePod(memoryTestPod1.getMetadata().getName(), NAMESPACE_NAME);
+    DeleteEngine.inNamespace(namespaceName).add(memoryTestPod1).await(3, TimeUnit.MINUTES);
   }
 
   @When("I use {int} MB of memory from a pod with {int} MB memory allocation")
@@ -723,7 +509,7 @@ public class TestKubeScheduler {
             .withName("memory-test-2")
             .endMetadata()
             .withNewSpec()
-            .withServiceAccount(serviceAccount.getMetadata().getName())
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
             .addNewContainer()
             .withName("memory-test-2-container")
             .withImage("polinux/stress")
@@ -749,128 +535,87 @@ public class TestKubeScheduler {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(memoryTestPod2);
-    }
-    /*
-    Sleeping 10 seconds to give the pod time to create.
-    Can't use waitForPodToBeReady - see method.
-     */
-    try {
-      Thread.sleep(10 * 1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(memoryTestPod2);
+    // Can't use waitForPodToBeReady because the pod can get OOMKilled before it's ever Ready
+    ExecKubernetesCmd.waitForPodToStart(memoryTestPod2.getMetadata().getName(), namespaceName);
 
     // I assume the run failed
     ExecKubernetesCmd.getPodWatchLogOutput(
-        memoryTestPod2.getMetadata().getName(), NAMESPACE_NAME, "failed run completed");
+        memoryTestPod2.getMetadata().getName(), namespaceName, "failed run completed");
 
-    /*
-    Sleeping 3 seconds to give the pod time to terminate gracefully,
-    otherwise kubernetesClient sometimes can't get podExitCode
-     */
-    try {
-      Thread.sleep(3 * 1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
+    terminatedTestPod =
+        ExecKubernetesCmd.waitForPodToTerminate(
+            memoryTestPod2.getMetadata().getName(), namespaceName);
   }
 
   @Then("The memory-test pod should be terminated")
   public void the_memory_test_pod_should_be_terminated() {
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      String podPhase =
-          kubernetesClient
-              .pods()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(memoryTestPod2.getMetadata().getName())
-              .get()
-              .getStatus()
-              .getPhase();
-      boolean podSucceeded = podPhase.contentEquals("Succeeded");
+    Pod pod = terminatedTestPod;
+    String podPhase = pod.getStatus().getPhase();
+    boolean podSucceeded = podPhase.contentEquals("Succeeded");
+
+    /*
+    Exit code 0 means the pod terminated normally.
+    https://kubernetes.io/docs/concepts/workloads/pods/pod-lifecycle/#pod-phase
+     */
+    Integer podExitCode =
+        pod.getStatus().getContainerStatuses().get(0).getState().getTerminated().getExitCode();
+    boolean podExitCodeIs0 = podExitCode.equals(0);
+    boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
+        ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(namespaceName);
 
+    if (podSucceeded
+        && podExitCodeIs0
+        && thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
+      log.error(
+          Status.FAILED
+              + "! The '"
+              + memoryTestPod2.getMetadata().getName()
+              + "' pod did not get terminated!");
+      log.error(
+          "The '"
+              + memoryTestPod2.getMetadata().getName()
+              + "' pod is in '"
+              + podPhase
+              + "' phase with exit code ["
+              + podExitCode
+              + "].");
+      throw new io.cucumber.java.PendingException();
+    } else {
+      log.info(
+          Status.PASSED
+              + "! The '"
+              + memoryTestPod2.getMetadata().getName()
+              + "' pod got terminated!");
+      log.info(
+          "The '"
+              + memoryTestPod2.getMetadata().getName()
+              + "' pod is in '"
+              + podPhase
+              + "' phase with exit code ["
+              + podExitCode
+              + "].");
       /*
-      Exit code 0 means the pod terminated normally.
-      https://kubernetes.io/docs/concepts/workloads/pods/pod-lifecycle/#pod-phase
-       */
-      Integer podExitCode =
-          kubernetesClient
-              .pods()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(memoryTestPod2.getMetadata().getName())
-              .get()
-              .getStatus()
-              .getContainerStatuses()
-              .get(0)
-              .getState()
-              .getTerminated()
-              .getExitCode();
-      boolean podExitCodeIs0 = podExitCode.equals(0);
-      boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
-          ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(NAMESPACE_NAME);
-
-      if (podSucceeded
-          && podExitCodeIs0
-          && thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
-        log.error(
-            Status.FAILED
-                + "! The '"
-                + memoryTestPod2.getMetadata().getName()
-                + "' pod did not get terminated!");
-        log.error(
-            "The '"
-                + memoryTestPod2.getMetadata().getName()
-                + "' pod is in '"
-                + podPhase
-                + "' phase with exit code ["
-                + podExitCode
-                + "].");
-        throw new io.cucumber.java.PendingException();
+      Only use this if you change the pod's restart policy to Always or OnFailure.
+      The pod will have BackOff events even if healthy, but with exitCode=0.
+
+      List<Event> backOffEvents =
+          KubernetesCache.forNamespace(namespaceName).events().withReason("BackOff");
+
+      if (backOffEvents.isEmpty()) {
+        log.info("The are no BackOff events");
       } else {
-        log.info(
-            Status.PASSED
-                + "! The '"
-                + memoryTestPod2.getMetadata().getName()
-                + "' pod got terminated!");
-        log.info(
-            "The '"
-                + memoryTestPod2.getMetadata().getName()
-                + "' pod is in '"
-                + podPhase
-                + "' phase with exit code ["
-                + podExitCode
-                + "].");
-        /*
-        Only use this if you change the pod's restart policy to Always or OnFailure.
-        The pod will have BackOff events even if healthy, but with exitCode=0.
-
-        ExecShellCmd getBackOffEventsIfAny = new ExecShellCmd();
-
-        getBackOffEventsIfAny.execute(
-            "kubectl get events "
-                + "--field-selector reason=BackOff "
-                + "--sort-by=.metadata.creationTimestamp "
-                + "--namespace "
-                + namespaceName);
-
-        String getBackOffEventsIfAnyOutput = getBackOffEventsIfAny.returnAsString();
-
-        if (getBackOffEventsIfAnyOutput.contains("No resources found")) {
-          log.info("The are no BackOff events");
-        } else {
-          log.error("There are BackOff events:");
-          log.error(getBackOffEventsIfAnyOutput);
-        }
-         */
+        log.error("There are BackOff events:\n" + EventIndex.format(backOffEvents));
       }
+       */
     }
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+    namespacePool.giveBack(namespaceName);
   }
 
   @Given("A deployment with {int} replicas")
   public void a_deployment_with_replicas(Integer replicaCount) {
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
+    namespaceName = namespacePool.lease();
 
     helloWorldDeployment =
         new DeploymentBuilder()
@@ -903,74 +648,86 @@ public class TestKubeScheduler {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
-        kubernetesClient
-            .apps()
-            .deployments()
-            .inNamespace(NAMESPACE_NAME)
-            .createOrReplace(helloWorldDeployment);
-        log.info("Created '" + helloWorldDeployment.getMetadata().getName() + "' deployment");
-      } catch (KubernetesClientException e) {
-        log.error(
-            "Failed creating '" + helloWorldDeployment.getMetadata().getName() + "' deployment");
-        e.printStackTrace();
-        throw new io.cucumber.java.PendingException();
-      }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      kubernetesClient
+          .apps()
+          .deployments()
+          .inNamespace(namespaceName)
+          .createOrReplace(helloWorldDeployment);
+      log.info("Created '" + helloWorldDeployment.getMetadata().getName() + "' deployment");
+    } catch (KubernetesClientException e) {
+      log.error(
+          "Failed creating '" + helloWorldDeployment.getMetadata().getName() + "' deployment");
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
+    }
 
-      log.info(
-          "Waiting for all '"
-              + helloWorldDeployment.getMetadata().getName()
-              + "' deployment replicas to become available... ");
-      try {
-        // See https://github.com/fabric8io/kubernetes-client/issues/2129
-        kubernetesClient
-            .apps()
-            .deployments()
-            .inNamespace(NAMESPACE_NAME)
-            .withName(helloWorldDeployment.getMetadata().getName())
-            .waitUntilCondition(
-                deployment ->
-                    Optional.ofNullable(deployment.getStatus())
-                        .map(DeploymentStatus::getAvailableReplicas)
-                        .orElse(-1)
-                        .equals(replicaCount),
-                replicaCount,
-                TimeUnit.MINUTES);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-        throw new io.cucumber.java.PendingException();
-      }
+    log.info(
+        "Waiting for all '"
+            + helloWorldDeployment.getMetadata().getName()
+            + "' deployment replicas to become available... ");
+    try {
+      // See https://github.com/fabric8io/kubernetes-client/issues/2129
+      kubernetesClient
+          .apps()
+          .deployments()
+          .inNamespace(namespaceName)
+          .withName(helloWorldDeployment.getMetadata().getName())
+          .waitUntilCondition(
+              deployment ->
+                  Optional.ofNullable(deployment.getStatus())
+                      .map(DeploymentStatus::getAvailableReplicas)
+                      .orElse(-1)
+                      .equals(replicaCount),
+              replicaCount,
+              TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
     }
   }
 
   @When("I kill {int} replicas")
   public void i_kill_replicas(Integer numberOfReplicasToKill) {
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      List<Pod> podList =
-          kubernetesClient
-              .pods()
-              .inNamespace(NAMESPACE_NAME)
-              .withLabel("app", "echoserver")
-              .list()
-              .getItems();
-      int count = 0;
-
-      for (Pod replica : podList) {
-        if (numberOfReplicasToKill == count) {
-          log.info("Killed [" + numberOfReplicasToKill + "] replicas");
-          break;
-        } else {
-          String replicaName = replica.getMetadata().getName();
-          if (kubernetesClient.pods().inNamespace(NAMESPACE_NAME).withName(replicaName).delete()) {
-            log.info("Killed '" + replicaName + "' replica #" + count);
-          } else {
-            log.error("Failed killing '" + replicaName + "' replica #" + count);
-            throw new io.cucumber.java.PendingException();
-          }
-        }
-        count++;
-      }
+    // All of them at once, timing how long the ReplicaSet takes to replace them
+    replicaRecovery = ReplicaRecovery.of(namespaceName, "app", "echoserver");
+    replicaRecovery.killAndAwait(numberOfReplicasToKill, 2, TimeUnit.MINUTES);
+  }
+
+  @When("I kill {int} replicas at once, {int} times in a row")
+  public void i_kill_replicas_at_once_times_in_a_row(
+      Integer numberOfReplicasToKill, Integer numberOfTrials) {
+    replicaRecovery = ReplicaRecovery.of(namespaceName, "app", "echoserver");
+    for (int trial = 1; trial <= numberOfTrials; trial++) {
+      log.info("Recovery trial #" + trial + " of [" + numberOfTrials + "]");
+      replicaRecovery.killAndAwait(numberOfReplicasToKill, 2, TimeUnit.MINUTES);
+    }
+  }
+
+  @Then("The replica recovery time percentiles should be reported")
+  public void the_replica_recovery_time_percentiles_should_be_reported() {
+    log.info(replicaRecovery.getReplacementCreated().summary());
+    log.info(replicaRecovery.getReplacementReady().summary());
+    log.info(replicaRecovery.getFullRecovery().summary());
+
+    if (replicaRecovery.getFailedTrials() == 0) {
+      log.info(
+          Status.PASSED
+              + "! The deployment '"
+              + helloWorldDeployment.getMetadata().getName()
+              + "' fully recovered after every one of the ["
+              + replicaRecovery.getFullRecovery().count()
+              + "] trials!");
+    } else {
+      log.error(
+          Status.FAILED
+              + "! The deployment '"
+              + helloWorldDeployment.getMetadata().getName()
+              + "' didn't fully recover after ["
+              + replicaRecovery.getFailedTrials()
+              + "] trials!");
+      throw new io.cucumber.java.PendingException();
     }
   }
 
@@ -982,68 +739,71 @@ public class TestKubeScheduler {
             + helloWorldDeployment.getMetadata().getName()
             + "' deployment replicas to become available... ");
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      kubernetesClient
+          .apps()
+          .deployments()
+          .inNamespace(namespaceName)
+          .withName(helloWorldDeployment.getMetadata().getName())
+          .waitUntilCondition(
+              deployment ->
+                  Optional.ofNullable(deployment.getStatus())
+                      .map(DeploymentStatus::getAvailableReplicas)
+                      .orElse(-1)
+                      .equals(desiredReplicaCount),
+              desiredReplicaCount,
+              TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
+    }
+
+    log.info(replicaRecovery.getFullRecovery().summary());
+
+    // A GET rather than the informer cache, which may not have the last Killing events yet
+    int killedPods =
+        kubernetesClient
+            .v1()
+            .events()
+            .inNamespace(namespaceName)
+            .withField("reason", "Killing")
+            .list()
+            .getItems()
+            .size();
+    int actualReplicaCount =
         kubernetesClient
             .apps()
             .deployments()
-            .inNamespace(NAMESPACE_NAME)
+            .inNamespace(namespaceName)
             .withName(helloWorldDeployment.getMetadata().getName())
-            .waitUntilCondition(
-                deployment ->
-                    Optional.ofNullable(deployment.getStatus())
-                        .map(DeploymentStatus::getAvailableReplicas)
-                        .orElse(-1)
-                        .equals(desiredReplicaCount),
-                desiredReplicaCount,
-                TimeUnit.MINUTES);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-        throw new io.cucumber.java.PendingException();
-      }
+            .get()
+            .getSpec()
+            .getReplicas();
 
-      int killedPods =
-          kubernetesClient
-              .events()
-              .inNamespace(NAMESPACE_NAME)
-              .withField("reason", "Killing")
-              .list()
-              .getItems()
-              .size();
-      int actualReplicaCount =
-          kubernetesClient
-              .apps()
-              .deployments()
-              .inNamespace(NAMESPACE_NAME)
-              .withName(helloWorldDeployment.getMetadata().getName())
-              .get()
-              .getSpec()
-              .getReplicas();
-
-      if (actualReplicaCount == desiredReplicaCount && killedPods == numberOfReplicasToRecreate) {
-        log.info(
-            "The deployment '"
-                + helloWorldDeployment.getMetadata().getName()
-                + "' created ["
-                + numberOfReplicasToRecreate
-                + "] more replicas");
-      } else {
-        log.error(
-            "The deployment '"
-                + helloWorldDeployment.getMetadata().getName()
-                + "' created ["
-                // desiredReplicaCount - killedPods = the state after i_kill_replicas()
-                + (actualReplicaCount - (desiredReplicaCount - killedPods))
-                + "] more replicas");
-        throw new io.cucumber.java.PendingException();
-      }
+    if (actualReplicaCount == desiredReplicaCount && killedPods == numberOfReplicasToRecreate) {
+      log.info(
+          "The deployment '"
+              + helloWorldDeployment.getMetadata().getName()
+              + "' created ["
+              + numberOfReplicasToRecreate
+              + "] more replicas");
+    } else {
+      log.error(
+          "The deployment '"
+              + helloWorldDeployment.getMetadata().getName()
+              + "' created ["
+              // desiredReplicaCount - killedPods = the state after i_kill_replicas()
+              + (actualReplicaCount - (desiredReplicaCount - killedPods))
+              + "] more replicas");
+      throw new io.cucumber.java.PendingException();
     }
   }
 
   @And("The scheduler should be healthy")
   public void the_scheduler_should_be_healthy() {
     boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
-        ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(NAMESPACE_NAME);
+        ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(namespaceName);
 
     if (thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
       log.info(Status.PASSED + "!");
@@ -1051,41 +811,40 @@ public class TestKubeScheduler {
       log.info(Status.FAILED + "!");
       throw new io.cucumber.java.PendingException();
     }
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+    namespacePool.giveBack(namespaceName);
   }
 
   @Given("A node label")
   public void a_node_label() {
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
+    namespaceName = namespacePool.lease();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      // This command is minikube-specific
-      try {
-        kubernetesClient
-            .nodes()
-            .withName("minikube")
-            .edit()
-            .editMetadata()
-            .addToLabels(NODE_TRUE_LABEL)
-            .endMetadata()
-            .done();
-      } catch (KubernetesClientException e) {
-        e.printStackTrace();
-      }
-
-      if (kubernetesClient
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    // This command is minikube-specific
+    try {
+      kubernetesClient
           .nodes()
           .withName("minikube")
-          .get()
-          .getMetadata()
-          .getLabels()
-          .toString()
-          .contains(NODE_LABEL + "=true")) {
-        log.info("Applied '" + NODE_TRUE_LABEL + "' node label");
-      } else {
-        log.error("Failed applying '" + NODE_TRUE_LABEL + "' node label!");
-        throw new io.cucumber.java.PendingException();
-      }
+          .edit()
+          .editMetadata()
+          .addToLabels(NODE_TRUE_LABEL)
+          .endMetadata()
+          .done();
+    } catch (KubernetesClientException e) {
+      e.printStackTrace();
+    }
+
+    if (kubernetesClient
+        .nodes()
+        .withName("minikube")
+        .get()
+        .getMetadata()
+        .getLabels()
+        .toString()
+        .contains(NODE_LABEL + "=true")) {
+      log.info("Applied '" + NODE_TRUE_LABEL + "' node label");
+    } else {
+      log.error("Failed applying '" + NODE_TRUE_LABEL + "' node label!");
+      throw new io.cucumber.java.PendingException();
     }
   }
 
@@ -1094,20 +853,7 @@ public class TestKubeScheduler {
           + "will get scheduled")
   public void
       a_pod_with_a_correct_requiredDuringSchedulingIgnoredDuringExecution_node_affinity_will_get_scheduled() {
-    serviceAccount =
-        new ServiceAccountBuilder()
-            .withNewMetadata()
-            .withNewName("rcnit-kube-scheduler-testing-svc-account")
-            .endMetadata()
-            .build();
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient
-          .serviceAccounts()
-          .inNamespace(NAMESPACE_NAME)
-          .createOrReplace(serviceAccount);
-      log.info("Created '" + serviceAccount.getMetadata().getName() + "' service account");
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
 
     Pod nodeAffinityPod1 =
         new PodBuilder()
@@ -1115,7 +861,7 @@ public class TestKubeScheduler {
             .withName("node-affinity-test-1")
             .endMetadata()
             .withNewSpec()
-            .withServiceAccount(serviceAccount.getMetadata().getName())
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
             .withNewAffinity()
             .withNewNodeAffinity()
             .withNewRequiredDuringSchedulingIgnoredDuringExecution()
@@ -1137,25 +883,13 @@ public class TestKubeScheduler {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(nodeAffinityPod1);
-    }
-
-    /*
-    Sleeping 1 second to give the pod time to create, otherwise:
-    java.lang.IllegalArgumentException: Pod with name:[] in namespace:[] not found!
-     */
-    try {
-      Thread.sleep(1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(nodeAffinityPod1);
 
     AtomicBoolean podIsScheduled =
         ExecKubernetesCmd.checkIfPodIsScheduled(
-            nodeAffinityPod1.getMetadata().getName(), NAMESPACE_NAME);
+            nodeAffinityPod1.getMetadata().getName(), namespaceName);
 
-    ExecKubernetesCmd.getObjectEvents(nodeAffinityPod1.getMetadata().getName(), NAMESPACE_NAME);
+    ExecKubernetesCmd.getObjectEvents(nodeAffinityPod1.getMetadata().getName(), namespaceName);
 
     if (podIsScheduled.get()) {
       log.info(
@@ -1171,7 +905,7 @@ public class TestKubeScheduler {
               + "' pod was not scheduled!");
       throw new io.cucumber.java.PendingException();
     }
-    ExecKubernetesCmd.deletePod(nodeAffinityPod1.getMetadata().getName(), NAMESPACE_NAME);
+    DeleteEngine.inNamespace(namespaceName).add(nodeAffinityPod1).await(3, TimeUnit.MINUTES);
   }
 
   @But(
@@ -1185,7 +919,7 @@ public class TestKubeScheduler {
             .withName("node-affinity-test-2")
             .endMetadata()
             .withNewSpec()
-            .withServiceAccount(serviceAccount.getMetadata().getName())
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
             .withNewAffinity()
             .withNewNodeAffinity()
             .withNewRequiredDuringSchedulingIgnoredDuringExecution()
@@ -1207,25 +941,14 @@ public class TestKubeScheduler {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(nodeAffinityPod2);
-    }
-
-    /*
-    Sleeping 1 second to give the pod time to create, otherwise:
-    java.lang.IllegalArgumentException: Pod with name:[] in namespace:[] not found!
-     */
-    try {
-      Thread.sleep(1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(nodeAffinityPod2);
 
     AtomicBoolean podIsScheduled =
         ExecKubernetesCmd.checkIfPodIsScheduled(
-            nodeAffinityPod2.getMetadata().getName(), NAMESPACE_NAME);
+            nodeAffinityPod2.getMetadata().getName(), namespaceName);
 
-    ExecKubernetesCmd.getObjectEvents(nodeAffinityPod2.getMetadata().getName(), NAMESPACE_NAME);
+    ExecKubernetesCmd.getObjectEvents(nodeAffinityPod2.getMetadata().getName(), namespaceName);
 
     if (podIsScheduled.get()) {
       log.error(
@@ -1241,7 +964,7 @@ public class TestKubeScheduler {
               + nodeAffinityPod2.getMetadata().getName()
               + "' pod was not scheduled!");
     }
-    ExecKubernetesCmd.deletePod(nodeAffinityPod2.getMetadata().getName(), NAMESPACE_NAME);
+    DeleteEngine.inNamespace(namespaceName).add(nodeAffinityPod2).await(3, TimeUnit.MINUTES);
   }
 
   @And(
@@ -1255,7 +978,7 @@ public class TestKubeScheduler {
             .withName("node-affinity-test-3")
             .endMetadata()
             .withNewSpec()
-            .withServiceAccount(serviceAccount.getMetadata().getName())
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
             .withNewAffinity()
             .withNewNodeAffinity()
             .addNewPreferredDuringSchedulingIgnoredDuringExecution()
@@ -1278,25 +1001,14 @@ public class TestKubeScheduler {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(nodeAffinityPod3);
-    }
-
-    /*
-    Sleeping 1 second to give the pod time to create, otherwise:
-    java.lang.IllegalArgumentException: Pod with name:[] in namespace:[] not found!
-     */
-    try {
-      Thread.sleep(1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(nodeAffinityPod3);
 
     AtomicBoolean podIsScheduled =
         ExecKubernetesCmd.checkIfPodIsScheduled(
-            nodeAffinityPod3.getMetadata().getName(), NAMESPACE_NAME);
+            nodeAffinityPod3.getMetadata().getName(), namespaceName);
 
-    ExecKubernetesCmd.getObjectEvents(nodeAffinityPod3.getMetadata().getName(), NAMESPACE_NAME);
+    ExecKubernetesCmd.getObjectEvents(nodeAffinityPod3.getMetadata().getName(), namespaceName);
 
     if (podIsScheduled.get()) {
       log.info(
@@ -1312,7 +1024,7 @@ public class TestKubeScheduler {
               + "' pod was not scheduled!");
       throw new io.cucumber.java.PendingException();
     }
-    ExecKubernetesCmd.deletePod(nodeAffinityPod3.getMetadata().getName(), NAMESPACE_NAME);
+    DeleteEngine.inNamespace(namespaceName).add(nodeAffinityPod3).await(3, TimeUnit.MINUTES);
   }
 
   @And(
@@ -1326,7 +1038,7 @@ public class TestKubeScheduler {
             .withName("node-affinity-test-4")
             .endMetadata()
             .withNewSpec()
-            .withServiceAccount(serviceAccount.getMetadata().getName())
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
             .withNewAffinity()
             .withNewNodeAffinity()
             .addNewPreferredDuringSchedulingIgnoredDuringExecution()
@@ -1350,25 +1062,14 @@ public class TestKubeScheduler {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(nodeAffinityPod4);
-    }
-
-    /*
-    Sleeping 1 second to give the pod time to create, otherwise:
-    java.lang.IllegalArgumentException: Pod with name:[] in namespace:[] not found!
-     */
-    try {
-      Thread.sleep(1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(nodeAffinityPod4);
 
     AtomicBoolean podIsScheduled =
         ExecKubernetesCmd.checkIfPodIsScheduled(
-            nodeAffinityPod4.getMetadata().getName(), NAMESPACE_NAME);
+            nodeAffinityPod4.getMetadata().getName(), namespaceName);
 
-    ExecKubernetesCmd.getObjectEvents(nodeAffinityPod4.getMetadata().getName(), NAMESPACE_NAME);
+    ExecKubernetesCmd.getObjectEvents(nodeAffinityPod4.getMetadata().getName(), namespaceName);
 
     if (podIsScheduled.get()) {
       log.info(
@@ -1384,36 +1085,356 @@ public class TestKubeScheduler {
               + "' pod was not scheduled!");
       throw new io.cucumber.java.PendingException();
     }
-    ExecKubernetesCmd.deletePod(nodeAffinityPod4.getMetadata().getName(), NAMESPACE_NAME);
+    DeleteEngine.inNamespace(namespaceName).add(nodeAffinityPod4).await(3, TimeUnit.MINUTES);
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
-        kubernetesClient
-            .nodes()
-            .withName("minikube")
-            .edit()
-            .editMetadata()
-            .removeFromLabels(NODE_TRUE_LABEL)
-            .endMetadata()
-            .done();
-      } catch (KubernetesClientException e) {
-        e.printStackTrace();
-      }
+    removeNodeLabel();
+    namespacePool.giveBack(namespaceName);
+  }
 
-      if (kubernetesClient
+  @When("I create {int} {word} pods, {int} at a time")
+  public void i_create_pods_at_a_time(int numberOfPods, String podTemplate, int concurrency) {
+    long schedulablePods = schedulablePods();
+    if (numberOfPods > schedulablePods) {
+      log.error(
+          "Can't create ["
+              + numberOfPods
+              + "] pods; the node only has room for ["
+              + schedulablePods
+              + "]!");
+      throw new io.cucumber.java.PendingException();
+    }
+    namespaceName = namespacePool.lease();
+
+    benchmarkPod = startupTestPod(podTemplate);
+    podBenchmark =
+        PodLifecycleBenchmark.of(namespaceName, benchmarkPod)
+            .withPods(numberOfPods)
+            .withConcurrency(concurrency)
+            .run(5, TimeUnit.MINUTES);
+    benchmarkPodCount = numberOfPods;
+  }
+
+  @Then("Every pod should be ready, and the startup latency percentiles are reported")
+  public void every_pod_should_be_ready_and_the_startup_latency_percentiles_are_reported() {
+    // Stage by stage, then end to end; upstream density tests report the same percentiles
+    Stage[] stages = Stage.values();
+    for (int i = 1; i < stages.length; i++) {
+      log.info(podBenchmark.latency(stages[i - 1], stages[i]).summary());
+    }
+    log.info(podBenchmark.latency(Stage.CREATING, Stage.READY).summary());
+
+    int readyPods = podBenchmark.countOf(Stage.READY);
+    DeleteEngine.inNamespace(namespaceName)
+        .addWithLabel(
+            Pod.class, BenchmarkRecorder.BENCHMARK_LABEL, benchmarkPod.getMetadata().getName())
+        .await(3, TimeUnit.MINUTES);
+    namespacePool.giveBack(namespaceName);
+
+    if (podBenchmark.getFailedCreates() == 0 && readyPods == benchmarkPodCount) {
+      log.info(
+          Status.PASSED
+              + "! All ["
+              + benchmarkPodCount
+              + "] '"
+              + benchmarkPod.getMetadata().getName()
+              + "' pods are ready!");
+    } else {
+      log.error(
+          Status.FAILED
+              + "! ["
+              + readyPods
+              + "/"
+              + benchmarkPodCount
+              + "] '"
+              + benchmarkPod.getMetadata().getName()
+              + "' pods are ready; ["
+              + podBenchmark.getFailedCreates()
+              + "] were rejected!");
+      throw new io.cucumber.java.PendingException();
+    }
+  }
+
+  @When("I flood the scheduler with {int} pods with {word} constraints")
+  public void i_flood_the_scheduler_with_pods_with_constraints(
+      int numberOfPods, String constraints) {
+    long schedulablePods = schedulablePods();
+    if (numberOfPods > schedulablePods) {
+      log.error(
+          "Can't create ["
+              + numberOfPods
+              + "] pods; the node only has room for ["
+              + schedulablePods
+              + "]!");
+      throw new io.cucumber.java.PendingException();
+    }
+    schedulerConstraints = constraints;
+
+    // Every create is in flight at once, so the pods queue up in front of the scheduler
+    benchmarkPod = schedulerTestPod(constraints, numberOfPods);
+    podBenchmark =
+        PodLifecycleBenchmark.of(namespaceName, benchmarkPod)
+            .withPods(numberOfPods)
+            .withConcurrency(numberOfPods)
+            .until(Stage.SCHEDULED)
+            .run(5, TimeUnit.MINUTES);
+    benchmarkPodCount = numberOfPods;
+  }
+
+  @Then("Every pod should be scheduled, and the scheduler throughput is reported")
+  public void every_pod_should_be_scheduled_and_the_scheduler_throughput_is_reported() {
+    double throughput = podBenchmark.throughput(Stage.SCHEDULED);
+    schedulerThroughputs.put(schedulerConstraints, throughput);
+    log.info(podBenchmark.latency(Stage.ACCEPTED, Stage.SCHEDULED).summary());
+    log.info(
+        String.format(
+            "%s constraints: %.1f pods scheduled per second", schedulerConstraints, throughput));
+    // The other examples that ran so far, to see how the throughput degrades
+    log.info("Scheduler throughput (pods per second) by constraints: " + schedulerThroughputs);
+
+    int scheduledPods = podBenchmark.countOf(Stage.SCHEDULED);
+    boolean thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy =
+        ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(namespaceName);
+    DeleteEngine.inNamespace(namespaceName)
+        .addWithLabel(
+            Pod.class, BenchmarkRecorder.BENCHMARK_LABEL, benchmarkPod.getMetadata().getName())
+        .await(3, TimeUnit.MINUTES);
+    removeNodeLabel();
+
+    if (podBenchmark.getFailedCreates() == 0
+        && scheduledPods == benchmarkPodCount
+        && thereAreNoFailedSchedulingEventsAndTheSchedulerIsHealthy) {
+      log.info(
+          Status.PASSED
+              + "! All ["
+              + benchmarkPodCount
+              + "] '"
+              + benchmarkPod.getMetadata().getName()
+              + "' pods were scheduled!");
+    } else {
+      log.error(
+          Status.FAILED
+              + "! ["
+              + scheduledPods
+              + "/"
+              + benchmarkPodCount
+              + "] '"
+              + benchmarkPod.getMetadata().getName()
+              + "' pods were scheduled; ["
+              + podBenchmark.getFailedCreates()
+              + "] were rejected!");
+      throw new io.cucumber.java.PendingException();
+    }
+    namespacePool.giveBack(namespaceName);
+  }
+
+  // Undoes the "A node label" step
+  private static void removeNodeLabel() {
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      kubernetesClient
           .nodes()
           .withName("minikube")
-          .get()
-          .getMetadata()
-          .getLabels()
-          .toString()
-          .contains(NODE_LABEL + "=true")) {
-        log.error("Failed removing '" + NODE_TRUE_LABEL + "' NodeRestriction label!");
+          .edit()
+          .editMetadata()
+          .removeFromLabels(NODE_TRUE_LABEL)
+          .endMetadata()
+          .done();
+    } catch (KubernetesClientException e) {
+      e.printStackTrace();
+    }
+
+    if (kubernetesClient
+        .nodes()
+        .withName("minikube")
+        .get()
+        .getMetadata()
+        .getLabels()
+        .toString()
+        .contains(NODE_LABEL + "=true")) {
+      log.error("Failed removing '" + NODE_TRUE_LABEL + "' NodeRestriction label!");
+      throw new io.cucumber.java.PendingException();
+    } else {
+      log.info("Removed '" + NODE_TRUE_LABEL + "' NodeRestriction label");
+    }
+  }
+
+  // The echoserver and polinux/stress pods of the other scenarios, without resource requests
+  private static Pod startupTestPod(String podTemplate) {
+    PodBuilder podBuilder =
+        new PodBuilder()
+            .withNewMetadata()
+            .withName("startup-test-" + podTemplate)
+            .endMetadata()
+            .withNewSpec()
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
+            .endSpec();
+
+    switch (podTemplate) {
+      case "echoserver":
+        return podBuilder
+            .editSpec()
+            .addNewContainer()
+            .withName("startup-test-container")
+            .withImage("k8s.gcr.io/echoserver:1.4")
+            .withImagePullPolicy("IfNotPresent")
+            .endContainer()
+            .endSpec()
+            .build();
+      case "stress":
+        // A light load that outlives the benchmark, so every pod stays Ready until it's deleted
+        return podBuilder
+            .editSpec()
+            .addNewContainer()
+            .withName("startup-test-container")
+            .withImage("polinux/stress")
+            .withImagePullPolicy("IfNotPresent")
+            .addNewCommand("stress")
+            .addNewArg("--vm")
+            .addNewArg("1")
+            .addNewArg("--vm-bytes")
+            .addNewArg("1M")
+            .addNewArg("--vm-hang")
+            .addNewArg("1")
+            .addNewArg("--timeout")
+            .addNewArg("600s")
+            .endContainer()
+            .withRestartPolicy("Never")
+            .endSpec()
+            .build();
+      default:
+        log.error("There is no '" + podTemplate + "' pod template; use echoserver or stress!");
+        throw new io.cucumber.java.PendingException();
+    }
+  }
+
+  /*
+  An echoserver pod with one kind of scheduling constraint:
+  - no: nothing to filter or score
+  - required-affinity: requiredDuringSchedulingIgnoredDuringExecution on the "A node label" label
+  - preferred-affinity: preferredDuringSchedulingIgnoredDuringExecution on the same label
+  - near-capacity: CPU requests that add up to 95% of what the node has left, so the resource
+    filters work with the node almost full
+   */
+  private static Pod schedulerTestPod(String constraints, int numberOfPods) {
+    PodBuilder podBuilder =
+        new PodBuilder()
+            .withNewMetadata()
+            .withName("scheduler-test-" + constraints)
+            .endMetadata()
+            .withNewSpec()
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
+            .addNewContainer()
+            .withName("scheduler-test-container")
+            .withImage("k8s.gcr.io/echoserver:1.4")
+            .withImagePullPolicy("IfNotPresent")
+            .endContainer()
+            .endSpec();
+
+    switch (constraints) {
+      case "no":
+        return podBuilder.build();
+      case "required-affinity":
+        return podBuilder
+            .editSpec()
+            .withNewAffinity()
+            .withNewNodeAffinity()
+            .withNewRequiredDuringSchedulingIgnoredDuringExecution()
+            .addNewNodeSelectorTerm()
+            .addNewMatchExpression()
+            .withNewKey(NODE_LABEL)
+            .withNewOperator("In")
+            .addNewValue("true")
+            .endMatchExpression()
+            .endNodeSelectorTerm()
+            .endRequiredDuringSchedulingIgnoredDuringExecution()
+            .endNodeAffinity()
+            .endAffinity()
+            .endSpec()
+            .build();
+      case "preferred-affinity":
+        return podBuilder
+            .editSpec()
+            .withNewAffinity()
+            .withNewNodeAffinity()
+            .addNewPreferredDuringSchedulingIgnoredDuringExecution()
+            .withWeight(1)
+            .withNewPreference()
+            .addNewMatchExpression()
+            .withNewKey(NODE_LABEL)
+            .withNewOperator("In")
+            .addNewValue("true")
+            .endMatchExpression()
+            .endPreference()
+            .endPreferredDuringSchedulingIgnoredDuringExecution()
+            .endNodeAffinity()
+            .endAffinity()
+            .endSpec()
+            .build();
+      case "near-capacity":
+        long milliCpuPerPod = unrequestedMilliCpu() * 95 / 100 / numberOfPods;
+        log.info("Every pod requests [" + milliCpuPerPod + "] milliCPUs");
+        return podBuilder
+            .editSpec()
+            .editFirstContainer()
+            .withNewResources()
+            .addToRequests(Collections.singletonMap("cpu", new Quantity(milliCpuPerPod + "m")))
+            .endResources()
+            .endContainer()
+            .endSpec()
+            .build();
+      default:
+        log.error(
+            "There are no '"
+                + constraints
+                + "' constraints; use no, required-affinity, preferred-affinity or "
+                + "near-capacity!");
         throw new io.cucumber.java.PendingException();
-      } else {
-        log.info("Removed '" + NODE_TRUE_LABEL + "' NodeRestriction label");
-      }
     }
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+  }
+
+  // The node's allocatable pods minus every pod on it that isn't done, kube-system and Chaos Mesh
+  // too
+  private static long schedulablePods() {
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    long allocatable =
+        Quantity.getAmountInBytes(
+                kubernetesClient
+                    .nodes()
+                    .withName("minikube")
+                    .get()
+                    .getStatus()
+                    .getAllocatable()
+                    .get("pods"))
+            .longValue();
+    long running =
+        kubernetesClient.pods().inAnyNamespace().withField("spec.nodeName", "minikube").list()
+            .getItems().stream()
+            .filter(pod -> !ExecKubernetesCmd.podIsTerminated(pod))
+            .count();
+    return allocatable - running;
+  }
+
+  // The node's allocatable CPU minus the requests of every pod on it that isn't done
+  private static long unrequestedMilliCpu() {
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    BigDecimal allocatable =
+        Quantity.getAmountInBytes(
+            kubernetesClient
+                .nodes()
+                .withName("minikube")
+                .get()
+                .getStatus()
+                .getAllocatable()
+                .get("cpu"));
+    BigDecimal requested =
+        kubernetesClient.pods().inAnyNamespace().withField("spec.nodeName", "minikube").list()
+            .getItems().stream()
+            .filter(pod -> !ExecKubernetesCmd.podIsTerminated(pod))
+            .flatMap(pod -> pod.getSpec().getContainers().stream())
+            .map(container -> container.getResources().getRequests())
+            .filter(requests -> requests != null && requests.containsKey("cpu"))
+            .map(requests -> Quantity.getAmountInBytes(requests.get("cpu")))
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+    return allocatable.subtract(requested).movePointRight(3).longValue();
   }
 }
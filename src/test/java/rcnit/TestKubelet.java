@@ -4,24 +4,49 @@ import io.cucumber.java.Status;
 import io.cucumber.java.en.But;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import io.fabric8.kubernetes.api.model.Event;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.PodBuilder;
 import io.fabric8.kubernetes.api.model.ServiceAccount;
 import io.fabric8.kubernetes.api.model.ServiceAccountBuilder;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rcnit.util.EventIndex;
 import rcnit.util.ExecKubernetesCmd;
-import rcnit.util.ExecShellCmd;
+import rcnit.util.KubernetesCache;
+import rcnit.util.KubernetesClientProvider;
+import rcnit.util.LatencyStats;
+import rcnit.util.NamespacePool;
+import rcnit.util.ProbeTimeline;
+import rcnit.util.WaitEngine;
 
 public class TestKubelet {
 
-  private static final String NAMESPACE_NAME = "rcnit-kubelet-testing";
+  private static final String NAMESPACE_PREFIX = "rcnit-kubelet-testing";
   private static final Logger log = LoggerFactory.getLogger(TestKubelet.class);
-  private static Pod livenessProbePod;
+  private static final ServiceAccount SERVICE_ACCOUNT =
+      new ServiceAccountBuilder()
+          .withNewMetadata()
+          .withNewName("rcnit-kubelet-testing-svc-account")
+          .endMetadata()
+          .build();
+  // A full run leases 2 namespaces, one per scenario
+  private static final NamespacePool namespacePool =
+      NamespacePool.of(NAMESPACE_PREFIX, 1, 2, SERVICE_ACCOUNT);
+  private static final String PROBE_LATENCY_LABEL = "liveness-probe-latency";
+  private static final String BROKEN_LOG_LINE = "rcnit: removed /tmp/healthy";
+  private String namespaceName;
+  private Pod livenessProbePod;
+  // Pod names by probe settings, in the order of the data table
+  private final Map<String, List<String>> probeLatencyPods = new LinkedHashMap<>();
 
   @Given("A pod with a liveness probe of {int} periodSeconds and a {string} container command")
   public void a_pod_with_a_liveness_probe_of_periodSeconds_and_a_container_command(
@@ -32,22 +57,7 @@ public class TestKubelet {
             "-c",
             "touch /tmp/healthy; " + containerSleepCommand + "; rm -rf /tmp/healthy; sleep 600");
 
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
-
-    ServiceAccount serviceAccount =
-        new ServiceAccountBuilder()
-            .withNewMetadata()
-            .withNewName("rcnit-kubelet-testing-svc-account")
-            .endMetadata()
-            .build();
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient
-          .serviceAccounts()
-          .inNamespace(NAMESPACE_NAME)
-          .createOrReplace(serviceAccount);
-      log.info("Created '" + serviceAccount.getMetadata().getName() + "' service account");
-    }
+    namespaceName = namespacePool.lease();
 
     livenessProbePod =
         new PodBuilder()
@@ -55,7 +65,7 @@ public class TestKubelet {
             .withName("liveness-probe-pod")
             .endMetadata()
             .withNewSpec()
-            .withServiceAccount(serviceAccount.getMetadata().getName())
+            .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
             .addNewContainer()
             .withNewName("liveness-probe-pod-container")
             .withNewImage("k8s.gcr.io/busybox")
@@ -73,40 +83,33 @@ public class TestKubelet {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(livenessProbePod);
-      log.info("Created '" + livenessProbePod.getMetadata().getName() + "' pod");
-    }
-    ExecKubernetesCmd.waitForPodToBeReady(livenessProbePod.getMetadata().getName(), NAMESPACE_NAME);
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(livenessProbePod);
+    log.info("Created '" + livenessProbePod.getMetadata().getName() + "' pod");
+    ExecKubernetesCmd.waitForPodToBeReady(livenessProbePod.getMetadata().getName(), namespaceName);
   }
 
   @Then("There are no anomalous pod events for the first ten seconds")
   public void there_are_no_anomalous_pod_events_for_the_first_ten_seconds() {
-    ExecShellCmd getPodEvents = new ExecShellCmd();
-    getPodEvents.execute(
-        "kubectl get events"
-            + " --field-selector=involvedObject.name="
-            + livenessProbePod.getMetadata().getName()
-            + " --field-selector=type!=Normal"
-            + " --namespace="
-            + NAMESPACE_NAME
-            + " --sort-by=.metadata.creationTimestamp");
-    String getPodEventsOutput = getPodEvents.returnAsString();
-
-    if (getPodEventsOutput.contains("No resources found") || getPodEventsOutput.isEmpty()) {
+    List<Event> anomalousPodEvents =
+        KubernetesCache.forNamespace(namespaceName)
+            .events()
+            .anomalousForInvolvedObject(livenessProbePod.getMetadata().getName());
+
+    if (anomalousPodEvents.isEmpty()) {
       log.info(
           Status.PASSED
               + "! There are no anomalous events for '"
               + livenessProbePod.getMetadata().getName()
               + "' pod!");
-      ExecKubernetesCmd.getObjectEvents(livenessProbePod.getMetadata().getName(), NAMESPACE_NAME);
+      ExecKubernetesCmd.getObjectEvents(livenessProbePod.getMetadata().getName(), namespaceName);
     } else {
       log.error(
           Status.FAILED
               + "! There are anomalous events for '"
               + livenessProbePod.getMetadata().getName()
               + "' pod:\n"
-              + getPodEventsOutput);
+              + EventIndex.format(anomalousPodEvents));
       throw new io.cucumber.java.PendingException();
     }
   }
@@ -121,26 +124,19 @@ public class TestKubelet {
       e.printStackTrace();
     }
 
-    ExecShellCmd getPodEvents = new ExecShellCmd();
-    getPodEvents.execute(
-        "kubectl get events"
-            + " --field-selector=involvedObject.name="
-            + livenessProbePod.getMetadata().getName()
-            + " --field-selector=type!=Normal"
-            + " --namespace="
-            + NAMESPACE_NAME
-            + " --sort-by=.metadata.creationTimestamp");
-    String getPodEventsOutput = getPodEvents.returnAsString();
-
-    if (getPodEventsOutput.contains("No resources found") || getPodEventsOutput.isEmpty()) {
+    List<Event> anomalousPodEvents =
+        KubernetesCache.forNamespace(namespaceName)
+            .events()
+            .anomalousForInvolvedObject(livenessProbePod.getMetadata().getName());
+
+    if (anomalousPodEvents.isEmpty()) {
       log.error(
           Status.FAILED
               + "! There are no anomalous events for '"
               + livenessProbePod.getMetadata().getName()
               + "' pod!");
-      ExecKubernetesCmd.getObjectEvents(livenessProbePod.getMetadata().getName(), NAMESPACE_NAME);
-      ExecKubernetesCmd.deletePod(livenessProbePod.getMetadata().getName(), NAMESPACE_NAME);
-      ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+      ExecKubernetesCmd.getObjectEvents(livenessProbePod.getMetadata().getName(), namespaceName);
+      namespacePool.giveBack(namespaceName);
       throw new io.cucumber.java.PendingException();
     } else {
       log.info(
@@ -148,9 +144,139 @@ public class TestKubelet {
               + "! There are anomalous events for '"
               + livenessProbePod.getMetadata().getName()
               + "' pod:\n"
-              + getPodEventsOutput);
+              + EventIndex.format(anomalousPodEvents));
     }
-    ExecKubernetesCmd.deletePod(livenessProbePod.getMetadata().getName(), NAMESPACE_NAME);
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+    namespacePool.giveBack(namespaceName);
+  }
+
+  @When("Pods break their liveness probe after {int} seconds, {int} pods for each of these probes")
+  public void pods_break_their_liveness_probe_after_seconds_pods_for_each_of_these_probes(
+      int healthySeconds, int podsPerProbe, List<Map<String, String>> probes) {
+    namespaceName = namespacePool.lease();
+
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    probeLatencyPods.clear();
+    for (Map<String, String> probe : probes) {
+      int periodSeconds = Integer.parseInt(probe.get("periodSeconds"));
+      int failureThreshold = Integer.parseInt(probe.get("failureThreshold"));
+      for (int i = 0; i < podsPerProbe; i++) {
+        Pod pod = probeLatencyPod(periodSeconds, failureThreshold, i, healthySeconds);
+        kubernetesClient.pods().inNamespace(namespaceName).create(pod);
+        probeLatencyPods
+            .computeIfAbsent(
+                "periodSeconds=" + periodSeconds + ", failureThreshold=" + failureThreshold,
+                key -> new ArrayList<>())
+            .add(pod.getMetadata().getName());
+      }
+    }
+    int numberOfPods = probes.size() * podsPerProbe;
+    log.info("Created [" + numberOfPods + "] liveness probe pods");
+
+    WaitEngine.on(
+            "restarted liveness probe pods",
+            kubernetesClient
+                .pods()
+                .inNamespace(namespaceName)
+                .withLabel("app", PROBE_LATENCY_LABEL))
+        .until(
+            pod ->
+                pod.getStatus() != null
+                    && pod.getStatus().getContainerStatuses() != null
+                    && pod.getStatus().getContainerStatuses().stream()
+                        .anyMatch(containerStatus -> containerStatus.getRestartCount() > 0))
+        .all(numberOfPods)
+        .await(3, TimeUnit.MINUTES);
+  }
+
+  @Then("The liveness probe detection latencies should be reported")
+  public void the_liveness_probe_detection_latencies_should_be_reported() {
+    List<String> undetectedPods = new ArrayList<>();
+    probeLatencyPods.forEach(
+        (probe, podNames) -> {
+          LatencyStats brokenToUnhealthy = new LatencyStats(probe + ": broken -> Unhealthy");
+          LatencyStats brokenToKilled = new LatencyStats(probe + ": broken -> Killing");
+          LatencyStats brokenToRestarted = new LatencyStats(probe + ": broken -> restarted");
+          for (String podName : podNames) {
+            ProbeTimeline timeline = ProbeTimeline.of(namespaceName, podName, BROKEN_LOG_LINE);
+            if (timeline.isComplete()) {
+              brokenToUnhealthy.add(timeline.getBrokenToUnhealthy().toMillis());
+              brokenToKilled.add(timeline.getBrokenToKilled().toMillis());
+              brokenToRestarted.add(timeline.getBrokenToRestarted().toMillis());
+            } else {
+              log.error("Incomplete timeline of " + timeline);
+              undetectedPods.add(podName);
+            }
+          }
+          log.info(brokenToUnhealthy.summary());
+          log.info(brokenToKilled.summary());
+          log.info(brokenToRestarted.summary());
+        });
+
+    if (undetectedPods.isEmpty()) {
+      log.info(Status.PASSED + "! Every broken container was detected and restarted!");
+    } else {
+      log.error(
+          Status.FAILED
+              + "! These broken containers weren't detected or restarted: "
+              + undetectedPods);
+      namespacePool.giveBack(namespaceName);
+      throw new io.cucumber.java.PendingException();
+    }
+    namespacePool.giveBack(namespaceName);
+  }
+
+  /*
+  Writes BROKEN_LOG_LINE right after removing /tmp/healthy, so the container runtime timestamps
+  the moment it broke. The marker on the emptyDir outlives the container, so the restarted one
+  stays healthy, and the previous container's log is always the one that broke.
+   */
+  private static Pod probeLatencyPod(
+      int periodSeconds, int failureThreshold, int index, int healthySeconds) {
+    String podName = "liveness-probe-p" + periodSeconds + "-t" + failureThreshold + "-" + index;
+    List<String> containerArgs =
+        Arrays.asList(
+            "/bin/sh",
+            "-c",
+            "touch /tmp/healthy; "
+                + "if [ ! -f /cache/broken ]; then "
+                + "sleep "
+                + healthySeconds
+                + "; touch /cache/broken; rm -rf /tmp/healthy; echo '"
+                + BROKEN_LOG_LINE
+                + "'; fi; sleep 600");
+
+    return new PodBuilder()
+        .withNewMetadata()
+        .withName(podName)
+        .addToLabels("app", PROBE_LATENCY_LABEL)
+        .endMetadata()
+        .withNewSpec()
+        .withServiceAccount(SERVICE_ACCOUNT.getMetadata().getName())
+        .addNewContainer()
+        .withNewName("liveness-probe-pod-container")
+        .withNewImage("k8s.gcr.io/busybox")
+        .withNewImagePullPolicy("IfNotPresent")
+        .withArgs(containerArgs)
+        .addNewVolumeMount()
+        .withName("cache")
+        .withMountPath("/cache")
+        .endVolumeMount()
+        .withNewLivenessProbe()
+        .withNewExec()
+        .addToCommand("cat", "/tmp/healthy")
+        .endExec()
+        .withInitialDelaySeconds(5)
+        .withPeriodSeconds(periodSeconds)
+        .withFailureThreshold(failureThreshold)
+        .endLivenessProbe()
+        .endContainer()
+        .addNewVolume()
+        .withName("cache")
+        .withNewEmptyDir()
+        .endEmptyDir()
+        .endVolume()
+        .withRestartPolicy("Always")
+        .endSpec()
+        .build();
   }
 }
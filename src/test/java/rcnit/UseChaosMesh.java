@@ -3,21 +3,51 @@ package rcnit;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
+import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rcnit.util.ChaosExperimentRunner;
 import rcnit.util.DeployChaos;
 import rcnit.util.ExecKubernetesCmd;
 import rcnit.util.ExecShellCmd;
+import rcnit.util.HelmChart;
+import rcnit.util.WebhookGate;
 
 public class UseChaosMesh {
 
-  public static final String NAMESPACE_NAME = "rcnit-chaos-mesh-testing";
+  private static final String NAMESPACE_PREFIX = "rcnit-chaos-mesh-testing";
   public static final String MY_CHAOS_MESH_TESTS_PATH = "src/test/resources/my-chaos-mesh-tests/";
   private static final Logger log = LoggerFactory.getLogger(UseChaosMesh.class);
+  /*
+  New alternative (https://github.com/chaos-mesh/chaos-mesh/issues/462):
+  the chaos-mesh/chaos-mesh chart from the chaos-mesh Helm repository.
+   */
+  private static final HelmChart CHAOS_MESH_CHART =
+      HelmChart.of("chaos-mesh", "src/test/resources/chaos-mesh/helm/chaos-mesh");
+  /*
+  The only step state that is static: Chaos Mesh is installed once, into this namespace, and every
+  scenario of the feature (each with a new UseChaosMesh) uses that installation. They never overlap
+  (the feature claims @node-capacity), and time-chaos, which deletes the namespace, runs last.
+   */
+  private static String namespaceName;
+  private final ChaosExperimentRunner chaosExperimentRunner = new ChaosExperimentRunner();
+  private final DeployChaos deployChaos = new DeployChaos();
+
+  // The namespace gets a unique suffix when it's created, so DeployChaos has to ask for it
+  public static String getNamespaceName() {
+    return namespaceName;
+  }
 
   @Given("Chaos Mesh is running")
   public void chaos_mesh_is_running() {
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
+    /*
+    This is the Background of every scenario, but Chaos Mesh is installed once, in one namespace.
+    It's deleted by the last scenario (time-chaos).
+     */
+    if (namespaceName == null) {
+      namespaceName = ExecKubernetesCmd.createNamespace(NAMESPACE_PREFIX);
+    }
 
     ExecShellCmd kubectlApply = new ExecShellCmd();
     kubectlApply.execute(
@@ -35,116 +65,37 @@ public class UseChaosMesh {
       log.info("Created Chaos Mesh CRDs:\n" + kubectlApplyOutput);
     }
 
-    ExecShellCmd helmInstall = new ExecShellCmd();
-    log.info("Installing 'chaos-mesh' Helm templates...");
-
-    helmInstall.execute(
-        "helm install chaos-mesh src/test/resources/chaos-mesh/helm/chaos-mesh "
-            + "--namespace="
-            + NAMESPACE_NAME);
-    /*
-    New alternative (https://github.com/chaos-mesh/chaos-mesh/issues/462):
-    helmInstall.execute(
-        "helm install chaos-mesh chaos-mesh/chaos-mesh --namespace=" + NAMESPACE_NAME);
-    */
-    String helmInstallOutput = helmInstall.returnAsString();
-
-    if (helmInstallOutput.isEmpty()) {
-      log.error("Failed installing 'chaos-mesh' Helm templates!");
-      log.error(helmInstallOutput);
-      throw new io.cucumber.java.PendingException();
-    } else if (helmInstallOutput.contains(
-            "Error: rendered manifests contain a resource that already exists")
-        || helmInstallOutput.contains("cannot re-use a name that is still in use")) {
-      log.info("Helm templates already installed");
-    } else {
-      log.info("Installed 'chaos-mesh' Helm templates:\n" + helmInstallOutput);
-    }
-
-    /*
-    Webhook-cert pods might get into the 'items' list even though they're ephemeral,
-    thus causing a hang.
-    If sleep < 25 seconds I get a null pointer exception at waitForPodsInNamespaceToBeReady().
-     */
-    try {
-      Thread.sleep(25 * 1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
-    // This assumes the only pods in namespaceName are Chaos Mesh pods
-    ExecKubernetesCmd.waitForPodsInNamespaceToBeReady(NAMESPACE_NAME);
-  }
-
-  @When("I inject the podchaos pod-failure with {int} test pods")
-  public void i_inject_the_podchaos_pod_failure_with_test_pods(int amountOfTestPods) {
-    DeployChaos.launchAction("podchaos", "pod-failure", amountOfTestPods);
-  }
-
-  @Then("The pod-failure should be successful")
-  public void the_pod_failure_should_be_successful() {
-    DeployChaos.checkIfActionSuccessful("podchaos", "pod-failure");
-  }
-
-  @When("I inject the podchaos pod-kill with {int} test pods")
-  public void i_inject_the_podchaos_pod_kill_with_test_pods(int amountOfTestPods) {
-    DeployChaos.launchAction("podchaos", "pod-kill", amountOfTestPods);
-  }
-
-  @Then("The pod-kill should be successful")
-  public void the_pod_kill_should_be_successful() {
-    DeployChaos.checkIfActionSuccessful("podchaos", "pod-kill");
-  }
-
-  @When("I inject the networkchaos network-loss with {int} test pods")
-  public void i_inject_the_networkchaos_network_loss_with_test_pods(int amountOfTestPods) {
-    DeployChaos.launchAction("networkchaos", "network-loss", amountOfTestPods);
-  }
-
-  @Then("The network-loss should be successful")
-  public void the_network_loss_should_be_successful() {
-    DeployChaos.checkIfActionSuccessful("networkchaos", "network-loss");
-  }
-
-  @When("I inject the networkchaos network-delay with {int} test pods")
-  public void i_inject_the_networkchaos_network_delay_with_test_pods(int amountOfTestPods) {
-    DeployChaos.launchAction("networkchaos", "network-delay", amountOfTestPods);
-  }
-
-  @Then("The network-delay should be successful")
-  public void the_network_delay_should_be_successful() {
-    DeployChaos.checkIfActionSuccessful("networkchaos", "network-delay");
-  }
-
-  @When("I inject the networkchaos network-duplicate with {int} test pods")
-  public void i_inject_the_networkchaos_network_duplicate_with_test_pods(int amountOfTestPods) {
-    DeployChaos.launchAction("networkchaos", "network-duplicate", amountOfTestPods);
-  }
-
-  @Then("The network-duplicate should be successful")
-  public void the_network_duplicate_should_be_successful() {
-    DeployChaos.checkIfActionSuccessful("networkchaos", "network-duplicate");
+    // The webhook-cert pods aren't awaited, only the Chaos Mesh workloads themselves
+    CHAOS_MESH_CHART.install(namespaceName);
   }
 
-  @When("I inject the networkchaos network-corrupt with {int} test pods")
-  public void i_inject_the_networkchaos_network_corrupt_with_test_pods(int amountOfTestPods) {
-    DeployChaos.launchAction("networkchaos", "network-corrupt", amountOfTestPods);
+  @When("I inject these chaos actions concurrently with {int} test pods each")
+  public void i_inject_these_chaos_actions_concurrently_with_test_pods_each(
+      int amountOfTestPods, List<Map<String, String>> chaosActions) {
+    chaosActions.forEach(
+        chaosAction ->
+            chaosExperimentRunner.launch(
+                chaosAction.get("chaos-test-name"),
+                chaosAction.get("chaos-action"),
+                amountOfTestPods));
   }
 
-  @Then("The network-corrupt should be successful")
-  public void the_network_corrupt_should_be_successful() {
-    DeployChaos.checkIfActionSuccessful("networkchaos", "network-corrupt");
+  @Then("All chaos actions should be successful")
+  public void all_chaos_actions_should_be_successful() {
+    chaosExperimentRunner.checkIfAllActionsSuccessful();
   }
 
   @When("I inject the timechaos time-chaos with {int} test pods")
   public void i_inject_the_timechaos_time_chaos_with_test_pods(int amountOfTestPods) {
-    DeployChaos.launchAction("timechaos", "time-chaos", amountOfTestPods);
+    deployChaos.launchAction("timechaos", "time-chaos", amountOfTestPods);
   }
 
   @Then("The time-chaos should be successful")
   public void the_time_chaos_should_be_successful() {
-    DeployChaos.checkIfActionSuccessful("timechaos", "time-chaos");
+    deployChaos.checkIfActionSuccessful("timechaos", "time-chaos");
 
-    ExecKubernetesCmd.helmUninstall("chaos-mesh", NAMESPACE_NAME);
+    CHAOS_MESH_CHART.uninstall(namespaceName);
+    WebhookGate.close(namespaceName);
 
     ExecShellCmd kubectlDelete = new ExecShellCmd();
     kubectlDelete.execute(
@@ -159,6 +110,7 @@ public class UseChaosMesh {
     } else {
       log.info("Deleted Chaos Mesh CRDs:\n" + kubectlApplyOutput);
     }
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+    ExecKubernetesCmd.deleteNamespace(namespaceName);
+    namespaceName = null;
   }
 }
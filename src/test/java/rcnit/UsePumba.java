@@ -9,7 +9,6 @@ import io.fabric8.kubernetes.api.model.PodBuilder;
 import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.ServiceAccount;
 import io.fabric8.kubernetes.api.model.ServiceAccountBuilder;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -17,15 +16,17 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rcnit.util.ExecKubernetesCmd;
+import rcnit.util.KubernetesClientProvider;
 
 public class UsePumba {
 
-  private static final String NAMESPACE_NAME = "rcnit-pumba-testing";
+  private static final String NAMESPACE_PREFIX = "rcnit-pumba-testing";
   private static final Logger log = LoggerFactory.getLogger(UsePumba.class);
+  private String namespaceName;
 
   @When("I run all Pumba actions for {int} minutes")
   public void i_run_all_Pumba_actions_for_minutes(Integer minutesToRunPumbaActions) {
-    ExecKubernetesCmd.createNamespace(NAMESPACE_NAME);
+    namespaceName = ExecKubernetesCmd.createNamespace(NAMESPACE_PREFIX);
 
     ServiceAccount serviceAccount =
         new ServiceAccountBuilder()
@@ -34,13 +35,9 @@ public class UsePumba {
             .endMetadata()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient
-          .serviceAccounts()
-          .inNamespace(NAMESPACE_NAME)
-          .createOrReplace(serviceAccount);
-      log.info("Created '" + serviceAccount.getMetadata().getName() + "' service account");
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    kubernetesClient.serviceAccounts().inNamespace(namespaceName).createOrReplace(serviceAccount);
+    log.info("Created '" + serviceAccount.getMetadata().getName() + "' service account");
 
     PodBuilder testPodTemplate =
         new PodBuilder()
@@ -136,36 +133,32 @@ public class UsePumba {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(testKillPod);
-      log.info("Deployed 'test-kill' pod");
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(testPausePod);
-      log.info("Deployed 'test-pause' pod");
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(testRemovePod);
-      log.info("Deployed 'test-remove' pod");
-      kubernetesClient.pods().inNamespace(NAMESPACE_NAME).createOrReplace(testDelayPod);
-      log.info("Deployed 'test-delay' pod");
-    }
-    ExecKubernetesCmd.waitForPodsInNamespaceToBeReady(NAMESPACE_NAME);
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(testKillPod);
+    log.info("Deployed 'test-kill' pod");
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(testPausePod);
+    log.info("Deployed 'test-pause' pod");
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(testRemovePod);
+    log.info("Deployed 'test-remove' pod");
+    kubernetesClient.pods().inNamespace(namespaceName).createOrReplace(testDelayPod);
+    log.info("Deployed 'test-delay' pod");
+    ExecKubernetesCmd.waitForPodsInNamespaceToBeReady(namespaceName);
 
     log.info("Deploying pumba actions...");
     List<HasMetadata> result = null;
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
-        result =
-            kubernetesClient
-                .load(new FileInputStream("src/test/resources/pumba/all-actions.yaml"))
-                .get();
-      } catch (FileNotFoundException e) {
-        e.printStackTrace();
-      }
-      kubernetesClient
-          .resourceList(result)
-          .inNamespace(NAMESPACE_NAME)
-          .deletingExisting()
-          .createOrReplace();
+    try {
+      result =
+          kubernetesClient
+              .load(new FileInputStream("src/test/resources/pumba/all-actions.yaml"))
+              .get();
+    } catch (FileNotFoundException e) {
+      e.printStackTrace();
     }
-    ExecKubernetesCmd.waitForPodsInNamespaceToBeReady(NAMESPACE_NAME);
+    kubernetesClient
+        .resourceList(result)
+        .inNamespace(namespaceName)
+        .deletingExisting()
+        .createOrReplace();
+    ExecKubernetesCmd.waitForPodsInNamespaceToBeReady(namespaceName);
 
     log.info("Letting the pumba actions run for [" + minutesToRunPumbaActions + "] minutes...");
     try {
@@ -177,35 +170,34 @@ public class UsePumba {
 
   @Then("The actions should be successful")
   public void the_actions_should_be_successful() {
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      PodList podList = kubernetesClient.pods().inNamespace(NAMESPACE_NAME).list();
-      List<Pod> items = podList.getItems();
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    PodList podList = kubernetesClient.pods().inNamespace(namespaceName).list();
+    List<Pod> items = podList.getItems();
 
-      for (Pod item : items) {
-        // Skip test pods because they don't contain logs
-        if (!item.getMetadata().getName().contains("test")) {
-          String pumbaPodLog =
-              kubernetesClient
-                  .pods()
-                  .inNamespace(NAMESPACE_NAME)
-                  .withName(item.getMetadata().getName())
-                  .getLog();
+    for (Pod item : items) {
+      // Skip test pods because they don't contain logs
+      if (!item.getMetadata().getName().contains("test")) {
+        String pumbaPodLog =
+            kubernetesClient
+                .pods()
+                .inNamespace(namespaceName)
+                .withName(item.getMetadata().getName())
+                .getLog();
 
-          // The 'level=fatal' logs are displayed only if the log-level is debug
-          if (pumbaPodLog.contains("level=fatal")) {
-            log.error(
-                "Something went wrong during the '" + item.getMetadata().getName() + "' action:");
-            System.out.println(pumbaPodLog);
-            throw new io.cucumber.java.PendingException();
-          } else {
-            System.out.println("'" + item.getMetadata().getName() + "' logs");
-            System.out.println("------------------");
-            System.out.println(pumbaPodLog);
-          }
+        // The 'level=fatal' logs are displayed only if the log-level is debug
+        if (pumbaPodLog.contains("level=fatal")) {
+          log.error(
+              "Something went wrong during the '" + item.getMetadata().getName() + "' action:");
+          System.out.println(pumbaPodLog);
+          throw new io.cucumber.java.PendingException();
+        } else {
+          System.out.println("'" + item.getMetadata().getName() + "' logs");
+          System.out.println("------------------");
+          System.out.println(pumbaPodLog);
         }
       }
     }
-    ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(NAMESPACE_NAME);
-    ExecKubernetesCmd.deleteNamespace(NAMESPACE_NAME);
+    ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(namespaceName);
+    ExecKubernetesCmd.deleteNamespace(namespaceName);
   }
 }
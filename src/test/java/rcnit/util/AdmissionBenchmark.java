@@ -0,0 +1,186 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Creates many PersistentVolumeClaims, a few at a time, and reports the latency and the throughput of
+the API server's answers, separately for the claims it accepted and the ones its admission plugins
+rejected. Run it against namespaces with different admission objects (LimitRange, ResourceQuota)
+and claims with or without a storage class (DefaultStorageClass) to see what every plugin costs.
+
+A claim is rejected when the answer is 403 Forbidden or 422 Invalid, which is how LimitRanger,
+ResourceQuota and DefaultStorageClass say no. A 409 Conflict means the ResourceQuota plugin lost the
+race to update the quota's usage to other creates; those are sent again, up to a number of retries,
+and the latency is from the first send to the last answer. Any other failure (e.g. a timeout) is an
+error and isn't in the latencies.
+
+Usage:
+    AdmissionBenchmark.Result result =
+        AdmissionBenchmark.of(ns, claims)
+            .withConcurrency(16)
+            .withConflictRetries(5)
+            .run();
+    log.info(result.latency(AdmissionBenchmark.Outcome.REJECTED).summary());
+ */
+public class AdmissionBenchmark {
+
+  private static final Logger log = LoggerFactory.getLogger(AdmissionBenchmark.class);
+
+  private final String namespaceName;
+  private final List<PersistentVolumeClaim> claims;
+  private int concurrency = 1;
+  private int conflictRetries = 0;
+
+  public enum Outcome {
+    ACCEPTED,
+    REJECTED
+  }
+
+  private AdmissionBenchmark(String namespaceName, List<PersistentVolumeClaim> claims) {
+    this.namespaceName = namespaceName;
+    this.claims = claims;
+  }
+
+  // The claims are created in the order of the list
+  public static AdmissionBenchmark of(String namespaceName, List<PersistentVolumeClaim> claims) {
+    return new AdmissionBenchmark(namespaceName, claims);
+  }
+
+  // How many create calls are in flight at once
+  public AdmissionBenchmark withConcurrency(int concurrency) {
+    this.concurrency = concurrency;
+    return this;
+  }
+
+  // How many times a claim is sent again after a 409 Conflict, before it's an error
+  public AdmissionBenchmark withConflictRetries(int conflictRetries) {
+    this.conflictRetries = conflictRetries;
+    return this;
+  }
+
+  public Result run() {
+    Result result = new Result();
+
+    ExecutorService benchmarkThreads = BenchmarkThreads.newPool(concurrency);
+    log.info(
+        "Creating ["
+            + claims.size()
+            + "] PersistentVolumeClaims, ["
+            + concurrency
+            + "] at a time, in '"
+            + namespaceName
+            + "' namespace");
+    Instant startedAt = Instant.now();
+    try {
+      List<CompletableFuture<Void>> requests = new ArrayList<>();
+      for (PersistentVolumeClaim claim : claims) {
+        requests.add(CompletableFuture.runAsync(() -> create(claim, result), benchmarkThreads));
+      }
+      CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).join();
+    } finally {
+      benchmarkThreads.shutdownNow();
+    }
+    result.elapsed = Duration.between(startedAt, Instant.now());
+    return result;
+  }
+
+  private void create(PersistentVolumeClaim claim, Result result) {
+    String claimName = claim.getMetadata().getName();
+    Instant sentAt = Instant.now();
+    for (int attempt = 0; ; attempt++) {
+      try {
+        KubernetesClientProvider.get()
+            .persistentVolumeClaims()
+            .inNamespace(namespaceName)
+            .create(claim);
+        result.latencies.get(Outcome.ACCEPTED).add(sentAt, Instant.now());
+        result.acceptedClaims.add(claim);
+        return;
+      } catch (KubernetesClientException e) {
+        Instant answeredAt = Instant.now();
+        if (isConflict(e) && attempt < conflictRetries) {
+          result.conflictRetries.incrementAndGet();
+        } else if (e.getCode() == 403 || e.getCode() == 422) {
+          result.latencies.get(Outcome.REJECTED).add(sentAt, answeredAt);
+          // They're all alike; one is enough to tell which plugin said no
+          if (result.firstRejection == null) {
+            result.firstRejection = e.getMessage();
+          }
+          return;
+        } else {
+          result.errors.incrementAndGet();
+          log.error("Failed creating '" + claimName + "' PersistentVolumeClaim: " + e.getMessage());
+          return;
+        }
+      }
+    }
+  }
+
+  // A 409 is also AlreadyExists, which a retry can't fix
+  private static boolean isConflict(KubernetesClientException e) {
+    return e.getCode() == 409
+        && e.getStatus() != null
+        && "Conflict".equals(e.getStatus().getReason());
+  }
+
+  public static class Result {
+
+    private final Map<Outcome, LatencyStats> latencies = new EnumMap<>(Outcome.class);
+    private final List<PersistentVolumeClaim> acceptedClaims =
+        Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger conflictRetries = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private volatile String firstRejection;
+    private Duration elapsed;
+
+    private Result() {
+      for (Outcome outcome : Outcome.values()) {
+        latencies.put(outcome, new LatencyStats(outcome.toString()));
+      }
+    }
+
+    public LatencyStats latency(Outcome outcome) {
+      return latencies.get(outcome);
+    }
+
+    // Answers with this outcome per second, over the whole run
+    public double throughput(Outcome outcome) {
+      return latencies.get(outcome).count() * 1000.0 / Math.max(elapsed.toMillis(), 1);
+    }
+
+    public int countOf(Outcome outcome) {
+      return latencies.get(outcome).count();
+    }
+
+    public List<PersistentVolumeClaim> getAcceptedClaims() {
+      return acceptedClaims;
+    }
+
+    // How many times claims were sent again after a 409 Conflict, all claims together
+    public int getConflictRetries() {
+      return conflictRetries.get();
+    }
+
+    public int getErrors() {
+      return errors.get();
+    }
+
+    // The message of the first rejection, or null if nothing was rejected
+    public String getFirstRejection() {
+      return firstRejection;
+    }
+  }
+}
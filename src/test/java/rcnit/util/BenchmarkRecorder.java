@@ -0,0 +1,208 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/*
+What the benchmarks that create many copies of an object (PodLifecycleBenchmark,
+ClaimBindingBenchmark) record: the first instant every copy reached each stage of its lifecycle,
+and the creates the API server rejected. The copies are labeled BENCHMARK_LABEL=<template name>,
+and one watch on that label, opened before the first create, tells when they reach a stage.
+
+A stage reached while the watch was closed still counts, but it has no instant: the event that
+catches up on it arrives late, and the object's own timestamps are whole seconds on the API
+server's clock. So it's left out of the latencies and the throughput.
+
+Usage:
+    BenchmarkRecorder<Stage> recorder = new BenchmarkRecorder<>(Stage.class, Stage.READY, 100);
+    RestartingWatch watch =
+        RestartingWatch.start(
+            "'echoserver' pods",
+            onClosed -> recorder.watch(pods, "echoserver", onClosed, this::observe));
+    recorder.record("echoserver-0", Stage.CREATING, Instant.now());
+    ...
+    log.info(recorder.result().latency(Stage.CREATING, Stage.READY).summary());
+ */
+public class BenchmarkRecorder<S extends Enum<S>> {
+
+  public static final String BENCHMARK_LABEL = "rcnit-benchmark";
+
+  private final Class<S> stageClass;
+  private final S lastStage;
+  private final Map<String, Set<S>> reachedStages = new ConcurrentHashMap<>();
+  private final Map<String, Map<S, Instant>> timelines = new ConcurrentHashMap<>();
+  private final AtomicInteger failedCreates = new AtomicInteger();
+  private final AtomicBoolean watchStarted = new AtomicBoolean();
+  private final CountDownLatch allDone;
+
+  BenchmarkRecorder(Class<S> stageClass, S lastStage, int numberOfCopies) {
+    this.stageClass = stageClass;
+    this.lastStage = lastStage;
+    this.allDone = new CountDownLatch(numberOfCopies);
+  }
+
+  // Counts down once for every copy that reached the last stage or was rejected
+  CountDownLatch getAllDone() {
+    return allDone;
+  }
+
+  // Only the first instant of every stage counts; a null instant means the stage's time is unknown
+  void record(String name, S stage, Instant instant) {
+    if (!reachedStages.computeIfAbsent(name, key -> ConcurrentHashMap.newKeySet()).add(stage)) {
+      return;
+    }
+    if (instant != null) {
+      timelines
+          .computeIfAbsent(name, key -> Collections.synchronizedMap(new EnumMap<>(stageClass)))
+          .put(stage, instant);
+    }
+    if (stage == lastStage) {
+      allDone.countDown();
+    }
+  }
+
+  // A rejected copy will never get anywhere; don't wait for it
+  void recordFailedCreate() {
+    failedCreates.incrementAndGet();
+    allDone.countDown();
+  }
+
+  int countOf(S stage) {
+    return (int) reachedStages.values().stream().filter(stages -> stages.contains(stage)).count();
+  }
+
+  /*
+  Watches the copies labeled labelValue and hands every ADDED or MODIFIED copy to observe, with the
+  instant it arrived. Without a resourceVersion, the watch starts with an ADDED event for every
+  existing copy; after a restart, those catch up on what the closed watch missed, and come with a
+  null instant.
+   */
+  <T extends HasMetadata> Watch watch(
+      FilterWatchListDeletable<T, ? extends KubernetesResourceList<T>, Boolean, Watch, Watcher<T>>
+          resources,
+      String labelValue,
+      Runnable onClosed,
+      BiConsumer<T, Instant> observe) {
+    boolean isRestart = watchStarted.getAndSet(true);
+    return resources
+        .withLabel(BENCHMARK_LABEL, labelValue)
+        .watch(
+            new Watcher<T>() {
+              @Override
+              public void eventReceived(Action action, T object) {
+                if (action == Action.ADDED || action == Action.MODIFIED) {
+                  observe.accept(
+                      object, isRestart && action == Action.ADDED ? null : Instant.now());
+                }
+              }
+
+              @Override
+              public void onClose(KubernetesClientException cause) {
+                if (cause != null) {
+                  onClosed.run();
+                }
+              }
+            });
+  }
+
+  // A copy of what was recorded so far, e.g. once the benchmark is over
+  Result<S> result() {
+    return new Result<>(stageClass, timelines, countsByStage(), failedCreates.get());
+  }
+
+  private Map<S, Integer> countsByStage() {
+    Map<S, Integer> counts = new EnumMap<>(stageClass);
+    for (S stage : stageClass.getEnumConstants()) {
+      counts.put(stage, countOf(stage));
+    }
+    return counts;
+  }
+
+  public static class Result<S extends Enum<S>> {
+
+    private final Map<String, Map<S, Instant>> timelines;
+    private final Map<S, Integer> counts;
+    private final int failedCreates;
+
+    private Result(
+        Class<S> stageClass,
+        Map<String, Map<S, Instant>> timelines,
+        Map<S, Integer> counts,
+        int failedCreates) {
+      Map<String, Map<S, Instant>> copy = new LinkedHashMap<>();
+      timelines.forEach(
+          (name, timeline) -> {
+            Map<S, Instant> timelineCopy = new EnumMap<>(stageClass);
+            synchronized (timeline) {
+              timelineCopy.putAll(timeline);
+            }
+            copy.put(name, timelineCopy);
+          });
+      this.timelines = Collections.unmodifiableMap(copy);
+      this.counts = counts;
+      this.failedCreates = failedCreates;
+    }
+
+    // The latency between two stages of every copy that reached both while being watched
+    public LatencyStats latency(S from, S to) {
+      LatencyStats latencyStats = new LatencyStats(from + " -> " + to);
+      for (Map<S, Instant> timeline : timelines.values()) {
+        if (timeline.containsKey(from) && timeline.containsKey(to)) {
+          latencyStats.add(timeline.get(from), timeline.get(to));
+        }
+      }
+      return latencyStats;
+    }
+
+    // Including the copies that reached it while the watch was closed
+    public int countOf(S stage) {
+      return counts.get(stage);
+    }
+
+    /*
+    Copies per second that reached the stage, between the first and the last of them, e.g. the
+    scheduler throughput for SCHEDULED. It's 0 with fewer than two copies.
+     */
+    public double throughput(S stage) {
+      List<Instant> instants =
+          timelines.values().stream()
+              .map(timeline -> timeline.get(stage))
+              .filter(Objects::nonNull)
+              .sorted()
+              .collect(Collectors.toList());
+      if (instants.size() < 2) {
+        return 0;
+      }
+      long millis = Duration.between(instants.get(0), instants.get(instants.size() - 1)).toMillis();
+      return (instants.size() - 1) * 1000.0 / Math.max(millis, 1);
+    }
+
+    public int getFailedCreates() {
+      return failedCreates;
+    }
+
+    // Every timed stage of every copy, by copy name
+    public Map<String, Map<S, Instant>> getTimelines() {
+      return timelines;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package rcnit.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+The request threads of the benchmarks (AdmissionBenchmark, ClaimBindingBenchmark, EtcdBenchmark,
+PodLifecycleBenchmark): a fixed pool of daemon threads named rcnit-bench-<n>, so a benchmark that
+timed out doesn't keep the JVM alive. Every run gets its own pool and shuts it down when it's done.
+
+Usage:
+    ExecutorService benchmarkThreads = BenchmarkThreads.newPool(concurrency);
+    try {
+      ...
+    } finally {
+      benchmarkThreads.shutdownNow();
+    }
+ */
+public class BenchmarkThreads {
+
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  // As many threads as requests in flight at once
+  public static ExecutorService newPool(int concurrency) {
+    return Executors.newFixedThreadPool(
+        concurrency,
+        runnable -> {
+          Thread thread = new Thread(runnable, "rcnit-bench-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+}
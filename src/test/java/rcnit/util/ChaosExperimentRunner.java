@@ -0,0 +1,76 @@
+package rcnit.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Runs independent Chaos Mesh actions at the same time instead of one after another.
+
+Every action has its own DeployChaos, so its own deployment and label selector, and is awaited
+through its own status. All of them are checked, even after one fails, so a single run reports
+every failing action.
+
+Actions that touch more than their own pods (e.g. time-chaos) don't belong here: run them on their
+own, after this.
+
+Usage:
+    ChaosExperimentRunner runner = new ChaosExperimentRunner();
+    runner.launch("podchaos", "pod-kill", 10);
+    runner.launch("networkchaos", "network-loss", 10);
+    runner.checkIfAllActionsSuccessful();
+ */
+public class ChaosExperimentRunner {
+
+  private static final Logger log = LoggerFactory.getLogger(ChaosExperimentRunner.class);
+  private static final AtomicInteger threadCount = new AtomicInteger();
+  private static final ExecutorService chaosThreads =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "rcnit-chaos-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  // Keyed by action name, in the order they were launched
+  private final Map<String, CompletableFuture<Void>> experiments = new LinkedHashMap<>();
+
+  public void launch(String testName, String actionName, int amountOfTestPods) {
+    DeployChaos deployChaos = new DeployChaos();
+    experiments.put(
+        actionName,
+        CompletableFuture.runAsync(
+                () -> deployChaos.launchAction(testName, actionName, amountOfTestPods),
+                chaosThreads)
+            .thenRunAsync(
+                () -> deployChaos.checkIfActionSuccessful(testName, actionName), chaosThreads));
+    log.info("Launched '" + actionName + "' action");
+  }
+
+  public void checkIfAllActionsSuccessful() {
+    List<String> failedActions = new ArrayList<>();
+    experiments.forEach(
+        (actionName, experiment) -> {
+          try {
+            experiment.join();
+          } catch (CompletionException e) {
+            failedActions.add(actionName);
+          }
+        });
+
+    if (failedActions.isEmpty()) {
+      log.info("All chaos actions are finished: " + experiments.keySet());
+    } else {
+      log.error("Failed running chaos actions " + failedActions + "!");
+      throw new io.cucumber.java.PendingException();
+    }
+  }
+}
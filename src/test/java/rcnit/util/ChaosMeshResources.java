@@ -0,0 +1,247 @@
+package rcnit.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.base.CustomResourceDefinitionContext;
+import io.fabric8.kubernetes.client.dsl.internal.RawCustomResourceOperationsImpl;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rcnit.UseChaosMesh;
+
+/*
+Creates, watches and deletes Chaos Mesh actions (PodChaos, NetworkChaos, TimeChaos, ...) with the
+generic custom resource API of the Kubernetes client, instead of kubectl.
+
+Every action in MY_CHAOS_MESH_TESTS_PATH is read once, the first time it's used; launching it
+again only copies it. Its status is watched, so an action is done as soon as the API server says
+so, without describing it and reading the output.
+
+Usage:
+    ChaosMeshResources.create(ns, "pod-kill", "rcnit-chaos-mesh-testing-pod-kill");
+    String phase = ChaosMeshResources.awaitFirstRun(ns, "pod-kill", 5, TimeUnit.MINUTES);
+    ChaosMeshResources.delete(ns, "pod-kill");
+ */
+public class ChaosMeshResources {
+
+  private static final Logger log = LoggerFactory.getLogger(ChaosMeshResources.class);
+  private static final String MY_CHAOS_MESH_TESTS_PATH = UseChaosMesh.MY_CHAOS_MESH_TESTS_PATH;
+  private static final ObjectMapper yamlMapper = Serialization.yamlMapper();
+  private static final Map<String, ObjectNode> actions = new ConcurrentHashMap<>();
+  private static final String WEBHOOK_PROBE_TEMPLATE = "pod-kill";
+  private static final String WEBHOOK_PROBE_NAME = "rcnit-webhook-probe";
+
+  // Creates the action with its labelSelectors replaced by app=labelValue
+  @SuppressWarnings("unchecked")
+  public static void create(String namespaceName, String actionName, String labelValue) {
+    ObjectNode action = load(actionName).deepCopy();
+    action.with("spec").with("selector").with("labelSelectors").removeAll().put("app", labelValue);
+
+    try {
+      KubernetesClientProvider.get()
+          .customResource(contextFor(actionName))
+          .create(namespaceName, yamlMapper.convertValue(action, Map.class));
+      log.info(
+          "Created '"
+              + actionName
+              + "' "
+              + action.get("kind").asText()
+              + " selecting app="
+              + labelValue);
+    } catch (KubernetesClientException | IOException e) {
+      log.error("Failed creating '" + actionName + "' action!");
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
+    }
+  }
+
+  public static void delete(String namespaceName, String actionName) {
+    try {
+      KubernetesClientProvider.get()
+          .customResource(contextFor(actionName))
+          .delete(namespaceName, actionName);
+      log.info("Deleted '" + actionName + "' action");
+    } catch (KubernetesClientException | IOException e) {
+      log.error("Failed deleting '" + actionName + "' action!");
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
+    }
+  }
+
+  /*
+  Creates and deletes a PodChaos that selects no pod, which only works once the Chaos Mesh webhook
+  is serving. A server-side dry run would leave nothing behind, but the API server refuses dry runs
+  for webhooks which don't declare their sideEffects, and these don't.
+   */
+  @SuppressWarnings("unchecked")
+  public static boolean probeWebhook(String namespaceName) {
+    ObjectNode probe = load(WEBHOOK_PROBE_TEMPLATE).deepCopy();
+    probe.with("metadata").put("name", WEBHOOK_PROBE_NAME);
+    probe
+        .with("spec")
+        .with("selector")
+        .with("labelSelectors")
+        .removeAll()
+        .put("app", WEBHOOK_PROBE_NAME);
+    RawCustomResourceOperationsImpl resources =
+        KubernetesClientProvider.get().customResource(contextFor(WEBHOOK_PROBE_TEMPLATE));
+
+    boolean created;
+    try {
+      resources.create(namespaceName, yamlMapper.convertValue(probe, Map.class));
+      created = true;
+    } catch (KubernetesClientException | IOException e) {
+      log.info("The Chaos Mesh webhook isn't serving yet: " + e.getMessage());
+      created = false;
+    }
+
+    // Also deleted when it wasn't created, in case a previous probe left it behind
+    try {
+      resources.delete(namespaceName, WEBHOOK_PROBE_NAME);
+    } catch (KubernetesClientException | IOException e) {
+      log.error("Failed deleting '" + WEBHOOK_PROBE_NAME + "' probe: " + e.getMessage());
+    }
+    return created;
+  }
+
+  /*
+  Returns the phase the action ended up in: "Finished" or "Waiting" once it ran, "Failed", or
+  whatever it was in when the timeout ran out.
+  The actions run on a scheduler, so after its first run an action is "Waiting" for the next one
+  (https://github.com/pingcap/chaos-mesh/issues/648). It's "Waiting" before its first run too, so
+  it only counts once it has a start time.
+   */
+  public static String awaitFirstRun(
+      String namespaceName, String actionName, long timeout, TimeUnit timeUnit) {
+    Instant deadline = Instant.now().plusMillis(timeUnit.toMillis(timeout));
+    CountDownLatch firstRun = new CountDownLatch(1);
+    AtomicReference<String> lastPhase = new AtomicReference<>("");
+    // After the API server closes it, the watch is started again from a new GET of the action
+    RestartingWatch watch =
+        RestartingWatch.start(
+            "'" + actionName + "' action",
+            onClosed -> startWatch(namespaceName, actionName, firstRun, lastPhase, onClosed));
+
+    try {
+      if (watch.await(firstRun, deadline)) {
+        return lastPhase.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      watch.close();
+    }
+    log.error(
+        "'"
+            + actionName
+            + "' action didn't finish its first run in "
+            + timeUnit.toSeconds(timeout)
+            + " seconds (phase: "
+            + lastPhase.get()
+            + ")!");
+    return lastPhase.get();
+  }
+
+  private static Watch startWatch(
+      String namespaceName,
+      String actionName,
+      CountDownLatch firstRun,
+      AtomicReference<String> lastPhase,
+      Runnable onClosed) {
+    CustomResourceDefinitionContext context = contextFor(actionName);
+    try {
+      Map<String, Object> current =
+          KubernetesClientProvider.get().customResource(context).get(namespaceName, actionName);
+      checkFirstRun(yamlMapper.valueToTree(current), firstRun, lastPhase);
+
+      return KubernetesClientProvider.get()
+          .customResource(context)
+          .watch(
+              namespaceName,
+              actionName,
+              null,
+              yamlMapper.valueToTree(current).path("metadata").path("resourceVersion").asText(),
+              new Watcher<String>() {
+                @Override
+                public void eventReceived(Action action, String resource) {
+                  if (action == Action.DELETED || action == Action.ERROR) {
+                    return;
+                  }
+                  try {
+                    checkFirstRun(yamlMapper.readTree(resource), firstRun, lastPhase);
+                  } catch (IOException e) {
+                    log.error("Failed reading '" + actionName + "' action: " + e.getMessage());
+                  }
+                }
+
+                @Override
+                public void onClose(KubernetesClientException cause) {
+                  if (cause != null) {
+                    onClosed.run();
+                  }
+                }
+              });
+    } catch (KubernetesClientException | IOException e) {
+      log.error("Failed watching '" + actionName + "' action!");
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
+    }
+  }
+
+  // Once the first run is over, the phase it ended in stays in lastPhase
+  private static synchronized void checkFirstRun(
+      JsonNode action, CountDownLatch firstRun, AtomicReference<String> lastPhase) {
+    if (firstRun.getCount() == 0) {
+      return;
+    }
+    JsonNode experiment = action.path("status").path("experiment");
+    String phase = experiment.path("phase").asText("");
+    boolean hasRun = experiment.hasNonNull("startTime");
+    lastPhase.set(phase);
+
+    if ("Failed".equals(phase)
+        || (hasRun && ("Finished".equals(phase) || "Waiting".equals(phase)))) {
+      firstRun.countDown();
+    }
+  }
+
+  // PodChaos is served as pingcap.com/v1alpha1 podchaos, and so on
+  private static CustomResourceDefinitionContext contextFor(String actionName) {
+    ObjectNode action = load(actionName);
+    String[] apiVersion = action.get("apiVersion").asText().split("/");
+    return new CustomResourceDefinitionContext.Builder()
+        .withGroup(apiVersion[0])
+        .withVersion(apiVersion[1])
+        .withPlural(action.get("kind").asText().toLowerCase())
+        .withScope("Namespaced")
+        .build();
+  }
+
+  private static ObjectNode load(String actionName) {
+    return actions.computeIfAbsent(
+        actionName,
+        name -> {
+          File actionFile = new File(MY_CHAOS_MESH_TESTS_PATH + name + ".yaml");
+          try {
+            return (ObjectNode) yamlMapper.readTree(actionFile);
+          } catch (IOException e) {
+            log.error("Failed reading '" + name + "' action from " + actionFile);
+            e.printStackTrace();
+            throw new io.cucumber.java.PendingException();
+          }
+        });
+  }
+}
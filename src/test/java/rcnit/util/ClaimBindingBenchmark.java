@@ -0,0 +1,224 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaimBuilder;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaimStatus;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Creates many copies of a PersistentVolumeClaim, a few at a time, and times how long the PV
+controller takes to bind each of them to a PersistentVolume: from right before the create call to
+the first watch event with the Bound phase. The watch is on the copies' label (see
+BenchmarkRecorder) and opened before the first create.
+
+A WaitForFirstConsumer storage class doesn't bind a claim until a pod uses it; with a consumer pod
+template, every claim gets its own pod, created right after the claim, so the latency includes the
+scheduler picking the node and the volume.
+
+Usage:
+    ClaimBindingBenchmark.Result result =
+        ClaimBindingBenchmark.of(ns, claimTemplate)
+            .withClaims(50)
+            .withConcurrency(10)
+            .withConsumer(podTemplate)
+            .run(3, TimeUnit.MINUTES);
+    log.info(result.getBindingLatency().summary());
+ */
+public class ClaimBindingBenchmark {
+
+  public static final String CONSUMER_VOLUME_NAME = "claim";
+  private static final Logger log = LoggerFactory.getLogger(ClaimBindingBenchmark.class);
+
+  private final String namespaceName;
+  private final PersistentVolumeClaim template;
+  private int numberOfClaims = 1;
+  private int concurrency = 1;
+  private Pod consumerTemplate;
+
+  enum Stage {
+    // Right before the create call
+    CREATING,
+    // The first watch event with the Bound phase
+    BOUND
+  }
+
+  private ClaimBindingBenchmark(String namespaceName, PersistentVolumeClaim template) {
+    this.namespaceName = namespaceName;
+    this.template = template;
+  }
+
+  /*
+  The copies are named <template name>-<i> and labeled with BenchmarkRecorder.BENCHMARK_LABEL, as
+  rcnit-benchmark=<template name>, like the pods of a PodLifecycleBenchmark.
+   */
+  public static ClaimBindingBenchmark of(String namespaceName, PersistentVolumeClaim template) {
+    return new ClaimBindingBenchmark(namespaceName, template);
+  }
+
+  public ClaimBindingBenchmark withClaims(int numberOfClaims) {
+    this.numberOfClaims = numberOfClaims;
+    return this;
+  }
+
+  // How many claims (and their consumers) are being created at once
+  public ClaimBindingBenchmark withConcurrency(int concurrency) {
+    this.concurrency = concurrency;
+    return this;
+  }
+
+  // Every claim gets a copy of this pod, named like the claim, with the claim as its "claim" volume
+  public ClaimBindingBenchmark withConsumer(Pod consumerTemplate) {
+    this.consumerTemplate = consumerTemplate;
+    return this;
+  }
+
+  public String getLabelValue() {
+    return template.getMetadata().getName();
+  }
+
+  // Returns once every accepted claim is Bound, or the timeout ran out
+  public Result run(long timeout, TimeUnit timeUnit) {
+    BenchmarkRecorder<Stage> recorder =
+        new BenchmarkRecorder<>(Stage.class, Stage.BOUND, numberOfClaims);
+    Instant deadline = Instant.now().plusMillis(timeUnit.toMillis(timeout));
+    RestartingWatch watch =
+        RestartingWatch.start(
+            "'" + getLabelValue() + "' PersistentVolumeClaims",
+            onClosed ->
+                recorder.watch(
+                    KubernetesClientProvider.get()
+                        .persistentVolumeClaims()
+                        .inNamespace(namespaceName),
+                    getLabelValue(),
+                    onClosed,
+                    (claim, now) -> {
+                      if ("Bound"
+                          .equals(
+                              Optional.ofNullable(claim.getStatus())
+                                  .map(PersistentVolumeClaimStatus::getPhase)
+                                  .orElse(null))) {
+                        recorder.record(claim.getMetadata().getName(), Stage.BOUND, now);
+                      }
+                    }));
+
+    ExecutorService createThreads = BenchmarkThreads.newPool(concurrency);
+    log.info(
+        "Creating ["
+            + numberOfClaims
+            + "] '"
+            + getLabelValue()
+            + "' PersistentVolumeClaims"
+            + (consumerTemplate == null ? "" : " and their consumer pods")
+            + ", ["
+            + concurrency
+            + "] at a time, in '"
+            + namespaceName
+            + "' namespace");
+    try {
+      for (int i = 0; i < numberOfClaims; i++) {
+        PersistentVolumeClaim copy =
+            new PersistentVolumeClaimBuilder(template)
+                .editMetadata()
+                .withName(getLabelValue() + "-" + i)
+                .addToLabels(BenchmarkRecorder.BENCHMARK_LABEL, getLabelValue())
+                .endMetadata()
+                .build();
+        createThreads.execute(() -> create(recorder, copy));
+      }
+
+      if (!watch.await(recorder.getAllDone(), deadline)) {
+        log.error(
+            "Timed out after "
+                + timeUnit.toSeconds(timeout)
+                + " seconds; ["
+                + recorder.countOf(Stage.BOUND)
+                + "/"
+                + numberOfClaims
+                + "] '"
+                + getLabelValue()
+                + "' PersistentVolumeClaims are Bound");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      createThreads.shutdownNow();
+      watch.close();
+    }
+
+    return new Result(recorder.result());
+  }
+
+  private void create(BenchmarkRecorder<Stage> recorder, PersistentVolumeClaim claim) {
+    String claimName = claim.getMetadata().getName();
+    recorder.record(claimName, Stage.CREATING, Instant.now());
+    try {
+      KubernetesClientProvider.get()
+          .persistentVolumeClaims()
+          .inNamespace(namespaceName)
+          .create(claim);
+    } catch (KubernetesClientException e) {
+      log.error("Failed creating '" + claimName + "' PersistentVolumeClaim: " + e.getMessage());
+      recorder.recordFailedCreate();
+      return;
+    }
+
+    if (consumerTemplate != null) {
+      Pod consumer =
+          new PodBuilder(consumerTemplate)
+              .editMetadata()
+              .withName(claimName)
+              .addToLabels(BenchmarkRecorder.BENCHMARK_LABEL, getLabelValue())
+              .endMetadata()
+              .editSpec()
+              .addNewVolume()
+              .withName(CONSUMER_VOLUME_NAME)
+              .withNewPersistentVolumeClaim()
+              .withClaimName(claimName)
+              .endPersistentVolumeClaim()
+              .endVolume()
+              .endSpec()
+              .build();
+      try {
+        KubernetesClientProvider.get().pods().inNamespace(namespaceName).create(consumer);
+      } catch (KubernetesClientException e) {
+        // The claim stays unbound until the timeout, which shows up as a missing sample
+        log.error("Failed creating '" + claimName + "' consumer pod: " + e.getMessage());
+      }
+    }
+  }
+
+  public static class Result {
+
+    private final BenchmarkRecorder.Result<Stage> timelines;
+
+    private Result(BenchmarkRecorder.Result<Stage> timelines) {
+      this.timelines = timelines;
+    }
+
+    public LatencyStats getBindingLatency() {
+      return timelines.latency(Stage.CREATING, Stage.BOUND);
+    }
+
+    public int getBoundClaims() {
+      return timelines.countOf(Stage.BOUND);
+    }
+
+    public int getFailedCreates() {
+      return timelines.getFailedCreates();
+    }
+
+    // Claims per second that got Bound, between the first and the last of them
+    public double getThroughput() {
+      return timelines.throughput(Stage.BOUND);
+    }
+  }
+}
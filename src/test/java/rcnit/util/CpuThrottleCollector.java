@@ -0,0 +1,218 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.dsl.ExecListener;
+import io.fabric8.kubernetes.client.dsl.ExecWatch;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Reads the CFS throttling counters of a running container from its cgroup's cpu.stat, through pod
+exec, a few times a second:
+- nr_periods: the CFS periods (100 ms by default) in which the container wanted to run
+- nr_throttled: the ones in which it used up its quota (its CPU limit) and was stopped
+- throttled_time: for how long it was stopped, all periods together
+The counters only go up, so the difference between the first and the last sample is exact, unlike
+the metrics-server's one-minute averages; a few seconds of load are enough.
+
+Both cgroup v1 (/sys/fs/cgroup/cpu/cpu.stat, throttled_time in ns) and v2 (/sys/fs/cgroup/cpu.stat,
+throttled_usec) are read; the container needs `sh` and `cat`. Reads fail before the container starts
+and after it exits; they're counted, not thrown.
+
+Usage:
+    CpuThrottleCollector collector =
+        CpuThrottleCollector.start(ns, "cpu-test-2", "cpu-test-2-container", 250, MILLISECONDS);
+    ...
+    collector.stop();
+    log.info(collector.summary());
+ */
+public class CpuThrottleCollector {
+
+  private static final Logger log = LoggerFactory.getLogger(CpuThrottleCollector.class);
+  private static final String READ_CPU_STAT =
+      "cat /sys/fs/cgroup/cpu/cpu.stat 2>/dev/null || cat /sys/fs/cgroup/cpu.stat";
+  private static final long EXEC_TIMEOUT_SECONDS = 5;
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  private final String namespaceName;
+  private final String podName;
+  private final String containerName;
+  private final ScheduledExecutorService pollThread;
+  private final TimeSeries periods;
+  private final TimeSeries throttledPeriods;
+  private final TimeSeries throttledNanos;
+  private final AtomicInteger failedReads = new AtomicInteger();
+
+  private CpuThrottleCollector(String namespaceName, String podName, String containerName) {
+    this.namespaceName = namespaceName;
+    this.podName = podName;
+    this.containerName = containerName;
+    String seriesName = podName + "/" + containerName;
+    this.periods = new TimeSeries(seriesName + " nr_periods", "periods");
+    this.throttledPeriods = new TimeSeries(seriesName + " nr_throttled", "periods");
+    this.throttledNanos = new TimeSeries(seriesName + " throttled_time", "ns");
+    this.pollThread =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "rcnit-cpu-stat-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  public static CpuThrottleCollector start(
+      String namespaceName,
+      String podName,
+      String containerName,
+      long interval,
+      TimeUnit timeUnit) {
+    CpuThrottleCollector collector =
+        new CpuThrottleCollector(namespaceName, podName, containerName);
+    // With a fixed delay, a slow exec doesn't pile up the next ones behind it
+    collector.pollThread.scheduleWithFixedDelay(collector::poll, 0, interval, timeUnit);
+    log.info(
+        "Reading the cpu.stat of '"
+            + podName
+            + "/"
+            + containerName
+            + "' every "
+            + timeUnit.toMillis(interval)
+            + " ms");
+    return collector;
+  }
+
+  private void poll() {
+    Map<String, Long> cpuStat = readCpuStat();
+    if (cpuStat == null || !cpuStat.containsKey("nr_periods")) {
+      failedReads.incrementAndGet();
+      return;
+    }
+    Instant now = Instant.now();
+    periods.add(now, cpuStat.get("nr_periods"));
+    throttledPeriods.add(now, cpuStat.getOrDefault("nr_throttled", 0L));
+    throttledNanos.add(
+        now,
+        cpuStat.containsKey("throttled_time")
+            ? cpuStat.get("throttled_time")
+            : cpuStat.getOrDefault("throttled_usec", 0L) * 1000);
+  }
+
+  // Lines look like "nr_throttled 42"; returns null if the exec failed
+  private Map<String, Long> readCpuStat() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    CountDownLatch execClosed = new CountDownLatch(1);
+    ExecWatch execWatch = null;
+    try {
+      execWatch =
+          KubernetesClientProvider.get()
+              .pods()
+              .inNamespace(namespaceName)
+              .withName(podName)
+              .inContainer(containerName)
+              .writingOutput(output)
+              .usingListener(
+                  new ExecListener() {
+                    @Override
+                    public void onOpen(Response response) {}
+
+                    @Override
+                    public void onFailure(Throwable t, Response response) {
+                      execClosed.countDown();
+                    }
+
+                    @Override
+                    public void onClose(int code, String reason) {
+                      execClosed.countDown();
+                    }
+                  })
+              .exec("sh", "-c", READ_CPU_STAT);
+      if (!execClosed.await(EXEC_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        return null;
+      }
+    } catch (KubernetesClientException e) {
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } finally {
+      if (execWatch != null) {
+        execWatch.close();
+      }
+    }
+
+    Map<String, Long> cpuStat = new HashMap<>();
+    for (String line : output.toString().split("\n")) {
+      String[] keyAndValue = line.trim().split(" ");
+      if (keyAndValue.length == 2 && keyAndValue[1].matches("\\d+")) {
+        cpuStat.put(keyAndValue[0], Long.parseLong(keyAndValue[1]));
+      }
+    }
+    return cpuStat;
+  }
+
+  // Stops reading; the samples stay readable
+  public void stop() {
+    pollThread.shutdownNow();
+  }
+
+  // The cumulative counters, as read
+  public TimeSeries getPeriods() {
+    return periods;
+  }
+
+  public TimeSeries getThrottledPeriods() {
+    return throttledPeriods;
+  }
+
+  public TimeSeries getThrottledNanos() {
+    return throttledNanos;
+  }
+
+  public int getFailedReads() {
+    return failedReads.get();
+  }
+
+  // The CFS periods between the first and the last sample
+  public long periodsElapsed() {
+    return (long) periods.increase();
+  }
+
+  public long throttledPeriodsElapsed() {
+    return (long) throttledPeriods.increase();
+  }
+
+  public Duration throttledTimeElapsed() {
+    return Duration.ofNanos((long) throttledNanos.increase());
+  }
+
+  // The share of the periods in which the container was throttled, between 0 and 1
+  public double throttledRatio() {
+    return periodsElapsed() == 0 ? 0 : (double) throttledPeriodsElapsed() / periodsElapsed();
+  }
+
+  public String summary() {
+    return String.format(
+        "%s/%s: throttled in %d of %d periods (%.0f%%), for %d ms, "
+            + "from %d samples (%d failed reads)",
+        podName,
+        containerName,
+        throttledPeriodsElapsed(),
+        periodsElapsed(),
+        throttledRatio() * 100,
+        throttledTimeElapsed().toMillis(),
+        periods.count(),
+        getFailedReads());
+  }
+}
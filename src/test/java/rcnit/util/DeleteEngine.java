@@ -0,0 +1,284 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.api.model.LimitRange;
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.PersistentVolume;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.ResourceQuota;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.storage.StorageClass;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Deletes a batch of objects of any supported kind and waits until all of them are gone.
+
+All deletes are sent at once, and every kind+namespace gets one watch (a WaitEngine) for all of
+its objects, so a teardown takes as long as the slowest deletion instead of the sum of them.
+Objects can also be deleted by label, with one deleteCollection call per kind.
+
+Usage:
+    DeleteEngine.inNamespace(ns)
+        .add(limitRange, persistentVolume)
+        .addWithLabel(Pod.class, "app", "echoserver")
+        .await(3, TimeUnit.MINUTES);
+ */
+public class DeleteEngine {
+
+  private static final Logger log = LoggerFactory.getLogger(DeleteEngine.class);
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  // The fabric8 calls block, so they get their own daemon threads instead of the common pool
+  private static final ExecutorService deleteThreads =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "rcnit-delete-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final String namespaceName;
+  private final List<HasMetadata> objects = new ArrayList<>();
+  private final Map<Class<? extends HasMetadata>, String[]> labelSelectors = new LinkedHashMap<>();
+
+  private DeleteEngine(String namespaceName) {
+    this.namespaceName = namespaceName;
+  }
+
+  // The namespace is used for every namespaced object; cluster-scoped objects ignore it
+  public static DeleteEngine inNamespace(String namespaceName) {
+    return new DeleteEngine(namespaceName);
+  }
+
+  public DeleteEngine add(HasMetadata... objects) {
+    for (HasMetadata object : objects) {
+      kindOf(object.getClass());
+      this.objects.add(object);
+    }
+    return this;
+  }
+
+  public DeleteEngine addWithLabel(
+      Class<? extends HasMetadata> kind, String labelKey, String labelValue) {
+    kindOf(kind);
+    labelSelectors.put(kind, new String[] {labelKey, labelValue});
+    return this;
+  }
+
+  public void await(long timeout, TimeUnit timeUnit) {
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+
+    // Send every delete at once
+    List<CompletableFuture<Void>> deletes = new ArrayList<>();
+    for (HasMetadata object : objects) {
+      deletes.add(
+          CompletableFuture.runAsync(() -> delete(kubernetesClient, object), deleteThreads));
+    }
+    labelSelectors.forEach(
+        (kind, label) ->
+            deletes.add(
+                CompletableFuture.runAsync(
+                    () -> deleteCollection(kubernetesClient, kind, label[0], label[1]),
+                    deleteThreads)));
+    joinAll(deletes);
+
+    // Then wait for all of them to disappear, one watch per kind
+    Map<Class<? extends HasMetadata>, Set<String>> namesByKind = new LinkedHashMap<>();
+    for (HasMetadata object : objects) {
+      namesByKind
+          .computeIfAbsent(object.getClass(), kind -> new LinkedHashSet<>())
+          .add(object.getMetadata().getName());
+    }
+
+    List<CompletableFuture<Boolean>> waits = new ArrayList<>();
+    namesByKind.forEach(
+        (kind, names) ->
+            waits.add(
+                CompletableFuture.supplyAsync(
+                    () ->
+                        WaitEngine.on(
+                                "deletion of " + kind.getSimpleName() + " " + names,
+                                operation(kubernetesClient, kind))
+                            .until(object -> names.contains(object.getMetadata().getName()))
+                            .none()
+                            .await(timeout, timeUnit)
+                            .isSatisfied(),
+                    deleteThreads)));
+    labelSelectors.forEach(
+        (kind, label) ->
+            waits.add(
+                CompletableFuture.supplyAsync(
+                    () ->
+                        WaitEngine.on(
+                                "deletion of "
+                                    + kind.getSimpleName()
+                                    + " "
+                                    + label[0]
+                                    + "="
+                                    + label[1],
+                                operation(kubernetesClient, kind).withLabel(label[0], label[1]))
+                            .none()
+                            .await(timeout, timeUnit)
+                            .isSatisfied(),
+                    deleteThreads)));
+
+    boolean allDeleted =
+        waits.stream().map(CompletableFuture::join).reduce(true, Boolean::logicalAnd);
+    List<String> deleted =
+        objects.stream()
+            .map(object -> object.getKind() + "/" + object.getMetadata().getName())
+            .collect(Collectors.toList());
+    labelSelectors.forEach(
+        (kind, label) -> deleted.add(kind.getSimpleName() + "/" + label[0] + "=" + label[1]));
+    String description = String.join(", ", deleted);
+
+    if (allDeleted) {
+      log.info("Deleted [" + description + "]");
+    } else {
+      log.error("Failed deleting [" + description + "]!");
+      throw new io.cucumber.java.PendingException();
+    }
+  }
+
+  private void delete(KubernetesClient kubernetesClient, HasMetadata object) {
+    String name = object.getMetadata().getName();
+    log.info("Deleting '" + name + "' " + object.getKind() + "...");
+    if (object instanceof Namespace) {
+      // Otherwise the watches get closed by the API server
+      KubernetesCache.stop(name);
+    }
+
+    try {
+      boolean deleted =
+          kindOf(object.getClass()).namespaced
+              ? kubernetesClient.resource(object).inNamespace(namespaceName).delete()
+              : kubernetesClient.resource(object).delete();
+      // Not an error: it could have gone with its namespace already
+      if (!deleted) {
+        log.info("'" + name + "' " + object.getKind() + " was already gone");
+      }
+    } catch (KubernetesClientException e) {
+      log.error("Failed deleting '" + name + "' " + object.getKind() + "!");
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
+    }
+  }
+
+  private void deleteCollection(
+      KubernetesClient kubernetesClient,
+      Class<? extends HasMetadata> kind,
+      String labelKey,
+      String labelValue) {
+    log.info(
+        "Deleting every "
+            + kind.getSimpleName()
+            + " labeled "
+            + labelKey
+            + "="
+            + labelValue
+            + "...");
+    try {
+      operation(kubernetesClient, kind).withLabel(labelKey, labelValue).delete();
+    } catch (KubernetesClientException e) {
+      log.error(
+          "Failed deleting " + kind.getSimpleName() + " labeled " + labelKey + "=" + labelValue);
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private FilterWatchListDeletable<
+          HasMetadata, KubernetesResourceList<HasMetadata>, Boolean, Watch, Watcher<HasMetadata>>
+      operation(KubernetesClient kubernetesClient, Class<? extends HasMetadata> kind) {
+    Object operation;
+    switch (kindOf(kind)) {
+      case POD:
+        operation = kubernetesClient.pods().inNamespace(namespaceName);
+        break;
+      case PERSISTENT_VOLUME_CLAIM:
+        operation = kubernetesClient.persistentVolumeClaims().inNamespace(namespaceName);
+        break;
+      case LIMIT_RANGE:
+        operation = kubernetesClient.limitRanges().inNamespace(namespaceName);
+        break;
+      case RESOURCE_QUOTA:
+        operation = kubernetesClient.resourceQuotas().inNamespace(namespaceName);
+        break;
+      case DEPLOYMENT:
+        operation = kubernetesClient.apps().deployments().inNamespace(namespaceName);
+        break;
+      case PERSISTENT_VOLUME:
+        operation = kubernetesClient.persistentVolumes();
+        break;
+      case STORAGE_CLASS:
+        operation = kubernetesClient.storage().storageClasses();
+        break;
+      default:
+        operation = kubernetesClient.namespaces();
+    }
+    return (FilterWatchListDeletable<
+            HasMetadata, KubernetesResourceList<HasMetadata>, Boolean, Watch, Watcher<HasMetadata>>)
+        operation;
+  }
+
+  private static Kind kindOf(Class<?> kind) {
+    for (Kind supportedKind : Kind.values()) {
+      if (supportedKind.type.equals(kind)) {
+        return supportedKind;
+      }
+    }
+    throw new IllegalArgumentException("DeleteEngine doesn't support " + kind.getSimpleName());
+  }
+
+  private static <T> void joinAll(List<CompletableFuture<T>> futures) {
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private enum Kind {
+    POD(Pod.class, true),
+    PERSISTENT_VOLUME_CLAIM(PersistentVolumeClaim.class, true),
+    LIMIT_RANGE(LimitRange.class, true),
+    RESOURCE_QUOTA(ResourceQuota.class, true),
+    DEPLOYMENT(Deployment.class, true),
+    PERSISTENT_VOLUME(PersistentVolume.class, false),
+    STORAGE_CLASS(StorageClass.class, false),
+    NAMESPACE(Namespace.class, false);
+
+    private final Class<? extends HasMetadata> type;
+    private final boolean namespaced;
+
+    Kind(Class<? extends HasMetadata> type, boolean namespaced) {
+      this.type = type;
+      this.namespaced = namespaced;
+    }
+  }
+}
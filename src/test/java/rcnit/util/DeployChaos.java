@@ -3,7 +3,6 @@ package rcnit.util;
 import io.fabric8.kubernetes.api.model.apps.Deployment;
 import io.fabric8.kubernetes.api.model.apps.DeploymentBuilder;
 import io.fabric8.kubernetes.api.model.apps.DeploymentStatus;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import java.util.Optional;
@@ -14,27 +13,40 @@ import rcnit.UseChaosMesh;
 
 public class DeployChaos {
 
-  private static final String NAMESPACE_NAME = UseChaosMesh.NAMESPACE_NAME;
-  private static final String MY_CHAOS_MESH_TESTS_PATH = UseChaosMesh.MY_CHAOS_MESH_TESTS_PATH;
   private static final Logger log = LoggerFactory.getLogger(DeployChaos.class);
-  private static Deployment deployment;
+  // The label in the labelSelectors from MY_CHAOS_MESH_TESTS_PATH
+  private static final String CHAOS_LABEL = "rcnit-chaos-mesh-testing";
+  private static final long ACTION_TIMEOUT_MINUTES = 5;
+  private static final long WEBHOOK_TIMEOUT_MINUTES = 3;
+  // How long the deployment may take to get back to its steady state after an action's run
+  private static final long RECOVERY_SLO_SECONDS = 60;
+  // One DeployChaos per action, so the deployment isn't shared between concurrent actions
+  private Deployment deployment;
+  private SteadyStateMonitor steadyStateMonitor;
+
+  public void launchAction(String testName, String actionName, int amountOfTestPods) {
+    String namespaceName = UseChaosMesh.getNamespaceName();
 
-  public static void launchAction(String testName, String actionName, int amountOfTestPods) {
-    // The labels should match the labelSelectors from MY_CHAOS_MESH_TESTS_PATH
+    /*
+    Every action gets its own deployment and label, so actions running at the same time don't hit
+    each other's pods. The label replaces the one in the labelSelectors from
+    MY_CHAOS_MESH_TESTS_PATH.
+     */
+    String label = CHAOS_LABEL + "-" + actionName;
     deployment =
         new DeploymentBuilder()
             .withNewMetadata()
-            .withNewName("hello-world")
-            .addToLabels("app", "rcnit-chaos-mesh-testing")
+            .withNewName("hello-world-" + actionName)
+            .addToLabels("app", label)
             .endMetadata()
             .withNewSpec()
             .withReplicas(amountOfTestPods)
             .withNewSelector()
-            .addToMatchLabels("app", "rcnit-chaos-mesh-testing")
+            .addToMatchLabels("app", label)
             .endSelector()
             .withNewTemplate()
             .withNewMetadata()
-            .addToLabels("app", "rcnit-chaos-mesh-testing")
+            .addToLabels("app", label)
             .endMetadata()
             .withNewSpec()
             .addNewContainer()
@@ -52,140 +64,96 @@ public class DeployChaos {
             .endSpec()
             .build();
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
-        kubernetesClient
-            .apps()
-            .deployments()
-            .inNamespace(NAMESPACE_NAME)
-            .createOrReplace(deployment);
-        log.info("Created '" + deployment.getMetadata().getName() + "' deployment");
-      } catch (KubernetesClientException e) {
-        log.error("Failed creating '" + deployment.getMetadata().getName() + "' deployment");
-        e.printStackTrace();
-        throw new io.cucumber.java.PendingException();
-      }
-
-      log.info(
-          "Waiting for all '"
-              + deployment.getMetadata().getName()
-              + "' deployment replicas to become available...");
-      try {
-        kubernetesClient
-            .apps()
-            .deployments()
-            .inNamespace(NAMESPACE_NAME)
-            .withName(deployment.getMetadata().getName())
-            .waitUntilCondition(
-                deployment ->
-                    Optional.ofNullable(deployment.getStatus())
-                        .map(DeploymentStatus::getAvailableReplicas)
-                        .orElse(-1)
-                        .equals(amountOfTestPods),
-                amountOfTestPods,
-                TimeUnit.MINUTES);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-        throw new io.cucumber.java.PendingException();
-      }
-      log.info(
-          "All '" + deployment.getMetadata().getName() + "' deployment replicas are available");
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      kubernetesClient.apps().deployments().inNamespace(namespaceName).createOrReplace(deployment);
+      log.info("Created '" + deployment.getMetadata().getName() + "' deployment");
+    } catch (KubernetesClientException e) {
+      log.error("Failed creating '" + deployment.getMetadata().getName() + "' deployment");
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
     }
 
-    /*
-    Give the webhook-cert pods (which have well-documented issues) some time, otherwise:
-    Error from server (InternalError):
-    error when creating "src/test/resources/my-chaos-mesh-tests/pod-failure.yaml":
-    Internal error occurred: failed calling webhook "mpodchaos.kb.io":
-    Post https://chaos-mesh-controller-manager.rcnit-chaos-mesh-testing.svc:443/mutate-pingcap-com-v1alpha1-podchaos?timeout=30s:
-
-    dial tcp 10.96.175.44:443: connect: connection refused
-    OR
-    service "chaos-mesh-controller-manager" not found
-
-    See https://github.com/pingcap/chaos-mesh/issues/435
-     */
+    log.info(
+        "Waiting for all '"
+            + deployment.getMetadata().getName()
+            + "' deployment replicas to become available...");
     try {
-      Thread.sleep(15 * 1000);
+      kubernetesClient
+          .apps()
+          .deployments()
+          .inNamespace(namespaceName)
+          .withName(deployment.getMetadata().getName())
+          .waitUntilCondition(
+              deployment ->
+                  Optional.ofNullable(deployment.getStatus())
+                      .map(DeploymentStatus::getAvailableReplicas)
+                      .orElse(-1)
+                      .equals(amountOfTestPods),
+              amountOfTestPods,
+              TimeUnit.MINUTES);
     } catch (InterruptedException e) {
       e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
     }
+    log.info("All '" + deployment.getMetadata().getName() + "' deployment replicas are available");
 
-    /*
-    Launching the Chaos Mesh actions can't be done with fabric8's Kubernetes client.
-    See https://github.com/fabric8io/kubernetes-client/issues/2139
-    */
-    ExecShellCmd applyAction = new ExecShellCmd();
-    applyAction.execute(
-        "kubectl apply -f "
-            + MY_CHAOS_MESH_TESTS_PATH
-            + actionName
-            + ".yaml --namespace "
-            + NAMESPACE_NAME);
-    String actionOutput = applyAction.returnAsString();
+    // Instead of sleeping for the webhook (https://github.com/pingcap/chaos-mesh/issues/435)
+    WebhookGate.forNamespace(namespaceName)
+        .withProbe(() -> ChaosMeshResources.probeWebhook(namespaceName))
+        .await(WEBHOOK_TIMEOUT_MINUTES, TimeUnit.MINUTES);
 
-    if (actionOutput.contains(testName + ".pingcap.com/" + actionName + " created")) {
-      log.info(actionOutput);
-    } else {
-      log.error("Failed creating '" + actionName + "' action!");
-      log.error(actionOutput);
-      ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(NAMESPACE_NAME);
-      throw new io.cucumber.java.PendingException();
-    }
+    steadyStateMonitor = SteadyStateMonitor.start(namespaceName, "app", label, amountOfTestPods);
+    ChaosMeshResources.create(namespaceName, actionName, label);
+  }
 
-    /*
-    No other way to do it as of 19.04.2020.
-    The chaos-controller-manager and chaos-daemon logs are the only logs, but they're useless.
+  public void checkIfActionSuccessful(String testName, String actionName) {
+    String namespaceName = UseChaosMesh.getNamespaceName();
 
-    You can't see chaos logs:
+    /*
+    The chaos-controller-manager and chaos-daemon logs are useless, and you can't see chaos logs:
     no kind "PodChaos" is registered for version "pingcap.com/v1alpha1"
     in scheme "k8s.io/kubectl/pkg/scheme/scheme.go:28"
-
     See https://github.com/pingcap/chaos-mesh/issues/430
+
+    But the action's own status says where it is, so that is watched instead of sleeping.
      */
-    log.info("Sleeping for [2] minutes to let the '" + actionName + "' action finish...");
-    try {
-      Thread.sleep(2 * 60 * 1000);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    }
-  }
+    log.info("Waiting for the '" + actionName + "' " + testName + " to finish its first run...");
+    String phase =
+        ChaosMeshResources.awaitFirstRun(
+            namespaceName, actionName, ACTION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
 
-  public static void checkIfActionSuccessful(String testName, String actionName) {
-    ExecShellCmd kubectlDescribe = new ExecShellCmd();
-    kubectlDescribe.execute(
-        "kubectl describe " + testName + " " + actionName + " --namespace " + NAMESPACE_NAME);
-    String kubectlDescribeOutput = kubectlDescribe.returnAsString();
+    // The fault is over; the deployment gets RECOVERY_SLO_SECONDS to be whole again
+    SteadyStateMonitor.Result recovery =
+        steadyStateMonitor.await(RECOVERY_SLO_SECONDS, TimeUnit.SECONDS);
+    log.info("'" + actionName + "' action: " + recovery);
 
-    // https://github.com/pingcap/chaos-mesh/issues/648
-    if ((kubectlDescribeOutput.contains("Phase:     Finished") ||
-        kubectlDescribeOutput.contains("Phase:     Waiting"))
-        && ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(NAMESPACE_NAME)) {
-      log.info("'" + actionName + "' action is finished!\n" + kubectlDescribeOutput);
+    /*
+    The namespace is shared with the other actions running at the same time, so only the events of
+    this action's deployment count: its ReplicaSet and pods are named after it.
+     */
+    if (("Finished".equals(phase) || "Waiting".equals(phase))
+        && ExecKubernetesCmd.checkForFailedSchedulingEventsAndSchedulerHealth(
+            namespaceName, deployment.getMetadata().getName() + "-")) {
+      log.info("'" + actionName + "' action is finished (phase: " + phase + ")");
     } else {
-      log.error("Failed running '" + actionName + "' action!");
-      log.error(kubectlDescribeOutput);
+      log.error("Failed running '" + actionName + "' action (phase: " + phase + ")!");
       throw new io.cucumber.java.PendingException();
     }
-
-    // Restoring minikube to empty Chaos Mesh configuration
-    ExecKubernetesCmd.deleteDeployment(deployment.getMetadata().getName(), NAMESPACE_NAME);
-
-    ExecShellCmd kubectlDeleteAction = new ExecShellCmd();
-    kubectlDeleteAction.execute(
-        "kubectl delete -f "
-            + MY_CHAOS_MESH_TESTS_PATH
-            + actionName
-            + ".yaml --namespace "
-            + NAMESPACE_NAME);
-    String kubectlDeleteActionOutput = kubectlDeleteAction.returnAsString();
-
-    if (kubectlDeleteActionOutput.isEmpty()) {
-      log.error("Failed deleting '" + actionName + "' action!");
-      log.error(kubectlDeleteActionOutput);
+    if (!recovery.isSteady()) {
+      log.error(
+          "'"
+              + deployment.getMetadata().getName()
+              + "' deployment didn't recover within "
+              + RECOVERY_SLO_SECONDS
+              + " seconds of the '"
+              + actionName
+              + "' action!");
       throw new io.cucumber.java.PendingException();
-    } else {
-      log.info(kubectlDeleteActionOutput);
     }
+
+    // Restoring minikube to empty Chaos Mesh configuration
+    DeleteEngine.inNamespace(namespaceName).add(deployment).await(3, TimeUnit.MINUTES);
+    ChaosMeshResources.delete(namespaceName, actionName);
   }
 }
@@ -0,0 +1,269 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Writes, reads, updates and deletes many Secrets or ConfigMaps, a few at a time, and reports the
+latency percentiles and the throughput of every operation. Every request is one round trip to the
+API server and one to etcd: the updates are PUTs with the resourceVersion of the create, not the
+client's GET-then-PUT replace.
+
+The operations run one after another (every create, then every read, ...), so each one's
+throughput is its count over its own wall-clock time.
+Secrets go through the API server's encryption at rest if it's configured for them; ConfigMaps
+never do, so the same run on both shows what the encryption costs.
+
+Usage:
+    EtcdBenchmark.Result result =
+        EtcdBenchmark.of(ns, EtcdBenchmark.Kind.SECRETS)
+            .withObjects(1000)
+            .withValueBytes(1024)
+            .withConcurrency(16)
+            .run();
+    log.info(result.latency(EtcdBenchmark.Operation.CREATE).summary());
+ */
+public class EtcdBenchmark {
+
+  private static final Logger log = LoggerFactory.getLogger(EtcdBenchmark.class);
+  private static final String VALUE_KEY = "value";
+
+  private final String namespaceName;
+  private final Kind kind;
+  private int numberOfObjects = 1;
+  private int valueBytes = 1024;
+  private int concurrency = 1;
+
+  public enum Kind {
+    SECRETS,
+    CONFIGMAPS
+  }
+
+  public enum Operation {
+    CREATE,
+    GET,
+    UPDATE,
+    DELETE
+  }
+
+  private EtcdBenchmark(String namespaceName, Kind kind) {
+    this.namespaceName = namespaceName;
+    this.kind = kind;
+  }
+
+  public static EtcdBenchmark of(String namespaceName, Kind kind) {
+    return new EtcdBenchmark(namespaceName, kind);
+  }
+
+  public EtcdBenchmark withObjects(int numberOfObjects) {
+    this.numberOfObjects = numberOfObjects;
+    return this;
+  }
+
+  // The size of the one value in every object, before the base64 of Secrets
+  public EtcdBenchmark withValueBytes(int valueBytes) {
+    this.valueBytes = valueBytes;
+    return this;
+  }
+
+  // How many requests are in flight at once
+  public EtcdBenchmark withConcurrency(int concurrency) {
+    this.concurrency = concurrency;
+    return this;
+  }
+
+  public Result run() {
+    Result result = new Result();
+    // The resourceVersion of every object, as the last write returned it
+    Map<String, String> resourceVersions = new ConcurrentHashMap<>();
+    String value = randomValue(valueBytes, 0);
+    String updatedValue = randomValue(valueBytes, 1);
+
+    ExecutorService benchmarkThreads = BenchmarkThreads.newPool(concurrency);
+    log.info(
+        "Benchmarking ["
+            + numberOfObjects
+            + "] "
+            + kind
+            + " of ["
+            + valueBytes
+            + "] bytes, ["
+            + concurrency
+            + "] requests at a time, in '"
+            + namespaceName
+            + "' namespace");
+    try {
+      for (Operation operation : Operation.values()) {
+        Instant startedAt = Instant.now();
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        for (int i = 0; i < numberOfObjects; i++) {
+          String name = "etcd-benchmark-test-" + i;
+          requests.add(
+              CompletableFuture.runAsync(
+                  () -> {
+                    Instant sentAt = Instant.now();
+                    try {
+                      String resourceVersion =
+                          execute(operation, name, value, updatedValue, resourceVersions);
+                      result.latencies.get(operation).add(sentAt, Instant.now());
+                      if (resourceVersion != null) {
+                        resourceVersions.put(name, resourceVersion);
+                      }
+                    } catch (KubernetesClientException e) {
+                      result.errors.get(operation).incrementAndGet();
+                      log.error(operation + " of '" + name + "' failed: " + e.getMessage());
+                    }
+                  },
+                  benchmarkThreads));
+        }
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).join();
+        result.elapsed.put(operation, Duration.between(startedAt, Instant.now()));
+      }
+    } finally {
+      benchmarkThreads.shutdownNow();
+    }
+    return result;
+  }
+
+  // Returns the resourceVersion of a write, or null
+  private String execute(
+      Operation operation,
+      String name,
+      String value,
+      String updatedValue,
+      Map<String, String> resourceVersions) {
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    switch (operation) {
+      case CREATE:
+        return resourceVersionOf(
+            kind == Kind.SECRETS
+                ? kubernetesClient.secrets().inNamespace(namespaceName).create(secret(name, value))
+                : kubernetesClient
+                    .configMaps()
+                    .inNamespace(namespaceName)
+                    .create(configMap(name, value)));
+      case GET:
+        HasMetadata object =
+            kind == Kind.SECRETS
+                ? kubernetesClient.secrets().inNamespace(namespaceName).withName(name).get()
+                : kubernetesClient.configMaps().inNamespace(namespaceName).withName(name).get();
+        if (object == null) {
+          throw new KubernetesClientException("'" + name + "' is gone");
+        }
+        return null;
+      case UPDATE:
+        String resourceVersion = resourceVersions.get(name);
+        if (resourceVersion == null) {
+          throw new KubernetesClientException("'" + name + "' was never created");
+        }
+        return resourceVersionOf(
+            kind == Kind.SECRETS
+                ? kubernetesClient
+                    .secrets()
+                    .inNamespace(namespaceName)
+                    .withName(name)
+                    .lockResourceVersion(resourceVersion)
+                    .replace(secret(name, updatedValue))
+                : kubernetesClient
+                    .configMaps()
+                    .inNamespace(namespaceName)
+                    .withName(name)
+                    .lockResourceVersion(resourceVersion)
+                    .replace(configMap(name, updatedValue)));
+      default:
+        boolean deleted =
+            kind == Kind.SECRETS
+                ? kubernetesClient.secrets().inNamespace(namespaceName).withName(name).delete()
+                : kubernetesClient.configMaps().inNamespace(namespaceName).withName(name).delete();
+        if (!deleted) {
+          throw new KubernetesClientException("'" + name + "' was already gone");
+        }
+        return null;
+    }
+  }
+
+  private static Secret secret(String name, String value) {
+    return new SecretBuilder()
+        .withNewMetadata()
+        .withName(name)
+        .endMetadata()
+        .addToStringData(VALUE_KEY, value)
+        .build();
+  }
+
+  private static ConfigMap configMap(String name, String value) {
+    return new ConfigMapBuilder()
+        .withNewMetadata()
+        .withName(name)
+        .endMetadata()
+        .addToData(VALUE_KEY, value)
+        .build();
+  }
+
+  private static String resourceVersionOf(HasMetadata object) {
+    return object.getMetadata().getResourceVersion();
+  }
+
+  // Letters and digits, so the size in etcd is the size asked for (plus the base64 of Secrets)
+  private static String randomValue(int valueBytes, long seed) {
+    String alphabet = "abcdefghijklmnopqrstuvwxyz0123456789";
+    Random random = new Random(seed);
+    StringBuilder value = new StringBuilder(valueBytes);
+    for (int i = 0; i < valueBytes; i++) {
+      value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return value.toString();
+  }
+
+  public static class Result {
+
+    private final Map<Operation, LatencyStats> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicInteger> errors = new EnumMap<>(Operation.class);
+    private final Map<Operation, Duration> elapsed = new EnumMap<>(Operation.class);
+
+    private Result() {
+      for (Operation operation : Operation.values()) {
+        latencies.put(operation, new LatencyStats(operation.toString()));
+        errors.put(operation, new AtomicInteger());
+      }
+    }
+
+    // The successful requests only
+    public LatencyStats latency(Operation operation) {
+      return latencies.get(operation);
+    }
+
+    // Successful requests per second
+    public double throughput(Operation operation) {
+      return latencies.get(operation).count()
+          * 1000.0
+          / Math.max(elapsed.get(operation).toMillis(), 1);
+    }
+
+    public int errors(Operation operation) {
+      return errors.get(operation).get();
+    }
+
+    public int totalErrors() {
+      return errors.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+  }
+}
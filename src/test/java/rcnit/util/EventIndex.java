@@ -0,0 +1,94 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.client.informers.cache.Indexer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+Queries over the events of one namespace, served from the KubernetesCache event informer.
+This replaces forking `kubectl get events --field-selector ...` and grepping its output.
+
+All queries return the events sorted by creation timestamp, like `--sort-by`.
+ */
+public class EventIndex {
+
+  static final String BY_INVOLVED_OBJECT = "involvedObject";
+  static final String BY_REASON = "reason";
+  static final String BY_TYPE = "type";
+
+  private final Indexer<Event> indexer;
+
+  EventIndex(Indexer<Event> indexer) {
+    this.indexer = indexer;
+  }
+
+  // Registered on the event informer before it starts
+  static Map<String, Function<Event, List<String>>> indexers() {
+    Map<String, Function<Event, List<String>>> indexers = new HashMap<>();
+    indexers.put(
+        BY_INVOLVED_OBJECT,
+        event ->
+            event.getInvolvedObject() == null || event.getInvolvedObject().getName() == null
+                ? Collections.emptyList()
+                : Collections.singletonList(event.getInvolvedObject().getName()));
+    indexers.put(BY_REASON, event -> nullableToList(event.getReason()));
+    indexers.put(BY_TYPE, event -> nullableToList(event.getType()));
+    return indexers;
+  }
+
+  public List<Event> forInvolvedObject(String objectName) {
+    return sorted(indexer.byIndex(BY_INVOLVED_OBJECT, objectName));
+  }
+
+  public List<Event> withReason(String reason) {
+    return sorted(indexer.byIndex(BY_REASON, reason));
+  }
+
+  public List<Event> withType(String type) {
+    return sorted(indexer.byIndex(BY_TYPE, type));
+  }
+
+  // Everything that isn't a Normal event, e.g. Warning
+  public List<Event> anomalousForInvolvedObject(String objectName) {
+    return forInvolvedObject(objectName).stream()
+        .filter(event -> !"Normal".equals(event.getType()))
+        .collect(Collectors.toList());
+  }
+
+  // Formats the events like `kubectl get events` does
+  public static String format(List<Event> events) {
+    return events.stream()
+        .map(
+            event ->
+                event.getLastTimestamp()
+                    + "\t"
+                    + event.getType()
+                    + "\t"
+                    + event.getReason()
+                    + "\t"
+                    + event.getInvolvedObject().getKind().toLowerCase()
+                    + "/"
+                    + event.getInvolvedObject().getName()
+                    + "\t"
+                    + event.getMessage())
+        .collect(Collectors.joining("\n", "LAST SEEN\tTYPE\tREASON\tOBJECT\tMESSAGE\n", ""));
+  }
+
+  private static List<String> nullableToList(String value) {
+    return value == null ? Collections.emptyList() : Collections.singletonList(value);
+  }
+
+  private static List<Event> sorted(List<Event> events) {
+    return events.stream()
+        .sorted(
+            Comparator.comparing(
+                event -> String.valueOf(event.getMetadata().getCreationTimestamp())))
+        .collect(Collectors.toList());
+  }
+}
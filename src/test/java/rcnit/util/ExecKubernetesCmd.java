@@ -1,10 +1,10 @@
 package rcnit.util;
 
+import io.fabric8.kubernetes.api.model.Event;
 import io.fabric8.kubernetes.api.model.Namespace;
 import io.fabric8.kubernetes.api.model.NamespaceBuilder;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
 import io.fabric8.kubernetes.api.model.Pod;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import java.io.InputStream;
@@ -13,6 +13,8 @@ import java.util.List;
 import java.util.Scanner;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,21 +22,30 @@ public class ExecKubernetesCmd {
 
   private static final Logger log = LoggerFactory.getLogger(ExecKubernetesCmd.class);
 
-  public static void createNamespace(String namespaceName) {
-    log.info("Creating '" + namespaceName + "' namespace...");
+  /*
+  Every namespace gets a unique suffix from the API server (generateName), so the next scenario
+  doesn't have to wait for the previous one's namespace to finish terminating.
+  Returns the name of the created namespace.
+   */
+  public static String createNamespace(String namespacePrefix) {
+    log.info("Creating '" + namespacePrefix + "-*' namespace...");
 
     Namespace ns =
-        new NamespaceBuilder().withNewMetadata().withName(namespaceName).endMetadata().build();
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
-        kubernetesClient.namespaces().createOrReplace(ns);
-        log.info("Created '" + namespaceName + "' namespace");
-      } catch (KubernetesClientException e) {
-        log.error("Failed creating '" + namespaceName + "' namespace!");
-        e.printStackTrace();
-        throw new io.cucumber.java.PendingException();
-      }
+        new NamespaceBuilder()
+            .withNewMetadata()
+            .withGenerateName(namespacePrefix + "-")
+            .endMetadata()
+            .build();
+
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      String namespaceName = kubernetesClient.namespaces().create(ns).getMetadata().getName();
+      log.info("Created '" + namespaceName + "' namespace");
+      return namespaceName;
+    } catch (KubernetesClientException e) {
+      log.error("Failed creating '" + namespacePrefix + "-*' namespace!");
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
     }
   }
 
@@ -45,113 +56,173 @@ public class ExecKubernetesCmd {
             + persistentVolumeClaim.getMetadata().getName()
             + "' PersistentVolumeClaim...");
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      /*
-      Don't surround with try {} because some calls to this method are supposed to fail and they
-      are accounted for in the caller method.
-       */
-      kubernetesClient
-          .persistentVolumeClaims()
-          .inNamespace(namespaceName)
-          .createOrReplace(persistentVolumeClaim);
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    /*
+    Don't surround with try {} because some calls to this method are supposed to fail and they
+    are accounted for in the caller method.
+     */
+    kubernetesClient
+        .persistentVolumeClaims()
+        .inNamespace(namespaceName)
+        .createOrReplace(persistentVolumeClaim);
   }
 
-  public static void waitForPodsInNamespaceToBeReady(String namespaceName) {
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      List<Pod> podList = kubernetesClient.pods().inNamespace(namespaceName).list().getItems();
-      int numberOfPods = podList.size();
+  /*
+  If all PodConditions are Ready, then the Pod is ready.
+  Ready = the Pod is able to serve requests
+  and should be added to the load balancing pools of all matching Services
+  See https://kubernetes.io/docs/concepts/workloads/pods/pod-lifecycle/#pod-conditions
+   */
+  public static boolean podIsReady(Pod pod) {
+    return pod.getStatus() != null
+        && pod.getStatus().getConditions() != null
+        && pod.getStatus().getConditions().stream()
+            .filter(condition -> condition.getType().equals("Ready"))
+            .map(condition -> condition.getStatus().equals("True"))
+            .findFirst()
+            .orElse(false);
+  }
 
-      log.info("Waiting for all pods in '" + namespaceName + "' namespace to be ready...");
+  public static boolean podIsTerminated(Pod pod) {
+    return pod.getStatus() != null
+        && ("Succeeded".equals(pod.getStatus().getPhase())
+            || "Failed".equals(pod.getStatus().getPhase()));
+  }
 
-      for (Pod item : podList) {
-        try {
-          /*
-          If all PodConditions are Ready, then the Pod is ready.
-          Ready = the Pod is able to serve requests
-          and should be added to the load balancing pools of all matching Services
-          See https://kubernetes.io/docs/concepts/workloads/pods/pod-lifecycle/#pod-conditions
+  public static boolean podIsStarted(Pod pod) {
+    return podIsTerminated(pod)
+        || (pod.getStatus() != null && "Running".equals(pod.getStatus().getPhase()));
+  }
 
-          The kubernetesClient waits for numberOfPods minutes for a pod to be ready.
+  public static boolean podIsScheduled(Pod pod) {
+    return pod.getStatus() != null
+        && pod.getStatus().getConditions() != null
+        && pod.getStatus().getConditions().stream()
+            .anyMatch(
+                condition ->
+                    condition.getType().equals("PodScheduled")
+                        && condition.getStatus().equals("True"));
+  }
 
-          Code from
-          https://github.com/zalando/zalenium/blob/master/src/main/java/de/zalando/ep/zalenium/container/kubernetes/KubernetesContainerClient.java#L474
-          */
-          kubernetesClient
-              .pods()
-              .inNamespace(namespaceName)
-              .withName(item.getMetadata().getName())
-              .waitUntilCondition(
-                  pod ->
-                      pod.getStatus().getConditions().stream()
-                          .filter(condition -> condition.getType().equals("Ready"))
-                          .map(condition -> condition.getStatus().equals("True"))
-                          .findFirst()
-                          .orElse(false),
-                  numberOfPods,
-                  TimeUnit.MINUTES);
-          log.info("Pod '" + item.getMetadata().getName() + "' is ready");
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        }
-      }
-    }
+  // The scheduler has decided (either way) once the PodScheduled condition shows up
+  public static boolean podHasSchedulingDecision(Pod pod) {
+    return pod.getStatus() != null
+        && pod.getStatus().getConditions() != null
+        && pod.getStatus().getConditions().stream()
+            .anyMatch(
+                condition ->
+                    condition.getType().equals("PodScheduled")
+                        && (condition.getStatus().equals("True")
+                            || "Unschedulable".equals(condition.getReason())));
   }
 
-  public static void waitForPodToBeReady(String podName, String namespaceName) {
-    log.info(
-        "Waiting for '" + podName + "' pod in '" + namespaceName + "' namespace to be ready...");
+  public static void waitForPodsInNamespaceToBeReady(String namespaceName) {
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    List<String> podNames =
+        kubernetesClient.pods().inNamespace(namespaceName).list().getItems().stream()
+            .map(pod -> pod.getMetadata().getName())
+            .collect(Collectors.toList());
+    if (podNames.isEmpty()) {
+      log.info("There are no pods in '" + namespaceName + "' namespace to wait for");
+      return;
+    }
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      // This assumes that the pod is not designed to fail from the get-go
-      try {
-        kubernetesClient
-            .pods()
-            .inNamespace(namespaceName)
-            .withName(podName)
-            .waitUntilCondition(
+    log.info("Waiting for all pods in '" + namespaceName + "' namespace to be ready...");
+
+    /*
+    All pods are awaited at once on a single watch, so this takes as long as the slowest pod.
+    Completed pods (e.g. Jobs) will never be Ready, so they count as done.
+    Every listed pod has to be ready; pods created after the list are picked up from the watch and
+    have to be ready as well. A listed pod that gets deleted, e.g. replaced by its controller, is no
+    longer waited for, but its replacement is.
+     */
+    WaitEngine.Result<Pod> result =
+        WaitEngine.on(
+                "all pods in '" + namespaceName + "' namespace to be ready",
+                kubernetesClient.pods().inNamespace(namespaceName))
+            .until(
                 pod ->
-                    pod.getStatus().getConditions().stream()
-                        .filter(condition -> condition.getType().equals("Ready"))
-                        .map(condition -> condition.getStatus().equals("True"))
-                        .findFirst()
-                        .orElse(false),
-                3,
-                TimeUnit.MINUTES);
-      } catch (InterruptedException interruptedException) {
-        interruptedException.printStackTrace();
-      }
-      log.info("Pod '" + podName + "' is ready");
+                    podIsReady(pod)
+                        || (pod.getStatus() != null
+                            && "Succeeded".equals(pod.getStatus().getPhase())))
+            .allOf(podNames)
+            .await(Math.max(podNames.size(), 3), TimeUnit.MINUTES);
+
+    if (!result.isSatisfied()) {
+      log.error("Not all pods in '" + namespaceName + "' namespace became ready!");
+      throw new io.cucumber.java.PendingException();
     }
+    result
+        .getObjectSatisfiedAt()
+        .forEach((podName, readyAt) -> log.info("Pod '" + podName + "' is ready at " + readyAt));
+  }
+
+  public static Pod waitForPod(
+      String podName, String namespaceName, Predicate<Pod> condition, String conditionName) {
+    log.info(
+        "Waiting for '"
+            + podName
+            + "' pod in '"
+            + namespaceName
+            + "' namespace to be "
+            + conditionName
+            + "...");
+
+    // The field selector makes this work even if the pod hasn't been created yet
+    WaitEngine.Result<Pod> result =
+        WaitEngine.on(
+                "pod '" + podName + "' to be " + conditionName,
+                KubernetesClientProvider.get()
+                    .pods()
+                    .inNamespace(namespaceName)
+                    .withField("metadata.name", podName))
+            .until(condition)
+            .all(1)
+            .await(3, TimeUnit.MINUTES);
+
+    if (!result.isSatisfied()) {
+      log.error("Pod '" + podName + "' is not " + conditionName + "!");
+      throw new io.cucumber.java.PendingException();
+    }
+    log.info("Pod '" + podName + "' is " + conditionName);
+    return result.getObjects().get(podName);
+  }
+
+  public static void waitForPodToBeReady(String podName, String namespaceName) {
+    // This assumes that the pod is not designed to fail from the get-go
+    waitForPod(podName, namespaceName, ExecKubernetesCmd::podIsReady, "ready");
+  }
+
+  public static void waitForPodToStart(String podName, String namespaceName) {
+    waitForPod(podName, namespaceName, ExecKubernetesCmd::podIsStarted, "started");
+  }
+
+  // Returns the terminated pod as the watch saw it, so callers don't read a lagging cache
+  public static Pod waitForPodToTerminate(String podName, String namespaceName) {
+    return waitForPod(podName, namespaceName, ExecKubernetesCmd::podIsTerminated, "terminated");
   }
 
   public static AtomicBoolean checkIfPodIsScheduled(String podName, String namespaceName) {
     AtomicBoolean isScheduled = new AtomicBoolean(false);
 
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      try {
-        kubernetesClient
-            .pods()
-            .inNamespace(namespaceName)
-            .withName(podName)
-            .get()
-            .getStatus()
-            .getConditions()
-            .forEach(
-                condition -> {
-                  try {
-                    if (condition.getType().equals("PodScheduled")
-                        && condition.getStatus().equals("True")) {
-                      isScheduled.set(true);
-                    }
-                  } catch (KubernetesClientException e) {
-                    e.printStackTrace();
-                  }
-                });
-      } catch (KubernetesClientException e) {
-        e.printStackTrace();
-      }
-    }
+    /*
+    Waits on a watch until the scheduler has made its decision, so the caller doesn't have to
+    sleep until the pod exists.
+     */
+    waitForPod(
+            podName,
+            namespaceName,
+            ExecKubernetesCmd::podHasSchedulingDecision,
+            "considered by the scheduler")
+        .getStatus()
+        .getConditions()
+        .forEach(
+            condition -> {
+              if (condition.getType().equals("PodScheduled")
+                  && condition.getStatus().equals("True")) {
+                isScheduled.set(true);
+              }
+            });
     return isScheduled;
   }
 
@@ -160,8 +231,11 @@ public class ExecKubernetesCmd {
     System.out.println("\nLog of '" + podName + "' pod in namespace '" + namespaceName + "'");
     System.out.println("-------------------------------------------------------------------");
 
-    // If I don't initialize another client here, I get a log callback failure
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
+    /*
+    If I don't initialize another client here, I get a log callback failure.
+    See https://github.com/fabric8io/kubernetes-client/issues/1522
+     */
+    try (final KubernetesClient kubernetesClient = KubernetesClientProvider.newLogWatchClient()) {
       InputStream is =
           kubernetesClient
               .pods()
@@ -186,87 +260,54 @@ public class ExecKubernetesCmd {
   }
 
   public static void getObjectEvents(String objectName, String namespaceName) {
-    ExecShellCmd getObjectEvents = new ExecShellCmd();
+    List<Event> objectEvents =
+        KubernetesCache.forNamespace(namespaceName).events().forInvolvedObject(objectName);
 
-    getObjectEvents.execute(
-        "kubectl get events"
-            + " --field-selector=involvedObject.name="
-            + objectName
-            + " --namespace="
-            + namespaceName
-            + " --sort-by=.metadata.creationTimestamp");
-    String getObjectEventsOutput = getObjectEvents.returnAsString();
-
-    if (getObjectEventsOutput.contains("No resources found") || getObjectEventsOutput.isEmpty()) {
+    if (objectEvents.isEmpty()) {
       log.info("There are no events for the '" + objectName + "' object");
     } else {
-      log.info("Events for '" + objectName + "' object:\n" + getObjectEventsOutput);
+      log.info("Events for '" + objectName + "' object:\n" + EventIndex.format(objectEvents));
     }
-
-    /*
-    This code works, but the alternative ^ is simpler and prettier.
-
-    If you wanna improve the formatting, start here:
-    https://stackoverflow.com/questions/2745206/output-in-a-table-format-in-javas-system-out
-
-        log.info("LAST SEEN \t\t\t\t TYPE \t\t REASON \t\t\t OBJECT \t\t\t\t MESSAGE");
-    kubernetesClient
-        .events()
-        .inNamespace(namespaceName)
-        .list()
-        .getItems()
-        .forEach(
-            event -> {
-              if (event.getInvolvedObject().getName().equals(objectName)) {
-                log.info(
-                    "{} \t {} \t {} \t {} \t {} \t",
-                    event.getLastTimestamp(),
-                    event.getType(),
-                    event.getReason(),
-                    event.getInvolvedObject().getName(),
-                    event.getMessage());
-              }
-            });
-     */
   }
 
   public static boolean checkForFailedSchedulingEventsAndSchedulerHealth(String namespaceName) {
+    return checkForFailedSchedulingEventsAndSchedulerHealth(namespaceName, "");
+  }
+
+  /*
+  Only counts the events of the objects whose names start with objectNamePrefix, e.g. the pods of
+  one deployment in a namespace that other steps are using at the same time.
+   */
+  public static boolean checkForFailedSchedulingEventsAndSchedulerHealth(
+      String namespaceName, String objectNamePrefix) {
     /*
     Reason AND type can be FailedScheduling.
     See https://www.bluematador.com/blog/kubernetes-events-explained
      */
-    ExecShellCmd getSchedulingEventsByType = new ExecShellCmd();
-    ExecShellCmd getSchedulingEventsByReason = new ExecShellCmd();
+    EventIndex events = KubernetesCache.forNamespace(namespaceName).events();
+    Predicate<Event> isOwnEvent =
+        event -> String.valueOf(event.getInvolvedObject().getName()).startsWith(objectNamePrefix);
+    List<Event> failedSchedulingEventsByType =
+        events.withType("FailedScheduling").stream()
+            .filter(isOwnEvent)
+            .collect(Collectors.toList());
+    List<Event> failedSchedulingEventsByReason =
+        events.withReason("FailedScheduling").stream()
+            .filter(isOwnEvent)
+            .collect(Collectors.toList());
     boolean schedulerIsHealthy;
 
-    getSchedulingEventsByType.execute(
-        "kubectl get events "
-            + "--field-selector type=FailedScheduling "
-            + "--sort-by=.metadata.creationTimestamp "
-            + "--namespace "
-            + namespaceName);
-    String failedSchedulingEventsByType = getSchedulingEventsByType.returnAsString();
-
-    getSchedulingEventsByReason.execute(
-        "kubectl get events "
-            + "--field-selector reason=FailedScheduling "
-            + "--sort-by=.metadata.creationTimestamp "
-            + "--namespace "
-            + namespaceName);
-    String failedSchedulingEventsByReason = getSchedulingEventsByReason.returnAsString();
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      schedulerIsHealthy =
-          kubernetesClient
-              .componentstatuses()
-              .withName("scheduler")
-              .get()
-              .toString()
-              .contains("type=Healthy");
-    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    schedulerIsHealthy =
+        kubernetesClient
+            .componentstatuses()
+            .withName("scheduler")
+            .get()
+            .toString()
+            .contains("type=Healthy");
 
-    if (failedSchedulingEventsByType.contains("No resources found")
-        && failedSchedulingEventsByReason.contains("No resources found")
+    if (failedSchedulingEventsByType.isEmpty()
+        && failedSchedulingEventsByReason.isEmpty()
         && schedulerIsHealthy) {
       log.info("The scheduler is healthy and there are no FailedScheduling events!");
       return true;
@@ -274,259 +315,18 @@ public class ExecKubernetesCmd {
       log.info("There are FailedScheduling events:");
 
       // Making the output pretty
-      if (failedSchedulingEventsByType.contains("No resources found")) {
-        log.info(failedSchedulingEventsByReason);
+      if (!failedSchedulingEventsByReason.isEmpty()) {
+        log.info(EventIndex.format(failedSchedulingEventsByReason));
       }
-      if (failedSchedulingEventsByReason.contains("No resources found")) {
-        log.info(failedSchedulingEventsByType);
+      if (!failedSchedulingEventsByType.isEmpty()) {
+        log.info(EventIndex.format(failedSchedulingEventsByType));
       }
       return false;
     }
   }
 
-  public static void helmUninstall(String releaseName, String namespaceName) {
-    ExecShellCmd helmUninstall = new ExecShellCmd();
-
-    log.info("Uninstalling '" + releaseName + "' Helm chat...");
-    helmUninstall.execute("helm uninstall " + releaseName + " --namespace=" + namespaceName);
-    String helmUninstallOutput = helmUninstall.returnAsString();
-
-    if (helmUninstallOutput.contentEquals("release \"" + releaseName + "\" uninstalled")) {
-      log.info("Uninstalled '" + releaseName + "' Helm chart");
-    } else {
-      log.error("Failed uninstalling '" + releaseName + "' Helm chart:\n" + helmUninstallOutput);
-      throw new io.cucumber.java.PendingException();
-    }
-  }
-
+  // Doesn't block; the NamespaceReaper waits for the namespace to terminate in the background
   public static void deleteNamespace(String namespaceName) {
-    log.info("Deleting '" + namespaceName + "' namespace...");
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      if (kubernetesClient.namespaces().withName(namespaceName).delete()) {
-        try {
-          kubernetesClient
-              .namespaces()
-              .withName(namespaceName)
-              .waitUntilCondition(
-                  namespaceObject ->
-                      namespaceObject == null
-                          || !namespaceObject.getStatus().getPhase().equals("Terminating"),
-                  3,
-                  TimeUnit.MINUTES);
-          log.info("Deleted '" + namespaceName + "' namespace");
-        } catch (InterruptedException e) {
-          throw new RuntimeException(e);
-        }
-      } else {
-        log.error("Failed deleting '" + namespaceName + "' namespace!");
-        throw new io.cucumber.java.PendingException();
-      }
-    }
-  }
-
-  public static void deletePod(String podName, String namespaceName) {
-    log.info("Deleting '" + podName + "' pod...");
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      if (kubernetesClient.pods().inNamespace(namespaceName).withName(podName).delete()) {
-        try {
-          kubernetesClient
-              .pods()
-              .inNamespace(namespaceName)
-              .withName(podName)
-              .waitUntilCondition(
-                  pod -> pod == null || !pod.getStatus().getPhase().equals("Terminating"),
-                  3,
-                  TimeUnit.MINUTES);
-          log.info("Deleted '" + podName + "' pod");
-        } catch (InterruptedException e) {
-          throw new RuntimeException(e);
-        }
-      } else {
-        log.error("Failed deleting '" + podName + "' pod!");
-        throw new io.cucumber.java.PendingException();
-      }
-    }
-  }
-
-  public static void deletePersistentVolume(String volumeName) {
-    log.info("Deleting '" + volumeName + "' PersistentVolume...");
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      if (kubernetesClient.persistentVolumes().withName(volumeName).delete()) {
-        try {
-          kubernetesClient
-              .persistentVolumes()
-              .withName(volumeName)
-              .waitUntilCondition(
-                  volume -> volume == null || !volume.getStatus().getPhase().equals("Terminating"),
-                  3,
-                  TimeUnit.MINUTES);
-          log.info("Deleted '" + volumeName + "' PersistentVolume");
-        } catch (InterruptedException e) {
-          log.error("Failed deleting '" + volumeName + "' PersistentVolume!");
-          throw new RuntimeException(e);
-        }
-      } else {
-        log.error("Failed deleting '" + volumeName + "' PersistentVolume!");
-        throw new io.cucumber.java.PendingException();
-      }
-    }
-  }
-
-  public static void deleteStorageClass(String storageClassName, String namespaceName) {
-    log.info("Deleting '" + storageClassName + "' StorageClass...");
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      if (kubernetesClient
-          .storage()
-          .storageClasses()
-          .inNamespace(namespaceName)
-          .withName(storageClassName)
-          .delete()) {
-        try {
-          kubernetesClient
-              .storage()
-              .storageClasses()
-              .inNamespace(namespaceName)
-              .withName(storageClassName)
-              .waitUntilCondition(
-                  storageClass ->
-                      storageClass == null || storageClass.getMetadata().getName().isBlank(),
-                  3,
-                  TimeUnit.MINUTES);
-          log.info("Deleted '" + storageClassName + "' StorageClass");
-        } catch (InterruptedException e) {
-          log.error("Failed deleting '" + storageClassName + "' StorageClass!");
-          throw new RuntimeException(e);
-        }
-      } else {
-        log.error("Failed deleting '" + storageClassName + "' StorageClass!");
-        throw new io.cucumber.java.PendingException();
-      }
-    }
-  }
-
-  public static void deletePersistentVolumeClaim(
-      String persistentVolumeClaimName, String namespaceName) {
-    log.info("Deleting '" + persistentVolumeClaimName + "' PersistentVolumeClaim...");
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      if (kubernetesClient
-          .persistentVolumeClaims()
-          .inNamespace(namespaceName)
-          .withName(persistentVolumeClaimName)
-          .delete()) {
-        try {
-          kubernetesClient
-              .persistentVolumeClaims()
-              .inNamespace(namespaceName)
-              .withName(persistentVolumeClaimName)
-              .waitUntilCondition(
-                  pvc -> pvc == null || pvc.getMetadata().getName().isBlank(), 3, TimeUnit.MINUTES);
-          log.info("Deleted '" + persistentVolumeClaimName + "' PersistentVolumeClaim");
-        } catch (InterruptedException e) {
-          log.error("Failed deleting '" + persistentVolumeClaimName + "' PersistentVolumeClaim!");
-          throw new RuntimeException(e);
-        }
-      } else {
-        log.error("Failed deleting '" + persistentVolumeClaimName + "' PersistentVolumeClaim!");
-        throw new io.cucumber.java.PendingException();
-      }
-    }
-  }
-
-  public static void deleteLimitRange(String limitRangeName, String namespaceName) {
-    log.info("Deleting '" + limitRangeName + "' LimitRange...");
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      if (kubernetesClient
-          .limitRanges()
-          .inNamespace(namespaceName)
-          .withName(limitRangeName)
-          .delete()) {
-        try {
-          kubernetesClient
-              .limitRanges()
-              .inNamespace(namespaceName)
-              .withName(limitRangeName)
-              .waitUntilCondition(
-                  limitRange -> limitRange == null || limitRange.getMetadata().getName().isBlank(),
-                  3,
-                  TimeUnit.MINUTES);
-          log.info("Deleted '" + limitRangeName + "' LimitRange");
-        } catch (InterruptedException e) {
-          log.error("Failed deleting '" + limitRangeName + "' LimitRange!");
-          throw new RuntimeException(e);
-        }
-      } else {
-        log.error("Failed deleting '" + limitRangeName + "' LimitRange!");
-        throw new io.cucumber.java.PendingException();
-      }
-    }
-  }
-
-  public static void deleteResourceQuota(String resourceQuotaName, String namespaceName) {
-    log.info("Deleting '" + resourceQuotaName + "' ResourceQuota...");
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      if (kubernetesClient
-          .resourceQuotas()
-          .inNamespace(namespaceName)
-          .withName(resourceQuotaName)
-          .delete()) {
-        try {
-          kubernetesClient
-              .resourceQuotas()
-              .inNamespace(namespaceName)
-              .withName(resourceQuotaName)
-              .waitUntilCondition(
-                  resourceQuota ->
-                      resourceQuota == null || resourceQuota.getMetadata().getName().isBlank(),
-                  3,
-                  TimeUnit.MINUTES);
-          log.info("Deleted '" + resourceQuotaName + "' ResourceQuota");
-        } catch (InterruptedException e) {
-          log.error("Failed deleting '" + resourceQuotaName + "' ResourceQuota!");
-          throw new RuntimeException(e);
-        }
-      } else {
-        log.error("Failed deleting '" + resourceQuotaName + "' ResourceQuota!");
-        throw new io.cucumber.java.PendingException();
-      }
-    }
-  }
-
-  public static void deleteDeployment(String deploymentName, String namespaceName) {
-    log.info("Deleting '" + deploymentName + "' Deployment...");
-
-    try (final KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
-      if (kubernetesClient
-          .apps()
-          .deployments()
-          .inNamespace(namespaceName)
-          .withName(deploymentName)
-          .delete()) {
-        try {
-          kubernetesClient
-              .apps()
-              .deployments()
-              .inNamespace(namespaceName)
-              .withName(deploymentName)
-              .waitUntilCondition(
-                  deployment -> deployment == null || deployment.getMetadata().getName().isBlank(),
-                  3,
-                  TimeUnit.MINUTES);
-          log.info("Deleted '" + deploymentName + "' Deployment");
-        } catch (InterruptedException e) {
-          log.error("Failed deleting '" + deploymentName + "' Deployment!");
-          throw new RuntimeException(e);
-        }
-      } else {
-        log.error("Failed deleting '" + deploymentName + "' Deployment!");
-        throw new io.cucumber.java.PendingException();
-      }
-    }
+    NamespaceReaper.reap(namespaceName);
   }
 }
@@ -4,14 +4,62 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.stream.Collectors;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ExecShellCmd {
 
-  private static String collect = null;
+  private static final Logger log = LoggerFactory.getLogger(ExecShellCmd.class);
+  private static final long DEFAULT_TIMEOUT_MINUTES = 10;
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  /*
+  Reads stdout/stderr and waits on the processes. Daemon threads, so a hung process never keeps the
+  JVM alive after the run.
+   */
+  private static final ExecutorService processThreads =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "rcnit-exec-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private String output = "";
+  private int exitCode = -1;
 
   public void execute(String command) {
-    String[] cmd = new String[0];
+    execute(command, DEFAULT_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+  }
+
+  public void execute(String command, long timeout, TimeUnit timeUnit) {
+    Result result = executeAsync(command, line -> {}, line -> {}, timeout, timeUnit).join();
+    output = result.getOutput();
+    exitCode = result.getExitCode();
+  }
+
+  /*
+  Starts the command and returns straight away.
+  stdout and stderr are handed to the consumers line by line, as they are printed. The process is
+  killed (with its children) if it is still running when the timeout runs out.
+   */
+  public static CompletableFuture<Result> executeAsync(
+      String command,
+      Consumer<String> stdoutConsumer,
+      Consumer<String> stderrConsumer,
+      long timeout,
+      TimeUnit timeUnit) {
+    String[] cmd;
 
     /*
     Make the command work on Windows or on Linux.
@@ -20,38 +68,160 @@ public class ExecShellCmd {
     String osName = System.getProperty("os.name").toLowerCase();
     if (osName.contains("win")) {
       cmd = new String[] {"cmd.exe", "/c", command};
-    } else if (osName.contains("nix") || osName.contains("nux") || osName.contains("aix")) {
-      cmd = new String[] {"/bin/sh", "- c", command};
+    } else {
+      cmd = new String[] {"/bin/sh", "-c", command};
     }
 
+    Process process;
     try {
-      // Create the ProcessBuilder
-      ProcessBuilder pb = new ProcessBuilder(cmd);
-      pb.redirectErrorStream(true);
-
-      // Start the process
-      Process process = pb.start();
-
-      /*
-      Read the process' output.
-      This will hang on an infinite stream due to the nature of BufferedReader.
-       */
-      InputStream is = process.getInputStream();
-      InputStreamReader isr = new InputStreamReader(is);
-      BufferedReader br = new BufferedReader(isr);
-      collect = br.lines().collect(Collectors.joining("\n"));
-
-      // Clean-up
-      br.close();
-      isr.close();
-      is.close();
-      process.destroy();
+      process = new ProcessBuilder(cmd).start();
+    } catch (IOException e) {
+      log.error("Could not start '" + command + "': " + e.getMessage());
+      return CompletableFuture.completedFuture(
+          new Result(command, -1, false, "", Collections.emptyList(), Collections.emptyList()));
+    }
+
+    // Both streams go into one output as well, so returnAsString() still sees kubectl's stderr
+    List<String> combinedLines = Collections.synchronizedList(new ArrayList<>());
+    List<String> stdoutLines = Collections.synchronizedList(new ArrayList<>());
+    List<String> stderrLines = Collections.synchronizedList(new ArrayList<>());
+
+    CompletableFuture<Void> stdoutReader =
+        CompletableFuture.runAsync(
+            () ->
+                readLines(
+                    process.getInputStream(),
+                    line -> {
+                      combinedLines.add(line);
+                      stdoutLines.add(line);
+                      stdoutConsumer.accept(line);
+                    }),
+            processThreads);
+    CompletableFuture<Void> stderrReader =
+        CompletableFuture.runAsync(
+            () ->
+                readLines(
+                    process.getErrorStream(),
+                    line -> {
+                      combinedLines.add(line);
+                      stderrLines.add(line);
+                      stderrConsumer.accept(line);
+                    }),
+            processThreads);
+
+    return CompletableFuture.supplyAsync(
+        () -> {
+          boolean timedOut = false;
+          try {
+            if (!process.waitFor(timeout, timeUnit)) {
+              timedOut = true;
+              log.error(
+                  "'"
+                      + command
+                      + "' did not finish in "
+                      + timeUnit.toSeconds(timeout)
+                      + " seconds; killing it");
+              // sh -c forks the real program, which would otherwise keep the pipes open
+              process.descendants().forEach(ProcessHandle::destroyForcibly);
+              process.destroyForcibly();
+              process.waitFor();
+            }
+          } catch (InterruptedException e) {
+            // The process may still be running, so there is no exit value to return
+            log.error("Interrupted while waiting for '" + command + "'; killing it");
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+          }
+          CompletableFuture.allOf(stdoutReader, stderrReader).join();
+
+          synchronized (combinedLines) {
+            return new Result(
+                command,
+                timedOut ? -1 : process.exitValue(),
+                timedOut,
+                String.join("\n", combinedLines),
+                new ArrayList<>(stdoutLines),
+                new ArrayList<>(stderrLines));
+          }
+        },
+        processThreads);
+  }
+
+  private static void readLines(InputStream inputStream, Consumer<String> lineConsumer) {
+    try (BufferedReader br =
+        new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        lineConsumer.accept(line);
+      }
     } catch (IOException e) {
-      e.printStackTrace();
+      // The stream gets closed under us when a timed out process is killed
+      log.debug("Stopped reading process output: " + e.getMessage());
     }
   }
 
   public String returnAsString() {
-    return collect;
+    return output;
+  }
+
+  // -1 if the process could not be started or was killed after the timeout
+  public int getExitCode() {
+    return exitCode;
+  }
+
+  public static class Result {
+
+    private final String command;
+    private final int exitCode;
+    private final boolean timedOut;
+    private final String output;
+    private final List<String> stdoutLines;
+    private final List<String> stderrLines;
+
+    private Result(
+        String command,
+        int exitCode,
+        boolean timedOut,
+        String output,
+        List<String> stdoutLines,
+        List<String> stderrLines) {
+      this.command = command;
+      this.exitCode = exitCode;
+      this.timedOut = timedOut;
+      this.output = output;
+      this.stdoutLines = Collections.unmodifiableList(stdoutLines);
+      this.stderrLines = Collections.unmodifiableList(stderrLines);
+    }
+
+    public String getCommand() {
+      return command;
+    }
+
+    public int getExitCode() {
+      return exitCode;
+    }
+
+    public boolean isTimedOut() {
+      return timedOut;
+    }
+
+    public boolean isSuccessful() {
+      return !timedOut && exitCode == 0;
+    }
+
+    // stdout and stderr lines in the order they were read, joined with "\n"
+    public String getOutput() {
+      return output;
+    }
+
+    public List<String> getStdoutLines() {
+      return stdoutLines;
+    }
+
+    public List<String> getStderrLines() {
+      return stderrLines;
+    }
   }
 }
@@ -0,0 +1,335 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.api.model.ReplicationControllerStatus;
+import io.fabric8.kubernetes.api.model.apps.DeploymentStatus;
+import io.fabric8.kubernetes.api.model.apps.StatefulSetStatus;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Installs a local Helm chart without 'helm install': the chart is rendered with 'helm template'
+and the objects are applied with the Kubernetes client.
+
+- The chart is rendered once per install, and the objects are kept for uninstall(), so the same
+  objects get deleted even though some charts generate new certificates (genCA) on every render.
+- The objects are applied concurrently in three waves: everything else (ServiceAccounts, RBAC,
+  Services, ...) first, then the workloads that need them, and once those are ready, the webhook
+  configurations, so the API server doesn't call a webhook before its Deployment serves it.
+- Only the rendered workloads are awaited (Deployments, DaemonSets, StatefulSets,
+  ReplicationControllers and bare Pods), not every pod in the namespace. Jobs (e.g. webhook-cert
+  jobs) are never awaited, since their pods never become Ready.
+
+Usage:
+    HelmChart chart = HelmChart.of("load-test", "src/test/resources/k8s-testsuite/load-test")
+        .set("loadbot.rate", "10");
+    chart.install(ns);
+    ...
+    chart.uninstall(ns);
+ */
+public class HelmChart {
+
+  private static final Logger log = LoggerFactory.getLogger(HelmChart.class);
+  private static final long RENDER_TIMEOUT_MINUTES = 2;
+  private static final long READY_TIMEOUT_MINUTES = 5;
+  // The objects of every installed release, by release name and namespace
+  private static final Map<String, List<HasMetadata>> installedReleases = new ConcurrentHashMap<>();
+  private static final Set<String> WORKLOAD_KINDS =
+      new HashSet<>(
+          Arrays.asList(
+              "Pod",
+              "ReplicationController",
+              "ReplicaSet",
+              "Deployment",
+              "DaemonSet",
+              "StatefulSet",
+              "Job",
+              "CronJob"));
+  private static final Set<String> WEBHOOK_KINDS =
+      new HashSet<>(
+          Arrays.asList("MutatingWebhookConfiguration", "ValidatingWebhookConfiguration"));
+  private static final AtomicInteger threadCount = new AtomicInteger();
+  private static final ExecutorService helmThreads =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "rcnit-helm-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final String releaseName;
+  private final String chartPath;
+  private final Map<String, String> values = new TreeMap<>();
+
+  private HelmChart(String releaseName, String chartPath) {
+    this.releaseName = releaseName;
+    this.chartPath = chartPath;
+  }
+
+  public static HelmChart of(String releaseName, String chartPath) {
+    return new HelmChart(releaseName, chartPath);
+  }
+
+  // Same as 'helm install --set key=value'
+  public HelmChart set(String key, String value) {
+    values.put(key, value);
+    return this;
+  }
+
+  public void install(String namespaceName) {
+    // Marked before the install, so a concurrent one doesn't apply it twice; unmarked if it fails
+    String release = releaseName + "@" + namespaceName;
+    if (installedReleases.putIfAbsent(release, Collections.emptyList()) != null) {
+      log.info("'" + releaseName + "' Helm chart is already installed in '" + namespaceName + "'");
+      return;
+    }
+
+    try {
+      List<HasMetadata> objects = render(namespaceName);
+      installedReleases.put(release, objects);
+      final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+
+      log.info("Installing '" + releaseName + "' Helm chart (" + objects.size() + " objects)...");
+      applyConcurrently(
+          kubernetesClient,
+          namespaceName,
+          objects.stream()
+              .filter(object -> !WORKLOAD_KINDS.contains(object.getKind()))
+              .filter(object -> !WEBHOOK_KINDS.contains(object.getKind()))
+              .collect(Collectors.toList()));
+      applyConcurrently(
+          kubernetesClient,
+          namespaceName,
+          objects.stream()
+              .filter(object -> WORKLOAD_KINDS.contains(object.getKind()))
+              .collect(Collectors.toList()));
+
+      awaitWorkloads(kubernetesClient, namespaceName, objects);
+      applyConcurrently(
+          kubernetesClient,
+          namespaceName,
+          objects.stream()
+              .filter(object -> WEBHOOK_KINDS.contains(object.getKind()))
+              .collect(Collectors.toList()));
+    } catch (RuntimeException e) {
+      installedReleases.remove(release);
+      throw e;
+    }
+    log.info("Installed '" + releaseName + "' Helm chart in '" + namespaceName + "' namespace");
+  }
+
+  /*
+  Deletes every rendered object, including the cluster-scoped ones (e.g. ClusterRoles, webhook
+  configurations) which wouldn't go with the namespace. Doesn't wait for them to disappear.
+   */
+  public void uninstall(String namespaceName) {
+    List<HasMetadata> objects = installedReleases.remove(releaseName + "@" + namespaceName);
+    // Not installed by this run (e.g. left over from an earlier one), or still being installed
+    if (objects == null || objects.isEmpty()) {
+      objects = render(namespaceName);
+    }
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+
+    log.info("Uninstalling '" + releaseName + "' Helm chart...");
+    List<CompletableFuture<Void>> deletes = new ArrayList<>();
+    for (HasMetadata object : objects) {
+      deletes.add(
+          CompletableFuture.runAsync(
+              () -> {
+                try {
+                  kubernetesClient.resource(object).inNamespace(namespaceName).delete();
+                } catch (KubernetesClientException e) {
+                  log.error("Failed deleting " + describe(object) + ": " + e.getMessage());
+                  throw new io.cucumber.java.PendingException();
+                }
+              },
+              helmThreads));
+    }
+    joinAll(deletes);
+    log.info("Uninstalled '" + releaseName + "' Helm chart");
+  }
+
+  private List<HasMetadata> render(String namespaceName) {
+    StringBuilder command =
+        new StringBuilder("helm template " + releaseName + " " + chartPath)
+            .append(" --namespace ")
+            .append(namespaceName);
+    values.forEach((key, value) -> command.append(" --set ").append(key).append("=").append(value));
+
+    ExecShellCmd.Result result =
+        ExecShellCmd.executeAsync(
+                command.toString(),
+                line -> {},
+                line -> {},
+                RENDER_TIMEOUT_MINUTES,
+                TimeUnit.MINUTES)
+            .join();
+    if (!result.isSuccessful()) {
+      log.error("Failed rendering '" + releaseName + "' Helm chart:\n" + result.getOutput());
+      throw new io.cucumber.java.PendingException();
+    }
+
+    // Templates that render to nothing (e.g. a disabled ingress) leave documents with no kind
+    List<HasMetadata> objects = new ArrayList<>();
+    for (String document : String.join("\n", result.getStdoutLines()).split("(?m)^---\\s*$")) {
+      if (!document.contains("kind:")) {
+        continue;
+      }
+      objects.add(
+          Serialization.unmarshal(
+              new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)),
+              Collections.emptyMap()));
+    }
+    log.info("Rendered '" + releaseName + "' Helm chart into " + objects.size() + " objects");
+
+    return Collections.unmodifiableList(objects);
+  }
+
+  private void applyConcurrently(
+      KubernetesClient kubernetesClient, String namespaceName, List<HasMetadata> objects) {
+    List<CompletableFuture<Void>> applies = new ArrayList<>();
+    for (HasMetadata object : objects) {
+      applies.add(
+          CompletableFuture.runAsync(
+              () -> {
+                try {
+                  kubernetesClient.resource(object).inNamespace(namespaceName).createOrReplace();
+                  log.info("Applied " + describe(object));
+                } catch (KubernetesClientException e) {
+                  log.error("Failed applying " + describe(object) + "!");
+                  e.printStackTrace();
+                  throw new io.cucumber.java.PendingException();
+                }
+              },
+              helmThreads));
+    }
+    joinAll(applies);
+  }
+
+  private void awaitWorkloads(
+      KubernetesClient kubernetesClient, String namespaceName, List<HasMetadata> objects) {
+    List<CompletableFuture<Boolean>> waits = new ArrayList<>();
+    waits.add(
+        awaitReady(
+            "Deployment",
+            kubernetesClient.apps().deployments().inNamespace(namespaceName),
+            namesOf(objects, "Deployment"),
+            deployment ->
+                Optional.ofNullable(deployment.getStatus())
+                        .map(DeploymentStatus::getAvailableReplicas)
+                        .orElse(0)
+                    >= Optional.ofNullable(deployment.getSpec().getReplicas()).orElse(1)));
+    waits.add(
+        awaitReady(
+            "DaemonSet",
+            kubernetesClient.apps().daemonSets().inNamespace(namespaceName),
+            namesOf(objects, "DaemonSet"),
+            daemonSet ->
+                daemonSet.getStatus() != null
+                    && daemonSet.getStatus().getDesiredNumberScheduled() != null
+                    && Optional.ofNullable(daemonSet.getStatus().getNumberReady()).orElse(0)
+                        >= daemonSet.getStatus().getDesiredNumberScheduled()));
+    waits.add(
+        awaitReady(
+            "StatefulSet",
+            kubernetesClient.apps().statefulSets().inNamespace(namespaceName),
+            namesOf(objects, "StatefulSet"),
+            statefulSet ->
+                Optional.ofNullable(statefulSet.getStatus())
+                        .map(StatefulSetStatus::getReadyReplicas)
+                        .orElse(0)
+                    >= Optional.ofNullable(statefulSet.getSpec().getReplicas()).orElse(1)));
+    waits.add(
+        awaitReady(
+            "ReplicationController",
+            kubernetesClient.replicationControllers().inNamespace(namespaceName),
+            namesOf(objects, "ReplicationController"),
+            replicationController ->
+                Optional.ofNullable(replicationController.getStatus())
+                        .map(ReplicationControllerStatus::getReadyReplicas)
+                        .orElse(0)
+                    >= Optional.ofNullable(replicationController.getSpec().getReplicas())
+                        .orElse(1)));
+    waits.add(
+        awaitReady(
+            "Pod",
+            kubernetesClient.pods().inNamespace(namespaceName),
+            namesOf(objects, "Pod"),
+            ExecKubernetesCmd::podIsReady));
+
+    if (!waits.stream().map(CompletableFuture::join).reduce(true, Boolean::logicalAnd)) {
+      log.error("Not all '" + releaseName + "' workloads in '" + namespaceName + "' became ready!");
+      throw new io.cucumber.java.PendingException();
+    }
+  }
+
+  private <T extends HasMetadata> CompletableFuture<Boolean> awaitReady(
+      String kind,
+      FilterWatchListDeletable<T, ? extends KubernetesResourceList<T>, Boolean, Watch, Watcher<T>>
+          resources,
+      Set<String> names,
+      Predicate<T> isReady) {
+    if (names.isEmpty()) {
+      return CompletableFuture.completedFuture(true);
+    }
+    return CompletableFuture.supplyAsync(
+        () ->
+            WaitEngine.on("ready '" + releaseName + "' " + kind + " " + names, resources)
+                .until(
+                    object ->
+                        names.contains(object.getMetadata().getName()) && isReady.test(object))
+                .countOf(names.size())
+                .await(READY_TIMEOUT_MINUTES, TimeUnit.MINUTES)
+                .isSatisfied(),
+        helmThreads);
+  }
+
+  private static Set<String> namesOf(List<HasMetadata> objects, String kind) {
+    return objects.stream()
+        .filter(object -> kind.equals(object.getKind()))
+        .map(object -> object.getMetadata().getName())
+        .collect(Collectors.toSet());
+  }
+
+  private static String describe(HasMetadata object) {
+    return "'" + object.getMetadata().getName() + "' " + object.getKind();
+  }
+
+  private static <T> void joinAll(List<CompletableFuture<T>> futures) {
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
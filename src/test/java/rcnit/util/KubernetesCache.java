@@ -0,0 +1,103 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.EventList;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.client.dsl.base.OperationContext;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.SharedInformerFactory;
+import io.fabric8.kubernetes.client.informers.cache.Lister;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Pod and event informers for the namespaces of the steps, started the first time a namespace is
+asked for. Reads lag the API server by a watch event or two, so a step that has just waited on its
+own watch should use the object that wait returned instead.
+
+Usage:
+    Pod pod = KubernetesCache.forNamespace(namespaceName).getPod(podName);
+    List<Event> backOffEvents =
+        KubernetesCache.forNamespace(namespaceName).events().withReason("BackOff");
+    KubernetesCache.stop(namespaceName);
+ */
+public class KubernetesCache {
+
+  private static final Logger log = LoggerFactory.getLogger(KubernetesCache.class);
+  private static final long RESYNC_PERIOD_MILLIS = 30 * 1000L;
+  private static final long SYNC_TIMEOUT_MILLIS = 60 * 1000L;
+  private static final Map<String, KubernetesCache> caches = new ConcurrentHashMap<>();
+
+  private final String namespaceName;
+  private final SharedInformerFactory informerFactory;
+  private final SharedIndexInformer<Pod> podInformer;
+  private final SharedIndexInformer<Event> eventInformer;
+
+  /*
+  One LIST+WATCH per resource type per namespace; every read after that is served from memory.
+  The informers resync every RESYNC_PERIOD_MILLIS and keep the last resourceVersion they saw.
+   */
+  private KubernetesCache(String namespaceName) {
+    this.namespaceName = namespaceName;
+    informerFactory = KubernetesClientProvider.get().informers();
+
+    OperationContext namespaceContext = new OperationContext().withNamespace(namespaceName);
+    podInformer =
+        informerFactory.sharedIndexInformerFor(
+            Pod.class, PodList.class, namespaceContext, RESYNC_PERIOD_MILLIS);
+    eventInformer =
+        informerFactory.sharedIndexInformerFor(
+            Event.class, EventList.class, namespaceContext, RESYNC_PERIOD_MILLIS);
+    eventInformer.addIndexers(EventIndex.indexers());
+
+    informerFactory.startAllRegisteredInformers();
+    waitForSync(podInformer, "Pod");
+    waitForSync(eventInformer, "Event");
+    log.info("Started pod and event cache for '" + namespaceName + "' namespace");
+  }
+
+  public static KubernetesCache forNamespace(String namespaceName) {
+    return caches.computeIfAbsent(namespaceName, KubernetesCache::new);
+  }
+
+  public Pod getPod(String podName) {
+    return new Lister<>(podInformer.getIndexer(), namespaceName).get(podName);
+  }
+
+  public EventIndex events() {
+    return new EventIndex(eventInformer.getIndexer());
+  }
+
+  // Call this before deleting the namespace, otherwise the watches get closed by the API server
+  public static void stop(String namespaceName) {
+    KubernetesCache cache = caches.remove(namespaceName);
+    if (cache != null) {
+      cache.informerFactory.stopAllRegisteredInformers(false);
+      log.info("Stopped pod and event cache for '" + namespaceName + "' namespace");
+    }
+  }
+
+  public static void stopAll() {
+    caches.keySet().forEach(KubernetesCache::stop);
+  }
+
+  private static void waitForSync(SharedIndexInformer<?> informer, String kind) {
+    long deadline = System.currentTimeMillis() + SYNC_TIMEOUT_MILLIS;
+    while (!informer.hasSynced()) {
+      if (System.currentTimeMillis() > deadline) {
+        log.error("The " + kind + " informer did not sync in time!");
+        throw new io.cucumber.java.PendingException();
+      }
+      try {
+        TimeUnit.MILLISECONDS.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.utils.HttpClientUtils;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class KubernetesClientProvider {
+
+  private static final Logger log = LoggerFactory.getLogger(KubernetesClientProvider.class);
+  // close() may run in the shutdown hook, which shouldn't hold the JVM for long
+  private static final long SHUTDOWN_WAIT_SECONDS = 30;
+  private static final AtomicInteger clientsCreated = new AtomicInteger();
+  private static final AtomicInteger tlsHandshakes = new AtomicInteger();
+  private static final AtomicInteger connectionsOpened = new AtomicInteger();
+  private static Config config;
+  private static OkHttpClient httpClient;
+  private static KubernetesClient sharedClient;
+  private static boolean shutdownHookRegistered = false;
+
+  /*
+  Every step and helper used to open its own DefaultKubernetesClient, which parses the kubeconfig
+  and does a TLS handshake every time. Now there is one client (and one OkHttp connection pool)
+  for the whole run. Don't close the returned client; close() is called at the end of the run.
+   */
+  public static synchronized KubernetesClient get() {
+    if (sharedClient == null) {
+      if (config == null) {
+        config = Config.autoConfigure(null);
+      }
+      if (httpClient == null) {
+        httpClient =
+            HttpClientUtils.createHttpClient(config)
+                .newBuilder()
+                .eventListener(new CountingEventListener())
+                .build();
+      }
+      sharedClient = new DefaultKubernetesClient(httpClient, config);
+      clientsCreated.incrementAndGet();
+      log.info("Created shared Kubernetes client");
+
+      if (!shutdownHookRegistered) {
+        Runtime.getRuntime()
+            .addShutdownHook(new Thread(KubernetesClientProvider::close, "rcnit-client-shutdown"));
+        shutdownHookRegistered = true;
+      }
+    }
+    return sharedClient;
+  }
+
+  /*
+  Watching a pod log and then closing the client in the same thread breaks the log callback.
+  See https://github.com/fabric8io/kubernetes-client/issues/1522
+  That's the only place which still needs its own client; the caller must close it.
+   */
+  public static KubernetesClient newLogWatchClient() {
+    get();
+    clientsCreated.incrementAndGet();
+    return new DefaultKubernetesClient(
+        HttpClientUtils.createHttpClient(config)
+            .newBuilder()
+            .eventListener(new CountingEventListener())
+            .build(),
+        config);
+  }
+
+  public static synchronized void close() {
+    if (sharedClient != null) {
+      NamespacePool.reapIdle();
+      NamespaceReaper.awaitAll(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+      KubernetesCache.stopAll();
+      sharedClient.close();
+      sharedClient = null;
+      httpClient = null;
+      log.info("Closed shared Kubernetes client. " + getStatistics());
+    }
+  }
+
+  public static int getClientsCreated() {
+    return clientsCreated.get();
+  }
+
+  public static int getTlsHandshakes() {
+    return tlsHandshakes.get();
+  }
+
+  public static int getConnectionsOpened() {
+    return connectionsOpened.get();
+  }
+
+  public static String getStatistics() {
+    return "Kubernetes clients created: ["
+        + clientsCreated.get()
+        + "], connections opened: ["
+        + connectionsOpened.get()
+        + "], TLS handshakes: ["
+        + tlsHandshakes.get()
+        + "]";
+  }
+
+  // Counts what the shared pool saves us: new connections and TLS handshakes
+  private static class CountingEventListener extends EventListener {
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+      connectionsOpened.incrementAndGet();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+      tlsHandshakes.incrementAndGet();
+    }
+  }
+}
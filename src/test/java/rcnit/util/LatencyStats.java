@@ -0,0 +1,74 @@
+package rcnit.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+/*
+Collects latencies (in milliseconds) and reports their percentiles, like the upstream density
+tests do: p50, p90, p99 and the max.
+
+The samples are kept in a growing long[], so thousands of them cost a few KB and no boxing.
+Percentiles use the nearest-rank method on a sorted copy, so every reported value is a real sample.
+
+Usage:
+    LatencyStats createToReady = new LatencyStats("create -> ready");
+    createToReady.add(createdAt, readyAt);
+    log.info(createToReady.summary());
+ */
+public class LatencyStats {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final String name;
+  private long[] samples = new long[INITIAL_CAPACITY];
+  private int count;
+
+  public LatencyStats(String name) {
+    this.name = name;
+  }
+
+  public synchronized void add(long millis) {
+    if (count == samples.length) {
+      samples = Arrays.copyOf(samples, count * 2);
+    }
+    samples[count++] = millis;
+  }
+
+  public void add(Instant from, Instant to) {
+    add(Duration.between(from, to).toMillis());
+  }
+
+  public synchronized int count() {
+    return count;
+  }
+
+  // The nearest-rank percentile (0 < percentile <= 100), or 0 without samples
+  public synchronized long percentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100 * count);
+    return sorted[Math.min(Math.max(rank, 1), count) - 1];
+  }
+
+  public synchronized long max() {
+    return count == 0 ? 0 : Arrays.stream(samples, 0, count).max().getAsLong();
+  }
+
+  public synchronized double mean() {
+    return count == 0 ? 0 : Arrays.stream(samples, 0, count).average().getAsDouble();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String summary() {
+    return String.format(
+        "%s: n=%d p50=%d ms p90=%d ms p99=%d ms max=%d ms",
+        name, count(), percentile(50), percentile(90), percentile(99), max());
+  }
+}
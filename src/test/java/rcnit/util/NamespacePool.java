@@ -0,0 +1,191 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.ServiceAccount;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Keeps namespaces provisioned ahead of time, so a scenario doesn't wait for them.
+
+A pooled namespace comes with its fixtures (e.g. ServiceAccounts, LimitRanges) already created,
+and with a token for every ServiceAccount, including "default". Leasing one starts provisioning
+its replacement in the background, behind the scenario that is running, as long as fewer than
+`size` namespaces are warm and more leases are expected; the ones nobody leased are reaped at the
+end of the run.
+
+Leased namespaces are given back with giveBack(), which hands them to the NamespaceReaper.
+They aren't recycled: the event-based checks would see the previous scenario's events.
+
+Usage:
+    NamespacePool pool = NamespacePool.of("rcnit-kube-scheduler-testing", 2, 14, serviceAccount);
+    String namespaceName = pool.lease();
+    ...
+    pool.giveBack(namespaceName);
+ */
+public class NamespacePool {
+
+  private static final Logger log = LoggerFactory.getLogger(NamespacePool.class);
+  private static final long PROVISIONING_TIMEOUT_MINUTES = 2;
+  private static final Map<String, NamespacePool> pools = new ConcurrentHashMap<>();
+  private static final AtomicInteger threadCount = new AtomicInteger();
+  private static final ExecutorService poolThreads =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "rcnit-pool-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final String namespacePrefix;
+  private final int size;
+  private final List<HasMetadata> fixtures;
+  private final ConcurrentLinkedQueue<CompletableFuture<String>> warmNamespaces =
+      new ConcurrentLinkedQueue<>();
+  private int leasesLeft;
+
+  private NamespacePool(
+      String namespacePrefix, int size, int expectedLeases, List<HasMetadata> fixtures) {
+    this.namespacePrefix = namespacePrefix;
+    this.size = size;
+    this.fixtures = fixtures;
+    this.leasesLeft = expectedLeases;
+    replenish();
+  }
+
+  /*
+  One pool per prefix for the whole run; the arguments of the first call win.
+  expectedLeases is how many times a full run leases from the pool. A run of fewer scenarios
+  (e.g. filtered by tags) leaves up to `size` namespaces unleased.
+   */
+  public static NamespacePool of(
+      String namespacePrefix, int size, int expectedLeases, HasMetadata... fixtures) {
+    return pools.computeIfAbsent(
+        namespacePrefix,
+        prefix -> new NamespacePool(prefix, size, expectedLeases, Arrays.asList(fixtures)));
+  }
+
+  public String lease() {
+    CompletableFuture<String> warmNamespace;
+    synchronized (this) {
+      leasesLeft = Math.max(leasesLeft - 1, 0);
+      warmNamespace = warmNamespaces.poll();
+      replenish();
+    }
+    if (warmNamespace == null) {
+      log.info("No warm '" + namespacePrefix + "-*' namespace left; provisioning one now");
+      warmNamespace = CompletableFuture.supplyAsync(this::provision, poolThreads);
+    }
+
+    try {
+      String namespaceName = warmNamespace.join();
+      log.info("Leased '" + namespaceName + "' namespace");
+      return namespaceName;
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  public void giveBack(String namespaceName) {
+    NamespaceReaper.reap(namespaceName);
+  }
+
+  /*
+  Called at the end of the run, so the namespaces nobody leased don't stay behind.
+  It may run in the JVM shutdown hook, so it doesn't wait for the ones still being provisioned.
+   */
+  public static void reapIdle() {
+    pools
+        .values()
+        .forEach(
+            pool -> {
+              CompletableFuture<String> warmNamespace;
+              while ((warmNamespace = pool.warmNamespaces.poll()) != null) {
+                if (!warmNamespace.isDone()) {
+                  log.error(
+                      "An idle '"
+                          + pool.namespacePrefix
+                          + "-*' namespace is still being provisioned");
+                  continue;
+                }
+                try {
+                  NamespaceReaper.reap(warmNamespace.join());
+                } catch (RuntimeException e) {
+                  log.error("Failed reaping an idle '" + pool.namespacePrefix + "-*' namespace");
+                }
+              }
+            });
+  }
+
+  // Up to `size` warm namespaces, but no more than the leases still expected
+  private synchronized void replenish() {
+    while (warmNamespaces.size() < Math.min(size, leasesLeft)) {
+      warmNamespaces.add(CompletableFuture.supplyAsync(this::provision, poolThreads));
+    }
+  }
+
+  private String provision() {
+    String namespaceName = ExecKubernetesCmd.createNamespace(namespacePrefix);
+
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    int serviceAccountCount = 1; // "default"
+    for (HasMetadata fixture : fixtures) {
+      try {
+        kubernetesClient.resource(fixture).inNamespace(namespaceName).createOrReplace();
+      } catch (KubernetesClientException e) {
+        log.error(
+            "Failed creating '"
+                + fixture.getMetadata().getName()
+                + "' "
+                + fixture.getKind()
+                + " in '"
+                + namespaceName
+                + "' namespace!");
+        e.printStackTrace();
+        throw new io.cucumber.java.PendingException();
+      }
+      if (fixture instanceof ServiceAccount) {
+        serviceAccountCount++;
+      }
+    }
+
+    // Pods can't start until the token controller has created the ServiceAccount's token secret
+    boolean tokensAreReady =
+        WaitEngine.on(
+                "ServiceAccount tokens in '" + namespaceName + "' namespace",
+                kubernetesClient.serviceAccounts().inNamespace(namespaceName))
+            .until(
+                serviceAccount ->
+                    serviceAccount.getSecrets() != null && !serviceAccount.getSecrets().isEmpty())
+            .all(serviceAccountCount)
+            .await(PROVISIONING_TIMEOUT_MINUTES, TimeUnit.MINUTES)
+            .isSatisfied();
+    if (!tokensAreReady) {
+      log.error("The ServiceAccounts in '" + namespaceName + "' namespace never got a token!");
+      throw new io.cucumber.java.PendingException();
+    }
+
+    List<String> fixtureNames = new ArrayList<>();
+    fixtures.forEach(
+        fixture -> fixtureNames.add(fixture.getKind() + "/" + fixture.getMetadata().getName()));
+    log.info("Provisioned '" + namespaceName + "' namespace with " + fixtureNames);
+    return namespaceName;
+  }
+}
@@ -0,0 +1,124 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Takes namespace finalization off the critical path.
+
+reap() sends the delete and returns; the namespace is watched until it's gone on a background
+thread. Since every scenario creates its own uniquely-suffixed namespace, nothing has to wait for
+that. Namespaces which haven't terminated by the end of the run are reported by awaitAll().
+
+Usage:
+    NamespaceReaper.reap(namespaceName);
+    ...
+    NamespaceReaper.awaitAll(30, TimeUnit.SECONDS);
+ */
+public class NamespaceReaper {
+
+  private static final Logger log = LoggerFactory.getLogger(NamespaceReaper.class);
+  private static final long TERMINATION_TIMEOUT_MINUTES = 5;
+  private static final Map<String, CompletableFuture<Boolean>> reaping = new ConcurrentHashMap<>();
+  private static final AtomicInteger threadCount = new AtomicInteger();
+  private static final ExecutorService reaperThreads =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "rcnit-reaper-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  public static void reap(String namespaceName) {
+    log.info("Deleting '" + namespaceName + "' namespace in the background...");
+    // Otherwise the watches get closed by the API server
+    KubernetesCache.stop(namespaceName);
+
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+    try {
+      if (!kubernetesClient.namespaces().withName(namespaceName).delete()) {
+        log.info("'" + namespaceName + "' namespace was already gone");
+        return;
+      }
+    } catch (KubernetesClientException e) {
+      log.error("Failed deleting '" + namespaceName + "' namespace!");
+      e.printStackTrace();
+      throw new io.cucumber.java.PendingException();
+    }
+
+    reaping.put(
+        namespaceName,
+        CompletableFuture.supplyAsync(
+            () ->
+                // The field selector keeps the watch on this namespace alone
+                WaitEngine.on(
+                        "termination of '" + namespaceName + "' namespace",
+                        kubernetesClient.namespaces().withField("metadata.name", namespaceName))
+                    .none()
+                    .await(TERMINATION_TIMEOUT_MINUTES, TimeUnit.MINUTES)
+                    .isSatisfied(),
+            reaperThreads));
+  }
+
+  /*
+  Called once at the end of the run, before the shared client is closed, which may be from the JVM
+  shutdown hook; so it waits for the outstanding namespaces for no longer than the given timeout,
+  all of them together. The deletes were sent already, so the cluster finishes them either way.
+  Returns the namespaces which failed to terminate or were still terminating.
+   */
+  public static synchronized List<String> awaitAll(long timeout, TimeUnit timeUnit) {
+    Instant deadline = Instant.now().plusMillis(timeUnit.toMillis(timeout));
+    List<String> notTerminated = new ArrayList<>();
+    List<String> stillTerminating = new ArrayList<>();
+    for (Map.Entry<String, CompletableFuture<Boolean>> entry : reaping.entrySet()) {
+      long remainingMillis = Math.max(deadline.toEpochMilli() - Instant.now().toEpochMilli(), 0);
+      try {
+        if (!entry.getValue().get(remainingMillis, TimeUnit.MILLISECONDS)) {
+          notTerminated.add(entry.getKey());
+        }
+      } catch (TimeoutException e) {
+        stillTerminating.add(entry.getKey());
+      } catch (ExecutionException e) {
+        notTerminated.add(entry.getKey());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        stillTerminating.add(entry.getKey());
+      }
+    }
+    reaping.clear();
+
+    if (notTerminated.isEmpty() && stillTerminating.isEmpty()) {
+      log.info("All deleted namespaces have terminated");
+    }
+    if (!notTerminated.isEmpty()) {
+      log.error(
+          "These namespaces did not terminate within "
+              + TERMINATION_TIMEOUT_MINUTES
+              + " minutes: "
+              + notTerminated);
+    }
+    if (!stillTerminating.isEmpty()) {
+      log.error(
+          "Stopped waiting after "
+              + timeUnit.toSeconds(timeout)
+              + " seconds for these namespaces to terminate: "
+              + stillTerminating);
+    }
+    notTerminated.addAll(stillTerminating);
+    return notTerminated;
+  }
+}
@@ -0,0 +1,177 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Creates many copies of a pod, a few at a time, and records when every copy went through each stage
+of its lifecycle:
+    CREATING -> ACCEPTED -> SCHEDULED -> STARTED -> READY
+CREATING and ACCEPTED are taken around the create call. The other stages are taken from one watch
+on the copies' label (see BenchmarkRecorder), opened before the first create, the moment the
+PodScheduled condition, the Running phase and the Ready condition first show up. All instants come
+from the same (local) clock, so they can be subtracted from each other.
+
+Usage:
+    BenchmarkRecorder.Result<Stage> result =
+        PodLifecycleBenchmark.of(ns, echoserverPod)
+            .withPods(100)
+            .withConcurrency(10)
+            .run(5, TimeUnit.MINUTES);
+    log.info(result.latency(Stage.CREATING, Stage.READY).summary());
+ */
+public class PodLifecycleBenchmark {
+
+  private static final Logger log = LoggerFactory.getLogger(PodLifecycleBenchmark.class);
+
+  private final String namespaceName;
+  private final Pod template;
+  private int numberOfPods = 1;
+  private int concurrency = 1;
+  private Stage lastStage = Stage.READY;
+
+  public enum Stage {
+    // Right before the create call
+    CREATING,
+    // The API server answered the create call
+    ACCEPTED,
+    // PodScheduled is True
+    SCHEDULED,
+    // The pod is Running (or already done)
+    STARTED,
+    // Ready is True
+    READY
+  }
+
+  private PodLifecycleBenchmark(String namespaceName, Pod template) {
+    this.namespaceName = namespaceName;
+    this.template = template;
+  }
+
+  /*
+  The copies are named <template name>-<i> and labeled with BenchmarkRecorder.BENCHMARK_LABEL, as
+  rcnit-benchmark=<template name>
+   */
+  public static PodLifecycleBenchmark of(String namespaceName, Pod template) {
+    return new PodLifecycleBenchmark(namespaceName, template);
+  }
+
+  public PodLifecycleBenchmark withPods(int numberOfPods) {
+    this.numberOfPods = numberOfPods;
+    return this;
+  }
+
+  // How many create calls are in flight at once
+  public PodLifecycleBenchmark withConcurrency(int concurrency) {
+    this.concurrency = concurrency;
+    return this;
+  }
+
+  // Stop once every copy got this far, e.g. SCHEDULED for a scheduler benchmark
+  public PodLifecycleBenchmark until(Stage lastStage) {
+    this.lastStage = lastStage;
+    return this;
+  }
+
+  public String getLabelValue() {
+    return template.getMetadata().getName();
+  }
+
+  // Returns once every accepted copy reached the last stage, or the timeout ran out
+  public BenchmarkRecorder.Result<Stage> run(long timeout, TimeUnit timeUnit) {
+    BenchmarkRecorder<Stage> recorder =
+        new BenchmarkRecorder<>(Stage.class, lastStage, numberOfPods);
+    Instant deadline = Instant.now().plusMillis(timeUnit.toMillis(timeout));
+    RestartingWatch watch =
+        RestartingWatch.start(
+            "'" + getLabelValue() + "' pods",
+            onClosed ->
+                recorder.watch(
+                    KubernetesClientProvider.get().pods().inNamespace(namespaceName),
+                    getLabelValue(),
+                    onClosed,
+                    (pod, now) -> observe(recorder, pod, now)));
+
+    ExecutorService createThreads = BenchmarkThreads.newPool(concurrency);
+    log.info(
+        "Creating ["
+            + numberOfPods
+            + "] '"
+            + getLabelValue()
+            + "' pods, ["
+            + concurrency
+            + "] at a time, in '"
+            + namespaceName
+            + "' namespace");
+    try {
+      for (int i = 0; i < numberOfPods; i++) {
+        Pod copy =
+            new PodBuilder(template)
+                .editMetadata()
+                .withName(getLabelValue() + "-" + i)
+                .addToLabels(BenchmarkRecorder.BENCHMARK_LABEL, getLabelValue())
+                .endMetadata()
+                .build();
+        createThreads.execute(() -> create(recorder, copy));
+      }
+
+      if (!watch.await(recorder.getAllDone(), deadline)) {
+        log.error(
+            "Timed out after "
+                + timeUnit.toSeconds(timeout)
+                + " seconds; ["
+                + recorder.countOf(lastStage)
+                + "/"
+                + numberOfPods
+                + "] '"
+                + getLabelValue()
+                + "' pods reached "
+                + lastStage);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      createThreads.shutdownNow();
+      watch.close();
+    }
+
+    return recorder.result();
+  }
+
+  private void create(BenchmarkRecorder<Stage> recorder, Pod pod) {
+    String podName = pod.getMetadata().getName();
+    recorder.record(podName, Stage.CREATING, Instant.now());
+    try {
+      KubernetesClientProvider.get().pods().inNamespace(namespaceName).create(pod);
+      recorder.record(podName, Stage.ACCEPTED, Instant.now());
+    } catch (KubernetesClientException e) {
+      log.error("Failed creating '" + podName + "' pod: " + e.getMessage());
+      recorder.recordFailedCreate();
+    }
+  }
+
+  private static void observe(BenchmarkRecorder<Stage> recorder, Pod pod, Instant now) {
+    recordIf(recorder, pod, Stage.SCHEDULED, ExecKubernetesCmd::podIsScheduled, now);
+    recordIf(recorder, pod, Stage.STARTED, ExecKubernetesCmd::podIsStarted, now);
+    recordIf(recorder, pod, Stage.READY, ExecKubernetesCmd::podIsReady, now);
+  }
+
+  private static void recordIf(
+      BenchmarkRecorder<Stage> recorder,
+      Pod pod,
+      Stage stage,
+      Predicate<Pod> condition,
+      Instant now) {
+    if (condition.test(pod)) {
+      recorder.record(pod.getMetadata().getName(), stage, now);
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.ContainerStatus;
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodStatus;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+When a container that failed its liveness probe broke, and when the kubelet noticed:
+- broken: the runtime's timestamp of the log line the container wrote right after breaking
+- unhealthy: the first Unhealthy event, i.e. the first failed probe
+- killed: the first Killing event, i.e. failureThreshold failed probes in a row
+- restarted: when the next container started
+All four come from the node (the log timestamps from the container runtime, the rest from the
+kubelet), so they're on the same clock. The log timestamps have nanoseconds, but the event and
+container timestamps are whole seconds, so the latencies can be up to a second short.
+
+Read it once the container was restarted (restartCount >= 1); the log is the previous container's.
+
+Usage:
+    ProbeTimeline timeline = ProbeTimeline.of(ns, "liveness-probe-p5-t3-0", "removed /tmp/healthy");
+    log.info(timeline.getBrokenToKilled().toMillis() + " ms to detect");
+ */
+public class ProbeTimeline {
+
+  private static final Logger log = LoggerFactory.getLogger(ProbeTimeline.class);
+  private static final long EVENT_TIMEOUT_SECONDS = 10;
+
+  private final String podName;
+  private final Instant brokenAt;
+  private final Instant unhealthyAt;
+  private final Instant killedAt;
+  private final Instant restartedAt;
+
+  private ProbeTimeline(
+      String podName,
+      Instant brokenAt,
+      Instant unhealthyAt,
+      Instant killedAt,
+      Instant restartedAt) {
+    this.podName = podName;
+    this.brokenAt = brokenAt;
+    this.unhealthyAt = unhealthyAt;
+    this.killedAt = killedAt;
+    this.restartedAt = restartedAt;
+  }
+
+  public static ProbeTimeline of(String namespaceName, String podName, String brokenLogLine) {
+    Instant brokenAt = findLogLine(namespaceName, podName, brokenLogLine);
+
+    // The kubelet posts its events a moment after acting on them
+    Collection<Event> events =
+        WaitEngine.on(
+                "a Killing event of '" + podName + "' pod",
+                KubernetesClientProvider.get()
+                    .v1()
+                    .events()
+                    .inNamespace(namespaceName)
+                    .withField("involvedObject.name", podName))
+            .until(event -> "Killing".equals(event.getReason()))
+            .any()
+            .await(EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .getObjects()
+            .values();
+    Instant unhealthyAt = firstEvent(events, "Unhealthy");
+    Instant killedAt = firstEvent(events, "Killing");
+
+    Pod pod = KubernetesCache.forNamespace(namespaceName).getPod(podName);
+    Instant restartedAt =
+        Optional.ofNullable(pod)
+            .map(Pod::getStatus)
+            .map(PodStatus::getContainerStatuses)
+            .filter(containerStatuses -> !containerStatuses.isEmpty())
+            .map(containerStatuses -> containerStatuses.get(0))
+            .filter(containerStatus -> containerStatus.getRestartCount() > 0)
+            .map(ContainerStatus::getState)
+            .filter(state -> state.getRunning() != null)
+            .map(state -> Instant.parse(state.getRunning().getStartedAt()))
+            .orElse(null);
+
+    return new ProbeTimeline(podName, brokenAt, unhealthyAt, killedAt, restartedAt);
+  }
+
+  // Lines look like "2020-10-17T12:34:56.123456789Z <what the container wrote>"
+  private static Instant findLogLine(String namespaceName, String podName, String brokenLogLine) {
+    String podLog;
+    try {
+      podLog =
+          KubernetesClientProvider.get()
+              .pods()
+              .inNamespace(namespaceName)
+              .withName(podName)
+              .usingTimestamps()
+              .terminated()
+              .getLog();
+    } catch (KubernetesClientException e) {
+      log.error("Failed reading the log of '" + podName + "' pod: " + e.getMessage());
+      return null;
+    }
+    List<String> lines = Arrays.asList(podLog.split("\n"));
+    return lines.stream()
+        .filter(line -> line.contains(brokenLogLine))
+        .map(line -> Instant.parse(line.substring(0, line.indexOf(' '))))
+        .findFirst()
+        .orElse(null);
+  }
+
+  // The earliest by the kubelet's own timestamps, not by the events' creation order
+  private static Instant firstEvent(Collection<Event> events, String reason) {
+    return events.stream()
+        .filter(event -> reason.equals(event.getReason()))
+        .map(ProbeTimeline::timestampOf)
+        .min(Comparator.naturalOrder())
+        .orElse(null);
+  }
+
+  // Newer kubelets fill in eventTime (microseconds); older ones only firstTimestamp (seconds)
+  private static Instant timestampOf(Event event) {
+    if (event.getEventTime() != null && event.getEventTime().getTime() != null) {
+      return Instant.parse(event.getEventTime().getTime());
+    }
+    return Instant.parse(event.getFirstTimestamp());
+  }
+
+  // Whether the container broke, and the kubelet noticed and restarted it
+  public boolean isComplete() {
+    return brokenAt != null && unhealthyAt != null && killedAt != null && restartedAt != null;
+  }
+
+  public String getPodName() {
+    return podName;
+  }
+
+  public Duration getBrokenToUnhealthy() {
+    return Duration.between(brokenAt, unhealthyAt);
+  }
+
+  public Duration getBrokenToKilled() {
+    return Duration.between(brokenAt, killedAt);
+  }
+
+  public Duration getBrokenToRestarted() {
+    return Duration.between(brokenAt, restartedAt);
+  }
+
+  @Override
+  public String toString() {
+    return podName
+        + ": broken at "
+        + brokenAt
+        + ", unhealthy at "
+        + unhealthyAt
+        + ", killed at "
+        + killedAt
+        + ", restarted at "
+        + restartedAt;
+  }
+}
@@ -0,0 +1,252 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Kills replicas of a workload in one burst and measures how long its controller takes to replace
+them.
+
+Every trial lists the replicas, picks the victims among the ready ones, opens a watch from the
+list's resourceVersion and sends all the deletes at once. Every pod the watch sees that wasn't in
+the list is a replacement: its creation and its first Ready are timestamped. The trial is over
+(full recovery) once as many replacements are ready as replicas were killed.
+The latencies of all trials add up, so repeated trials give percentiles.
+
+Usage:
+    ReplicaRecovery recovery = ReplicaRecovery.of(ns, "app", "echoserver");
+    for (int i = 0; i < 10; i++) {
+      recovery.killAndAwait(5, 2, TimeUnit.MINUTES);
+    }
+    log.info(recovery.getFullRecovery().summary());
+ */
+public class ReplicaRecovery {
+
+  private static final Logger log = LoggerFactory.getLogger(ReplicaRecovery.class);
+  private static final AtomicInteger threadCount = new AtomicInteger();
+  private static final ExecutorService killThreads =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "rcnit-kill-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final String namespaceName;
+  private final String labelKey;
+  private final String labelValue;
+  private final LatencyStats replacementCreated = new LatencyStats("kill -> replacement created");
+  private final LatencyStats replacementReady = new LatencyStats("kill -> replacement ready");
+  private final LatencyStats fullRecovery = new LatencyStats("kill -> full recovery");
+  private int failedTrials;
+
+  private ReplicaRecovery(String namespaceName, String labelKey, String labelValue) {
+    this.namespaceName = namespaceName;
+    this.labelKey = labelKey;
+    this.labelValue = labelValue;
+  }
+
+  public static ReplicaRecovery of(String namespaceName, String labelKey, String labelValue) {
+    return new ReplicaRecovery(namespaceName, labelKey, labelValue);
+  }
+
+  // Returns whether every killed replica was replaced by a ready one before the timeout
+  public boolean killAndAwait(int numberOfReplicasToKill, long timeout, TimeUnit timeUnit) {
+    Trial trial = new Trial(numberOfReplicasToKill);
+    Instant deadline = Instant.now().plusMillis(timeUnit.toMillis(timeout));
+    // After the API server closes it, the watch is started again from a new list
+    RestartingWatch watch =
+        RestartingWatch.start(labelKey + "=" + labelValue + " replicas", trial::startWatch);
+    List<Pod> victims = trial.victims;
+
+    trial.killedAt = Instant.now();
+    try {
+      CompletableFuture.allOf(
+              victims.stream()
+                  .map(victim -> CompletableFuture.runAsync(() -> kill(victim), killThreads))
+                  .toArray(size -> new CompletableFuture<?>[size]))
+          .join();
+      log.info(
+          "Killed ["
+              + numberOfReplicasToKill
+              + "] replicas at once: "
+              + victims.stream()
+                  .map(pod -> pod.getMetadata().getName())
+                  .collect(Collectors.toList()));
+
+      watch.await(trial.recovered, deadline);
+    } catch (CompletionException e) {
+      log.error("Failed killing the replicas: " + e.getCause().getMessage());
+      throw new io.cucumber.java.PendingException();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      watch.close();
+    }
+
+    synchronized (trial) {
+      trial.createdAt.values().forEach(instant -> replacementCreated.add(trial.killedAt, instant));
+      trial.readyAt.values().forEach(instant -> replacementReady.add(trial.killedAt, instant));
+      if (trial.recoveredAt != null) {
+        fullRecovery.add(trial.killedAt, trial.recoveredAt);
+        log.info(
+            "All ["
+                + numberOfReplicasToKill
+                + "] replacements are ready after "
+                + (trial.recoveredAt.toEpochMilli() - trial.killedAt.toEpochMilli())
+                + " ms");
+        return true;
+      }
+      failedTrials++;
+      log.error(
+          "Timed out after "
+              + timeUnit.toSeconds(timeout)
+              + " seconds; ["
+              + trial.readyAt.size()
+              + "/"
+              + numberOfReplicasToKill
+              + "] replacements are ready");
+      return false;
+    }
+  }
+
+  private void kill(Pod victim) {
+    String victimName = victim.getMetadata().getName();
+    if (!KubernetesClientProvider.get()
+        .pods()
+        .inNamespace(namespaceName)
+        .withName(victimName)
+        .delete()) {
+      throw new IllegalStateException("'" + victimName + "' replica was already gone");
+    }
+  }
+
+  public LatencyStats getReplacementCreated() {
+    return replacementCreated;
+  }
+
+  public LatencyStats getReplacementReady() {
+    return replacementReady;
+  }
+
+  // One sample per trial: from the kill to the last replacement being ready
+  public LatencyStats getFullRecovery() {
+    return fullRecovery;
+  }
+
+  public int getFailedTrials() {
+    return failedTrials;
+  }
+
+  private class Trial {
+
+    private final int numberOfReplicasToKill;
+    // Every replica that existed before the kill, terminating ones included
+    private final Set<String> previousReplicas = new HashSet<>();
+    private final Map<String, Instant> createdAt = new LinkedHashMap<>();
+    private final Map<String, Instant> readyAt = new LinkedHashMap<>();
+    private final CountDownLatch recovered = new CountDownLatch(1);
+    private Instant killedAt;
+    private Instant recoveredAt;
+    private List<Pod> victims;
+
+    private Trial(int numberOfReplicasToKill) {
+      this.numberOfReplicasToKill = numberOfReplicasToKill;
+    }
+
+    // The first time, also picks the victims: the first ready replicas that aren't terminating
+    private Watch startWatch(Runnable onClosed) {
+      final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+      PodList podList =
+          kubernetesClient.pods().inNamespace(namespaceName).withLabel(labelKey, labelValue).list();
+
+      synchronized (this) {
+        if (victims == null) {
+          podList.getItems().forEach(pod -> previousReplicas.add(pod.getMetadata().getName()));
+          victims =
+              podList.getItems().stream()
+                  .filter(pod -> pod.getMetadata().getDeletionTimestamp() == null)
+                  .filter(ExecKubernetesCmd::podIsReady)
+                  .limit(numberOfReplicasToKill)
+                  .collect(Collectors.toList());
+          if (victims.size() < numberOfReplicasToKill) {
+            log.error(
+                "Only ["
+                    + victims.size()
+                    + "] of the ["
+                    + numberOfReplicasToKill
+                    + "] replicas to kill are ready!");
+            throw new io.cucumber.java.PendingException();
+          }
+        } else {
+          Instant now = Instant.now();
+          podList.getItems().forEach(pod -> observe(pod, now));
+        }
+      }
+
+      return kubernetesClient
+          .pods()
+          .inNamespace(namespaceName)
+          .withLabel(labelKey, labelValue)
+          .watch(
+              new ListOptionsBuilder()
+                  .withResourceVersion(podList.getMetadata().getResourceVersion())
+                  .build(),
+              new Watcher<Pod>() {
+                @Override
+                public void eventReceived(Action action, Pod pod) {
+                  Instant now = Instant.now();
+                  if (action == Action.ADDED || action == Action.MODIFIED) {
+                    synchronized (Trial.this) {
+                      observe(pod, now);
+                    }
+                  }
+                }
+
+                @Override
+                public void onClose(KubernetesClientException cause) {
+                  if (cause != null) {
+                    onClosed.run();
+                  }
+                }
+              });
+    }
+
+    private void observe(Pod pod, Instant now) {
+      String podName = pod.getMetadata().getName();
+      if (previousReplicas.contains(podName)) {
+        return;
+      }
+      createdAt.putIfAbsent(podName, now);
+      if (ExecKubernetesCmd.podIsReady(pod)) {
+        readyAt.putIfAbsent(podName, now);
+      }
+      if (recoveredAt == null && readyAt.size() >= numberOfReplicasToKill) {
+        recoveredAt = now;
+        recovered.countDown();
+      }
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.client.Watch;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Keeps a watch open until it's closed. The API server closes watches now and then (e.g. 410 Gone);
+the watcher says so by running the Runnable its watch was started with, and the watch is started
+again right away on a background thread, whether or not anybody is waiting on it yet. Starting it
+again is up to the caller's function: list and watch from the list's resourceVersion, or watch
+without one to get an ADDED event for every existing object; either way, it catches up on what the
+closed watch missed.
+
+Usage:
+    RestartingWatch watch =
+        RestartingWatch.start(
+            "'echoserver' pods",
+            onClosed ->
+                pods.watch(
+                    new Watcher<Pod>() {
+                      ...
+                      @Override
+                      public void onClose(KubernetesClientException cause) {
+                        if (cause != null) {
+                          onClosed.run();
+                        }
+                      }
+                    }));
+    try {
+      boolean isDone = watch.await(allReady, deadline);
+    } finally {
+      watch.close();
+    }
+ */
+public class RestartingWatch {
+
+  private static final Logger log = LoggerFactory.getLogger(RestartingWatch.class);
+  private static final AtomicInteger threadCount = new AtomicInteger();
+  private static final ExecutorService restartThreads =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "rcnit-watch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final String description;
+  private final Function<Runnable, Watch> startWatch;
+  private Watch watch;
+  private boolean closed;
+
+  private RestartingWatch(String description, Function<Runnable, Watch> startWatch) {
+    this.description = description;
+    this.startWatch = startWatch;
+  }
+
+  // Opens the watch right away, e.g. before the first create of the objects it waits for
+  public static RestartingWatch start(String description, Function<Runnable, Watch> startWatch) {
+    RestartingWatch restartingWatch = new RestartingWatch(description, startWatch);
+    synchronized (restartingWatch) {
+      restartingWatch.open();
+    }
+    return restartingWatch;
+  }
+
+  private void open() {
+    // Not on the watcher's thread, which the client is still closing the old watch on
+    watch = startWatch.apply(() -> restartThreads.execute(this::restart));
+  }
+
+  private synchronized void restart() {
+    if (closed) {
+      return;
+    }
+    log.info("Watch for " + description + " was closed; restarting it");
+    watch.close();
+    try {
+      open();
+    } catch (RuntimeException e) {
+      log.error("Failed restarting the watch for " + description + ": " + e.getMessage());
+    }
+  }
+
+  // Returns whether the latch reached zero before the deadline
+  public boolean await(CountDownLatch done, Instant deadline) throws InterruptedException {
+    long remainingMillis = Math.max(Duration.between(Instant.now(), deadline).toMillis(), 0);
+    return done.await(remainingMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public synchronized void close() {
+    closed = true;
+    watch.close();
+  }
+}
@@ -0,0 +1,294 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.PodStatus;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Watches the replicas of a workload while a fault is injected, and times how long it takes to get
+back to its steady state: every desired replica ready, none of them terminating.
+- detected: the first moment after the injection the workload left its steady state
+- recovered: the last moment it got back to it, i.e. the start of the first SETTLE_SECONDS it
+  stayed there
+It also counts container restarts and replaced pods, from the pods seen while watching.
+
+Start it right before injecting the fault, and await it once the fault is over. The fault may be
+reported over before the watch delivers what it did (e.g. the deletions of pod-kill), so a fault
+that never disturbed the workload (e.g. a small network delay) only returns, with nothing
+detected, after DETECTION_GRACE_SECONDS.
+
+Usage:
+    SteadyStateMonitor monitor = SteadyStateMonitor.start(ns, "app", "echoserver", 10);
+    ChaosMeshResources.create(ns, "pod-kill", "echoserver");
+    ...
+    SteadyStateMonitor.Result result = monitor.await(60, TimeUnit.SECONDS);
+    log.info(result.toString());
+ */
+public class SteadyStateMonitor {
+
+  private static final Logger log = LoggerFactory.getLogger(SteadyStateMonitor.class);
+  private static final long POLL_SLICE_MILLIS = 200;
+  private static final long DETECTION_GRACE_SECONDS = 10;
+  private static final long SETTLE_SECONDS = 10;
+
+  private final String namespaceName;
+  private final String labelKey;
+  private final String labelValue;
+  private final int desiredReplicas;
+  private final Map<String, Pod> replicas = new HashMap<>();
+  private final Set<String> initialReplicas = new HashSet<>();
+  private final Set<String> replacedReplicas = new HashSet<>();
+  private final Map<String, Integer> initialRestarts = new HashMap<>();
+  // The highest restart count seen, by pod and container, minus the count at the start
+  private final Map<String, Integer> restarts = new HashMap<>();
+  private Instant injectedAt;
+  private Instant detectedAt;
+  private Instant recoveredAt;
+  private RestartingWatch watch;
+
+  private SteadyStateMonitor(
+      String namespaceName, String labelKey, String labelValue, int desiredReplicas) {
+    this.namespaceName = namespaceName;
+    this.labelKey = labelKey;
+    this.labelValue = labelValue;
+    this.desiredReplicas = desiredReplicas;
+  }
+
+  public static SteadyStateMonitor start(
+      String namespaceName, String labelKey, String labelValue, int desiredReplicas) {
+    SteadyStateMonitor monitor =
+        new SteadyStateMonitor(namespaceName, labelKey, labelValue, desiredReplicas);
+    // After the API server closes it, the watch is started again from a new list
+    monitor.watch =
+        RestartingWatch.start(labelKey + "=" + labelValue + " replicas", monitor::startWatch);
+    return monitor;
+  }
+
+  private Watch startWatch(Runnable onClosed) {
+    PodList podList =
+        KubernetesClientProvider.get()
+            .pods()
+            .inNamespace(namespaceName)
+            .withLabel(labelKey, labelValue)
+            .list();
+
+    synchronized (this) {
+      Instant now = Instant.now();
+      if (injectedAt == null) {
+        injectedAt = now;
+        for (Pod pod : podList.getItems()) {
+          initialReplicas.add(pod.getMetadata().getName());
+          forEachContainer(pod, (key, restartCount) -> initialRestarts.put(key, restartCount));
+        }
+      }
+      replicas.clear();
+      podList.getItems().forEach(pod -> observe(pod, now));
+    }
+
+    return KubernetesClientProvider.get()
+        .pods()
+        .inNamespace(namespaceName)
+        .withLabel(labelKey, labelValue)
+        .watch(
+            new ListOptionsBuilder()
+                .withResourceVersion(podList.getMetadata().getResourceVersion())
+                .build(),
+            new Watcher<Pod>() {
+              @Override
+              public void eventReceived(Action action, Pod pod) {
+                Instant now = Instant.now();
+                synchronized (SteadyStateMonitor.this) {
+                  if (action == Action.DELETED) {
+                    replicas.remove(pod.getMetadata().getName());
+                    evaluate(now);
+                  } else if (action != Action.ERROR) {
+                    observe(pod, now);
+                  }
+                }
+              }
+
+              @Override
+              public void onClose(KubernetesClientException cause) {
+                if (cause != null) {
+                  onClosed.run();
+                }
+              }
+            });
+  }
+
+  private void observe(Pod pod, Instant now) {
+    String podName = pod.getMetadata().getName();
+    replicas.put(podName, pod);
+    if (!initialReplicas.contains(podName)) {
+      replacedReplicas.add(podName);
+    }
+    forEachContainer(
+        pod,
+        (key, restartCount) ->
+            restarts.merge(key, restartCount - initialRestarts.getOrDefault(key, 0), Math::max));
+    evaluate(now);
+  }
+
+  private void evaluate(Instant now) {
+    long readyReplicas =
+        replicas.values().stream()
+            .filter(pod -> pod.getMetadata().getDeletionTimestamp() == null)
+            .filter(ExecKubernetesCmd::podIsReady)
+            .count();
+    boolean isSteady = readyReplicas >= desiredReplicas;
+    if (!isSteady && detectedAt == null) {
+      detectedAt = now;
+      log.info(
+          labelKey
+              + "="
+              + labelValue
+              + " left its steady state after "
+              + Duration.between(injectedAt, now).toMillis()
+              + " ms ["
+              + readyReplicas
+              + "/"
+              + desiredReplicas
+              + " ready]");
+    } else if (!isSteady) {
+      // Disturbed again before it settled; it only counts once it stays back for SETTLE_SECONDS
+      recoveredAt = null;
+    } else if (detectedAt != null && recoveredAt == null) {
+      recoveredAt = now;
+    }
+  }
+
+  // Calls restartCountConsumer with "<pod>/<container>" and the container's restart count
+  private static void forEachContainer(Pod pod, BiConsumer<String, Integer> restartCountConsumer) {
+    Optional.ofNullable(pod.getStatus())
+        .map(PodStatus::getContainerStatuses)
+        .orElse(Collections.emptyList())
+        .forEach(
+            containerStatus ->
+                restartCountConsumer.accept(
+                    pod.getMetadata().getName() + "/" + containerStatus.getName(),
+                    containerStatus.getRestartCount()));
+  }
+
+  /*
+  Returns once the workload has been in its steady state again for SETTLE_SECONDS, or if it never
+  left it, DETECTION_GRACE_SECONDS after the call; at the latest, when the deadline (e.g. the
+  recovery SLO after the fault ended) passed. Stops watching.
+   */
+  public Result await(long deadline, TimeUnit timeUnit) {
+    Instant awaitedAt = Instant.now();
+    try {
+      WaitEngine.poll(
+          labelKey + "=" + labelValue + " to settle",
+          () -> isSettled(awaitedAt),
+          POLL_SLICE_MILLIS,
+          deadline,
+          timeUnit);
+    } finally {
+      watch.close();
+    }
+
+    synchronized (this) {
+      int containerRestarts = restarts.values().stream().mapToInt(Integer::intValue).sum();
+      return new Result(
+          labelKey + "=" + labelValue,
+          injectedAt,
+          detectedAt,
+          recoveredAt,
+          containerRestarts,
+          replacedReplicas.size());
+    }
+  }
+
+  private synchronized boolean isSettled(Instant awaitedAt) {
+    Instant now = Instant.now();
+    if (detectedAt == null) {
+      return now.isAfter(awaitedAt.plusSeconds(DETECTION_GRACE_SECONDS));
+    }
+    return recoveredAt != null && now.isAfter(recoveredAt.plusSeconds(SETTLE_SECONDS));
+  }
+
+  public static class Result {
+
+    private final String workload;
+    private final Instant injectedAt;
+    private final Instant detectedAt;
+    private final Instant recoveredAt;
+    private final int containerRestarts;
+    private final int replacedPods;
+
+    private Result(
+        String workload,
+        Instant injectedAt,
+        Instant detectedAt,
+        Instant recoveredAt,
+        int containerRestarts,
+        int replacedPods) {
+      this.workload = workload;
+      this.injectedAt = injectedAt;
+      this.detectedAt = detectedAt;
+      this.recoveredAt = recoveredAt;
+      this.containerRestarts = containerRestarts;
+      this.replacedPods = replacedPods;
+    }
+
+    // Whether the workload is in its steady state: it never left it, or it got back to it
+    public boolean isSteady() {
+      return detectedAt == null || recoveredAt != null;
+    }
+
+    public boolean wasDisturbed() {
+      return detectedAt != null;
+    }
+
+    // From the injection to the workload leaving its steady state
+    public Duration getTimeToDetect() {
+      return Duration.between(injectedAt, detectedAt);
+    }
+
+    // From the workload first leaving its steady state to it being back to stay
+    public Duration getTimeToRecover() {
+      return Duration.between(detectedAt, recoveredAt);
+    }
+
+    public int getContainerRestarts() {
+      return containerRestarts;
+    }
+
+    public int getReplacedPods() {
+      return replacedPods;
+    }
+
+    @Override
+    public String toString() {
+      String restartsAndReplacements =
+          containerRestarts + " container restarts, " + replacedPods + " replaced pods";
+      if (!wasDisturbed()) {
+        return workload + " never left its steady state (" + restartsAndReplacements + ")";
+      }
+      return workload
+          + ": time to detect "
+          + getTimeToDetect().toMillis()
+          + " ms, time to recover "
+          + (recoveredAt == null ? "n/a (not recovered)" : getTimeToRecover().toMillis() + " ms")
+          + " ("
+          + restartsAndReplacements
+          + ")";
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package rcnit.util;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/*
+A series of timestamped values (e.g. the CPU usage of one container), with window queries: max,
+mean and percentiles over all the samples, or over the ones between two instants.
+
+The timestamps and the values are kept in a growing long[] and double[], so a scenario's worth of
+samples costs a few KB and no boxing. Samples are expected in time order; a sample with the same
+timestamp as the last one (a reading that didn't move on since the last poll) is dropped.
+
+Usage:
+    TimeSeries cpu = new TimeSeries("cpu-test-2/cpu-test-2-container cpu", "milliCPU");
+    cpu.add(timestamp, 998);
+    log.info(cpu.window(startedAt, finishedAt).summary());
+ */
+public class TimeSeries {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final String name;
+  private final String unit;
+  private long[] timestamps = new long[INITIAL_CAPACITY];
+  private double[] values = new double[INITIAL_CAPACITY];
+  private int count;
+
+  public TimeSeries(String name, String unit) {
+    this.name = name;
+    this.unit = unit;
+  }
+
+  // Returns whether the sample was new
+  public synchronized boolean add(Instant timestamp, double value) {
+    long millis = timestamp.toEpochMilli();
+    if (count > 0 && timestamps[count - 1] == millis) {
+      return false;
+    }
+    if (count == timestamps.length) {
+      timestamps = Arrays.copyOf(timestamps, count * 2);
+      values = Arrays.copyOf(values, count * 2);
+    }
+    timestamps[count] = millis;
+    values[count++] = value;
+    return true;
+  }
+
+  // The samples from (including) one instant to (including) another, as a new series
+  public synchronized TimeSeries window(Instant from, Instant to) {
+    TimeSeries window = new TimeSeries(name, unit);
+    for (int i = 0; i < count; i++) {
+      if (timestamps[i] >= from.toEpochMilli() && timestamps[i] <= to.toEpochMilli()) {
+        window.add(Instant.ofEpochMilli(timestamps[i]), values[i]);
+      }
+    }
+    return window;
+  }
+
+  public synchronized int count() {
+    return count;
+  }
+
+  // The nearest-rank percentile (0 < percentile <= 100), or 0 without samples
+  public synchronized double percentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    double[] sorted = Arrays.copyOf(values, count);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100 * count);
+    return sorted[Math.min(Math.max(rank, 1), count) - 1];
+  }
+
+  public synchronized double max() {
+    return count == 0 ? 0 : Arrays.stream(values, 0, count).max().getAsDouble();
+  }
+
+  public synchronized double mean() {
+    return count == 0 ? 0 : Arrays.stream(values, 0, count).average().getAsDouble();
+  }
+
+  // The last sample minus the first one, e.g. how much a counter went up
+  public synchronized double increase() {
+    return count < 2 ? 0 : values[count - 1] - values[0];
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String summary() {
+    return String.format(
+        "%s: n=%d mean=%.0f %s p90=%.0f %s max=%.0f %s",
+        name, count(), mean(), unit, percentile(90), unit, max(), unit);
+  }
+}
@@ -0,0 +1,336 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Waits on one watch stream instead of sleeping or polling objects one by one.
+
+It lists the matching objects once, then watches from the list's resourceVersion, so objects that
+don't exist yet are picked up as soon as they are created. Every time an object starts matching
+the condition its instant is recorded, and so is the instant the whole composite condition
+(all/any/count-of/none) became true.
+
+For what no watch can tell (e.g. whether a webhook server answers yet), poll() checks every
+interval instead.
+
+Usage:
+    WaitEngine.on("ready pods", kubernetesClient.pods().inNamespace(ns).withLabel("app", "x"))
+        .until(ExecKubernetesCmd::podIsReady)
+        .all(10)
+        .await(5, TimeUnit.MINUTES);
+    boolean isServing = WaitEngine.poll("the webhook", () -> probe(ns), 500, 3, TimeUnit.MINUTES);
+ */
+public class WaitEngine<T extends HasMetadata> {
+
+  private static final Logger log = LoggerFactory.getLogger(WaitEngine.class);
+
+  private final String description;
+  private final FilterWatchListDeletable<
+          T, ? extends KubernetesResourceList<T>, Boolean, Watch, Watcher<T>>
+      resources;
+  private final Map<String, T> objects = new LinkedHashMap<>();
+  private final Map<String, Instant> objectSatisfiedAt = new LinkedHashMap<>();
+  private final CountDownLatch satisfied = new CountDownLatch(1);
+  private final Set<String> expectedNames = new HashSet<>();
+  private Predicate<T> condition = object -> true;
+  private Mode mode = Mode.ALL;
+  private int expectedCount = 1;
+  private Instant satisfiedAt;
+
+  public enum Mode {
+    // Every object matches the condition, there are at least expectedCount objects, and every
+    // expected name is among them
+    ALL,
+    // At least one object matches the condition
+    ANY,
+    // At least expectedCount objects match the condition
+    COUNT_OF,
+    // No object matches the condition, e.g. every deleted object is gone
+    NONE
+  }
+
+  private WaitEngine(
+      String description,
+      FilterWatchListDeletable<T, ? extends KubernetesResourceList<T>, Boolean, Watch, Watcher<T>>
+          resources) {
+    this.description = description;
+    this.resources = resources;
+  }
+
+  public static <T extends HasMetadata> WaitEngine<T> on(
+      String description,
+      FilterWatchListDeletable<T, ? extends KubernetesResourceList<T>, Boolean, Watch, Watcher<T>>
+          resources) {
+    return new WaitEngine<>(description, resources);
+  }
+
+  public WaitEngine<T> until(Predicate<T> condition) {
+    this.condition = condition;
+    return this;
+  }
+
+  public WaitEngine<T> all(int expectedCount) {
+    this.mode = Mode.ALL;
+    this.expectedCount = expectedCount;
+    return this;
+  }
+
+  /*
+  Like all(), but every named object has to be there and match, not just as many objects.
+  A named object that gets deleted is no longer waited for, e.g. a pod its controller replaced;
+  the replacement is picked up from the watch like any other new object and has to match as well.
+   */
+  public WaitEngine<T> allOf(Collection<String> names) {
+    this.mode = Mode.ALL;
+    this.expectedCount = names.size();
+    this.expectedNames.addAll(names);
+    return this;
+  }
+
+  public WaitEngine<T> any() {
+    this.mode = Mode.ANY;
+    this.expectedCount = 1;
+    return this;
+  }
+
+  public WaitEngine<T> none() {
+    this.mode = Mode.NONE;
+    this.expectedCount = 0;
+    return this;
+  }
+
+  public WaitEngine<T> countOf(int expectedCount) {
+    this.mode = Mode.COUNT_OF;
+    this.expectedCount = expectedCount;
+    return this;
+  }
+
+  // Calls isDone every intervalMillis until it returns true; returns whether it did in time
+  public static boolean poll(
+      String description,
+      BooleanSupplier isDone,
+      long intervalMillis,
+      long timeout,
+      TimeUnit timeUnit) {
+    Instant start = Instant.now();
+    Instant deadline = start.plusMillis(timeUnit.toMillis(timeout));
+    try {
+      while (!isDone.getAsBoolean()) {
+        if (Instant.now().isAfter(deadline)) {
+          log.error(
+              "Timed out after "
+                  + timeUnit.toSeconds(timeout)
+                  + " seconds waiting for "
+                  + description);
+          return false;
+        }
+        TimeUnit.MILLISECONDS.sleep(intervalMillis);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    log.info(
+        "Waited " + Duration.between(start, Instant.now()).toMillis() + " ms for " + description);
+    return true;
+  }
+
+  public Result<T> await(long timeout, TimeUnit timeUnit) {
+    Instant start = Instant.now();
+    Instant deadline = start.plusMillis(timeUnit.toMillis(timeout));
+    // After the API server closes it, the watch is started again from a new list
+    RestartingWatch watch = RestartingWatch.start(description, this::startWatch);
+
+    try {
+      watch.await(satisfied, deadline);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      watch.close();
+    }
+
+    synchronized (this) {
+      Result<T> result = new Result<>(start, satisfiedAt, objects, objectSatisfiedAt);
+      if (result.isSatisfied()) {
+        log.info(
+            "Waited "
+                + result.getElapsed().toMillis()
+                + " ms for "
+                + description
+                + " ("
+                + mode
+                + " of "
+                + objects.size()
+                + " object(s))");
+      } else {
+        log.error(
+            "Timed out after "
+                + timeUnit.toSeconds(timeout)
+                + " seconds waiting for "
+                + description
+                + "; ["
+                + objectSatisfiedAt.size()
+                + "/"
+                + objects.size()
+                + "] object(s) matched");
+      }
+      return result;
+    }
+  }
+
+  private Watch startWatch(Runnable onClosed) {
+    KubernetesResourceList<T> list = resources.list();
+
+    synchronized (this) {
+      Instant now = Instant.now();
+      Set<String> seenNames = new HashSet<>(objects.keySet());
+      objects.clear();
+      for (T object : list.getItems()) {
+        record(object, now);
+      }
+      // Deleted while the watch was closed
+      seenNames.removeAll(objects.keySet());
+      seenNames.forEach(this::forget);
+      objectSatisfiedAt.keySet().retainAll(objects.keySet());
+      evaluate(now);
+    }
+
+    return resources.watch(
+        new ListOptionsBuilder()
+            .withResourceVersion(list.getMetadata().getResourceVersion())
+            .build(),
+        new Watcher<T>() {
+          @Override
+          public void eventReceived(Action action, T object) {
+            Instant now = Instant.now();
+            synchronized (WaitEngine.this) {
+              if (action == Action.DELETED) {
+                forget(object.getMetadata().getName());
+              } else if (action != Action.ERROR) {
+                record(object, now);
+              }
+              evaluate(now);
+            }
+          }
+
+          @Override
+          public void onClose(KubernetesClientException cause) {
+            if (cause != null) {
+              onClosed.run();
+            }
+          }
+        });
+  }
+
+  private void record(T object, Instant now) {
+    String name = object.getMetadata().getName();
+    objects.put(name, object);
+    if (condition.test(object)) {
+      objectSatisfiedAt.putIfAbsent(name, now);
+    } else {
+      objectSatisfiedAt.remove(name);
+    }
+  }
+
+  private void forget(String name) {
+    objects.remove(name);
+    objectSatisfiedAt.remove(name);
+    if (expectedNames.remove(name)) {
+      expectedCount--;
+    }
+  }
+
+  private void evaluate(Instant now) {
+    if (satisfiedAt != null) {
+      return;
+    }
+    boolean isSatisfied;
+    switch (mode) {
+      case ANY:
+        isSatisfied = !objectSatisfiedAt.isEmpty();
+        break;
+      case COUNT_OF:
+        isSatisfied = objectSatisfiedAt.size() >= expectedCount;
+        break;
+      case NONE:
+        isSatisfied = objectSatisfiedAt.isEmpty();
+        break;
+      default:
+        isSatisfied =
+            objects.size() >= expectedCount
+                && objectSatisfiedAt.size() == objects.size()
+                && objectSatisfiedAt.keySet().containsAll(expectedNames);
+    }
+    if (isSatisfied) {
+      satisfiedAt = now;
+      satisfied.countDown();
+    }
+  }
+
+  public static class Result<T> {
+
+    private final Instant startedAt;
+    private final Instant satisfiedAt;
+    private final Map<String, T> objects;
+    private final Map<String, Instant> objectSatisfiedAt;
+
+    private Result(
+        Instant startedAt,
+        Instant satisfiedAt,
+        Map<String, T> objects,
+        Map<String, Instant> objectSatisfiedAt) {
+      this.startedAt = startedAt;
+      this.satisfiedAt = satisfiedAt;
+      this.objects = Collections.unmodifiableMap(new LinkedHashMap<>(objects));
+      this.objectSatisfiedAt = Collections.unmodifiableMap(new LinkedHashMap<>(objectSatisfiedAt));
+    }
+
+    public boolean isSatisfied() {
+      return satisfiedAt != null;
+    }
+
+    public Instant getStartedAt() {
+      return startedAt;
+    }
+
+    // The instant the composite condition became true, or null if it timed out
+    public Instant getSatisfiedAt() {
+      return satisfiedAt;
+    }
+
+    public Duration getElapsed() {
+      return Duration.between(startedAt, satisfiedAt != null ? satisfiedAt : Instant.now());
+    }
+
+    // Last seen state of every object, by name
+    public Map<String, T> getObjects() {
+      return objects;
+    }
+
+    // The instant each object started matching the condition, by name
+    public Map<String, Instant> getObjectSatisfiedAt() {
+      return objectSatisfiedAt;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package rcnit.util;
+
+import io.fabric8.kubernetes.api.model.EndpointSubset;
+import io.fabric8.kubernetes.api.model.admissionregistration.v1beta1.MutatingWebhook;
+import io.fabric8.kubernetes.api.model.admissionregistration.v1beta1.MutatingWebhookConfiguration;
+import io.fabric8.kubernetes.api.model.admissionregistration.v1beta1.ServiceReference;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+Waits until the admission webhooks served from a namespace can actually be called, e.g. before
+creating Chaos Mesh actions, whose mutating webhook otherwise fails with:
+    failed calling webhook "mpodchaos.kb.io": ... connect: connection refused
+    OR
+    service "chaos-mesh-controller-manager" not found
+See https://github.com/pingcap/chaos-mesh/issues/435
+
+1. A MutatingWebhookConfiguration points at a Service in the namespace and has a caBundle.
+2. The Endpoints of every such Service have a ready address.
+3. Optionally, a probe (e.g. creating a throwaway object that goes through the webhook) succeeds.
+
+Once a namespace passed, later calls return immediately.
+
+Usage:
+    WebhookGate.forNamespace(ns)
+        .withProbe(() -> ChaosMeshResources.probeWebhook(ns))
+        .await(3, TimeUnit.MINUTES);
+ */
+public class WebhookGate {
+
+  private static final Logger log = LoggerFactory.getLogger(WebhookGate.class);
+  private static final long PROBE_INTERVAL_MILLIS = 500;
+  private static final Set<String> openNamespaces = ConcurrentHashMap.newKeySet();
+  private static final Map<String, Object> namespaceLocks = new ConcurrentHashMap<>();
+
+  private final String namespaceName;
+  private BooleanSupplier probe = () -> true;
+
+  private WebhookGate(String namespaceName) {
+    this.namespaceName = namespaceName;
+  }
+
+  public static WebhookGate forNamespace(String namespaceName) {
+    return new WebhookGate(namespaceName);
+  }
+
+  // Called until it returns true; it should leave nothing behind either way
+  public WebhookGate withProbe(BooleanSupplier probe) {
+    this.probe = probe;
+    return this;
+  }
+
+  public void await(long timeout, TimeUnit timeUnit) {
+    // One caller per namespace does the waiting, e.g. for all the concurrent chaos actions
+    synchronized (namespaceLocks.computeIfAbsent(namespaceName, name -> new Object())) {
+      if (!openNamespaces.contains(namespaceName)) {
+        awaitWebhooks(timeout, timeUnit);
+      }
+    }
+  }
+
+  private void awaitWebhooks(long timeout, TimeUnit timeUnit) {
+    long startedAt = System.currentTimeMillis();
+    long deadline = startedAt + timeUnit.toMillis(timeout);
+    final KubernetesClient kubernetesClient = KubernetesClientProvider.get();
+
+    WaitEngine.Result<MutatingWebhookConfiguration> configurations =
+        WaitEngine.on(
+                "a MutatingWebhookConfiguration served from '" + namespaceName + "' namespace",
+                kubernetesClient.admissionRegistration().v1beta1().mutatingWebhookConfigurations())
+            .until(configuration -> !servicesOf(configuration).isEmpty())
+            .any()
+            .await(remaining(deadline), TimeUnit.MILLISECONDS);
+    if (!configurations.isSatisfied()) {
+      log.error("No webhook configuration is served from '" + namespaceName + "' namespace!");
+      throw new io.cucumber.java.PendingException();
+    }
+    Set<String> serviceNames =
+        configurations.getObjects().values().stream()
+            .flatMap(configuration -> servicesOf(configuration).stream())
+            .collect(Collectors.toSet());
+
+    boolean endpointsAreReady =
+        WaitEngine.on(
+                "ready Endpoints of webhook Services " + serviceNames,
+                kubernetesClient.endpoints().inNamespace(namespaceName))
+            .until(
+                endpoints ->
+                    serviceNames.contains(endpoints.getMetadata().getName())
+                        && Optional.ofNullable(endpoints.getSubsets())
+                            .orElse(Collections.emptyList()).stream()
+                            .map(EndpointSubset::getAddresses)
+                            .anyMatch(addresses -> addresses != null && !addresses.isEmpty()))
+            .countOf(serviceNames.size())
+            .await(remaining(deadline), TimeUnit.MILLISECONDS)
+            .isSatisfied();
+    if (!endpointsAreReady) {
+      log.error("The webhook Services " + serviceNames + " have no ready endpoints!");
+      throw new io.cucumber.java.PendingException();
+    }
+
+    // The endpoints are ready a moment before the webhook server has loaded its certificate
+    boolean webhooksAnswer =
+        WaitEngine.poll(
+            "the webhooks in '" + namespaceName + "' namespace to answer the probe",
+            probe,
+            PROBE_INTERVAL_MILLIS,
+            remaining(deadline),
+            TimeUnit.MILLISECONDS);
+    if (!webhooksAnswer) {
+      log.error("The webhooks in '" + namespaceName + "' namespace never answered the probe!");
+      throw new io.cucumber.java.PendingException();
+    }
+
+    openNamespaces.add(namespaceName);
+    log.info(
+        "The webhooks "
+            + serviceNames
+            + " in '"
+            + namespaceName
+            + "' namespace are serving after "
+            + (System.currentTimeMillis() - startedAt)
+            + " ms");
+  }
+
+  // Call this when the webhooks are uninstalled, so the next install is awaited again
+  public static void close(String namespaceName) {
+    openNamespaces.remove(namespaceName);
+  }
+
+  // The Services in namespaceName that the configuration's webhooks call, if it has a caBundle
+  private Set<String> servicesOf(MutatingWebhookConfiguration configuration) {
+    List<MutatingWebhook> webhooks =
+        Optional.ofNullable(configuration.getWebhooks()).orElse(Collections.emptyList());
+    return webhooks.stream()
+        .filter(webhook -> webhook.getClientConfig() != null)
+        .filter(
+            webhook ->
+                webhook.getClientConfig().getCaBundle() != null
+                    && !webhook.getClientConfig().getCaBundle().isEmpty())
+        .map(webhook -> webhook.getClientConfig().getService())
+        .filter(service -> service != null && namespaceName.equals(service.getNamespace()))
+        .map(ServiceReference::getName)
+        .collect(Collectors.toSet());
+  }
+
+  private static long remaining(long deadline) {
+    return Math.max(deadline - System.currentTimeMillis(), 0);
+  }
+}
@@ -1,3 +1,4 @@
+@environment
 Feature: Validate environment
 
   Scenario: Configure minikube
@@ -1,5 +1,20 @@
+@after-environment
 Feature: Test etcd
 
   Scenario: Encrypt data at rest
     When I create a secret
-    Then The etcd key should be encrypted
\ No newline at end of file
+    Then The etcd key should be encrypted
+
+  @control-plane
+  Scenario Outline: Benchmark etcd writes and reads
+    When I write, read, update and delete <objects> <kind> of <size> KB, <concurrency> at a time
+    Then The etcd latency percentiles and throughput should be reported
+
+    Examples:
+      | kind       | objects | size | concurrency |
+      | secrets    | 2000    | 1    | 16          |
+      | configmaps | 2000    | 1    | 16          |
+      | secrets    | 500     | 64   | 16          |
+      | configmaps | 500     | 64   | 16          |
+      | secrets    | 50      | 1000 | 8           |
+      | configmaps | 50      | 1000 | 8           |
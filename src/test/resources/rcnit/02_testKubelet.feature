@@ -1,6 +1,17 @@
+@after-environment
 Feature: Test the Kubernetes kubelet
 
   Scenario: Test the liveness probe
     Given A pod with a liveness probe of 5 periodSeconds and a "sleep 10" container command
     Then There are no anomalous pod events for the first ten seconds
-    But There are anomalous pod events after 10 seconds
\ No newline at end of file
+    But There are anomalous pod events after 10 seconds
+
+  Scenario: Measure the liveness probe detection latency
+    When Pods break their liveness probe after 10 seconds, 3 pods for each of these probes
+      | periodSeconds | failureThreshold |
+      | 1             | 1                |
+      | 1             | 3                |
+      | 5             | 1                |
+      | 5             | 3                |
+      | 10            | 1                |
+    Then The liveness probe detection latencies should be reported
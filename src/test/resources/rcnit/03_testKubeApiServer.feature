@@ -1,3 +1,4 @@
+@after-environment @storage-classes
 Feature: Test the Kubernetes API server
 
   Background:
@@ -20,4 +21,38 @@ Feature: Test the Kubernetes API server
     When I do not have a default storage class
     Then The DefaultStorageClass admission controller does not do anything
     When I have multiple default storage classes
-    Then The DefaultStorageClass admission controller will reject the PersistentVolumeClaim
\ No newline at end of file
+    Then The DefaultStorageClass admission controller will reject the PersistentVolumeClaim
+
+  @control-plane
+  Scenario Outline: Benchmark the admission controllers
+    When I create <claims> PersistentVolumeClaims, <concurrency> at a time, in a namespace with <admission> admission objects
+    Then The admission latency and throughput should be reported for accepted and rejected claims
+
+    Examples:
+      | admission             | claims | concurrency |
+      | none                  | 200    | 16          |
+      | limit-range           | 200    | 16          |
+      | resource-quota        | 200    | 16          |
+      | default-storage-class | 200    | 16          |
+      | all                   | 200    | 16          |
+
+  @control-plane
+  Scenario Outline: Race PersistentVolumeClaims for one ResourceQuota
+    When <claims> PersistentVolumeClaims of <size> GB race for a <quota> GB storage ResourceQuota, <concurrency> at a time
+    Then The ResourceQuota should never be oversubscribed, and the contention is reported
+
+    Examples:
+      | claims | size | quota | concurrency |
+      | 200    | 1    | 100   | 32          |
+      | 200    | 3    | 100   | 64          |
+
+  @control-plane @node-capacity
+  Scenario Outline: Benchmark the PersistentVolumeClaim binding latency
+    When I bind <claims> PersistentVolumeClaims to <volumes> local PersistentVolumes with <binding> binding, <concurrency> at a time
+    Then Every PersistentVolumeClaim should be Bound, and the binding latencies are reported
+
+    Examples:
+      | binding              | claims | volumes | concurrency |
+      | Immediate            | 100    | 100     | 10          |
+      | Immediate            | 100    | 200     | 10          |
+      | WaitForFirstConsumer | 50     | 50      | 10          |
@@ -1,3 +1,4 @@
+@after-environment
 Feature: Test the Kubernetes scheduler
 
   Scenario: Test CPU request scheduling
@@ -8,26 +9,60 @@ Feature: Test the Kubernetes scheduler
     When I create a pod with a memory request that is too big for my node
     Then The scheduler should not schedule the pod due to insufficient memory
 
+  @node-capacity
   Scenario: CPU-test a pod
     When I use 1000 milliCPU from a pod with 2000 milliCPU request and limit
     Then The CPU-test pod should be fine
     When I use 10000 milliCPU from a pod with 1000 milliCPU compute allocation the CPU-test pod should be throttled
 
+  @node-capacity
   Scenario: Memory-test a pod
     When I use 100 MB of memory from a pod with 200 MB memory request and limit
     Then The memory-test pod should be fine
     When I use 300 MB of memory from a pod with 200 MB memory allocation
     Then The memory-test pod should be terminated
 
+  @node-capacity
   Scenario: Test killing deployment replicas
     Given A deployment with 20 replicas
     When I kill 5 replicas
     Then The deployment should create 5 more replicas to equal 20 again
     And The scheduler should be healthy
 
+  @node-capacity
+  Scenario: Benchmark the replica recovery time
+    Given A deployment with 20 replicas
+    When I kill 5 replicas at once, 10 times in a row
+    Then The replica recovery time percentiles should be reported
+    And The scheduler should be healthy
+
+  @node-labels
   Scenario: Test node affinity
     Given A node label
     Then A pod with a correct requiredDuringSchedulingIgnoredDuringExecution node affinity will get scheduled
     But A pod with a wrong requiredDuringSchedulingIgnoredDuringExecution node affinity will get rejected
     And A pod with a correct preferredDuringSchedulingIgnoredDuringExecution node affinity will get scheduled
-    And A pod with a wrong preferredDuringSchedulingIgnoredDuringExecution node affinity will get scheduled
\ No newline at end of file
+    And A pod with a wrong preferredDuringSchedulingIgnoredDuringExecution node affinity will get scheduled
+
+  @node-capacity
+  Scenario Outline: Benchmark the pod startup latency
+    When I create <pods> <template> pods, <concurrency> at a time
+    Then Every pod should be ready, and the startup latency percentiles are reported
+
+    Examples:
+      | template   | pods | concurrency |
+      | echoserver | 100  | 10          |
+      | stress     | 100  | 10          |
+
+  @node-capacity @node-labels
+  Scenario Outline: Benchmark the scheduler throughput
+    Given A node label
+    When I flood the scheduler with <pods> pods with <constraints> constraints
+    Then Every pod should be scheduled, and the scheduler throughput is reported
+
+    Examples:
+      | constraints        | pods |
+      | no                 | 100  |
+      | required-affinity  | 100  |
+      | preferred-affinity | 100  |
+      | near-capacity      | 100  |
@@ -1,3 +1,4 @@
+@after-environment @node-capacity
 Feature: Use k8s-testsuite
 
   Scenario: Run k8s-testsuite
@@ -1,3 +1,4 @@
+@after-environment
 Feature: Use Pumba
 
   Scenario: Deploy Pumba tests
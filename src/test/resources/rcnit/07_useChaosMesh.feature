@@ -1,13 +1,12 @@
+@after-environment @node-capacity
 Feature: Use Chaos Mesh
 
   Background:
     Given Chaos Mesh is running
 
-  Scenario Outline: Inject chaos actions
-    When I inject the <chaos-test-name> <chaos-action> with 10 test pods
-    Then The <chaos-action> should be successful
-
-    Examples:
+  @chaos-actions
+  Scenario: Inject chaos actions concurrently
+    When I inject these chaos actions concurrently with 10 test pods each
       | chaos-test-name | chaos-action      |
       | podchaos        | pod-failure       |
       | podchaos        | pod-kill          |
@@ -15,4 +14,10 @@ Feature: Use Chaos Mesh
       | networkchaos    | network-delay     |
       | networkchaos    | network-duplicate |
       | networkchaos    | network-corrupt   |
-      | timechaos       | time-chaos        |
\ No newline at end of file
+    Then All chaos actions should be successful
+
+  # Removes Chaos Mesh, so it runs after the other actions
+  @after-chaos-actions
+  Scenario: Inject time chaos
+    When I inject the timechaos time-chaos with 10 test pods
+    Then The time-chaos should be successful
\ No newline at end of file